@@ -0,0 +1,139 @@
+package edu.usfca.cs272;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the ways an {@link InvertedIndex} can merge the local indexes of the builder and crawler
+ * tasks, by merging one local index per file into a new index. Looking up every stem of the local
+ * index is what the index falls back to for small local indexes, while {@link
+ * InvertedIndex#addIndex(InvertedIndex)} walks both sorted maps together and {@link
+ * InvertedIndex#moveIndex(InvertedIndex)} also takes over the postings of new stems.
+ *
+ * <p>Run with {@code mvn -P benchmarks compile exec:exec -Dbenchmark=IndexMergeBenchmark}.
+ *
+ * @author Ravneet Singh Bhatia
+ * @version Spring 2024
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndexMergeBenchmark {
+  /** Number of files, each with its own local index. */
+  private static final int FILES = 200;
+
+  /** Number of different stems the files draw from. */
+  private static final int VOCABULARY = 50_000;
+
+  /** Number of stems in each file, from a small web page to a large text file. */
+  @Param({"500", "20000"})
+  public int stems;
+
+  /** True if the postings are stored compressed. */
+  @Param({"false", "true"})
+  public boolean compressed;
+
+  /** The stems of each file. */
+  private List<List<String>> files;
+
+  /** The local index of each file, rebuilt before each merge since moving empties them. */
+  private InvertedIndex[] locals;
+
+  /**
+   * Creates the stems of every file. Stems are drawn so that a few are very common and most are
+   * rare, as in real text.
+   */
+  @Setup(Level.Trial)
+  public void createFiles() {
+    Random random = new Random(42);
+    files = new ArrayList<>();
+    for (int i = 0; i < FILES; i++) {
+      ArrayList<String> file = new ArrayList<>(stems);
+      for (int j = 0; j < stems; j++) {
+        int stem = (int) Math.pow(VOCABULARY, random.nextDouble()) - 1;
+        file.add("s" + Integer.toString(stem, 36));
+      }
+      files.add(file);
+    }
+  }
+
+  /** Builds the local index of every file. */
+  @Setup(Level.Invocation)
+  public void createLocals() {
+    locals = new InvertedIndex[FILES];
+    for (int i = 0; i < FILES; i++) {
+      locals[i] = new InvertedIndex(compressed);
+      locals[i].addAll("file" + i + ".txt", files.get(i));
+    }
+  }
+
+  /**
+   * Merges every local index by looking up each of its stems in the merged postings.
+   *
+   * @return the merged postings
+   */
+  @Benchmark
+  public TreeMap<String, Postings> lookup() {
+    TreeMap<String, Postings> index = new TreeMap<>();
+    DocumentDictionary documents = new DocumentDictionary();
+    for (InvertedIndex local : locals) {
+      DocumentDictionary localDocuments = local.documents();
+      int[] docMap = new int[localDocuments.size()];
+      for (int doc = 0; doc < docMap.length; doc++) {
+        docMap[doc] = documents.id(localDocuments.location(doc));
+        documents.updateCount(docMap[doc], localDocuments.count(doc));
+      }
+      for (var entry : local.postings().entrySet()) {
+        InvertedIndex.mergePostings(
+            index, entry.getKey(), entry.getValue(), docMap, false, compressed);
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Merges every local index by copying it with {@link InvertedIndex#addIndex(InvertedIndex)}.
+   *
+   * @return the merged index
+   */
+  @Benchmark
+  public InvertedIndex addIndex() {
+    InvertedIndex index = new InvertedIndex(compressed);
+    for (InvertedIndex local : locals) {
+      index.addIndex(local);
+    }
+    return index;
+  }
+
+  /**
+   * Merges every local index by moving it with {@link InvertedIndex#moveIndex(InvertedIndex)}.
+   *
+   * @return the merged index
+   */
+  @Benchmark
+  public InvertedIndex moveIndex() {
+    InvertedIndex index = new InvertedIndex(compressed);
+    for (InvertedIndex local : locals) {
+      index.moveIndex(local);
+    }
+    return index;
+  }
+}
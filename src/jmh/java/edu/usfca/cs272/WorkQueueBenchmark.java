@@ -0,0 +1,95 @@
+package edu.usfca.cs272;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the task throughput of a {@link WorkQueue} with one shared list against a work-stealing
+ * queue, for empty tasks queued by one outside thread and for tasks that each queue many more, as
+ * the builder and crawler do. Scores are tasks per second.
+ *
+ * <p>Run with {@code mvn -P benchmarks compile exec:exec -Dbenchmark=WorkQueueBenchmark}.
+ *
+ * @author Ravneet Singh Bhatia
+ * @version Spring 2024
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WorkQueueBenchmark {
+  /** Number of tasks queued by the benchmark thread. */
+  private static final int TASKS = 100_000;
+
+  /** Number of tasks queued by the benchmark thread that each queue {@link #CHILDREN} more. */
+  private static final int PARENTS = 100;
+
+  /** Number of tasks each parent task queues. */
+  private static final int CHILDREN = 1_000;
+
+  /** A task that does nothing, so only the cost of the queue is measured. */
+  private static final Runnable EMPTY = () -> {};
+
+  /** Number of worker threads. */
+  @Param({"1", "4", "16"})
+  public int threads;
+
+  /** True if the queue gives each worker its own deque. */
+  @Param({"false", "true"})
+  public boolean stealing;
+
+  /** The queue being measured. */
+  private WorkQueue queue;
+
+  /** Starts the workers. */
+  @Setup(Level.Trial)
+  public void start() {
+    queue = new WorkQueue(threads, stealing);
+  }
+
+  /** Stops the workers. */
+  @TearDown(Level.Trial)
+  public void stop() {
+    queue.join();
+  }
+
+  /** Queues empty tasks from the benchmark thread and waits for them. */
+  @Benchmark
+  @OperationsPerInvocation(TASKS)
+  public void fromCaller() {
+    for (int i = 0; i < TASKS; i++) {
+      queue.execute(EMPTY);
+    }
+    queue.finish();
+  }
+
+  /** Queues tasks that each queue empty tasks from a worker, and waits for all of them. */
+  @Benchmark
+  @OperationsPerInvocation(PARENTS * (CHILDREN + 1))
+  public void fromWorkers() {
+    for (int i = 0; i < PARENTS; i++) {
+      queue.execute(
+          () -> {
+            for (int j = 0; j < CHILDREN; j++) {
+              queue.execute(EMPTY);
+            }
+          });
+    }
+    queue.finish();
+  }
+}
@@ -0,0 +1,216 @@
+package edu.usfca.cs272;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import opennlp.tools.stemmer.Stemmer;
+import opennlp.tools.stemmer.snowball.SnowballStemmer;
+
+/**
+ * Turns text into the stems that are indexed and searched. Text is split into cleaned words by a
+ * {@link WordTokenizer}, words that are too short, too long or stop words are removed, and the rest
+ * are stemmed by a Snowball stemmer for the chosen language. The same analyzer must be used to
+ * build an index and to search it, so the stems of a query match the stems of the text.
+ *
+ * <p>An analyzer is safe to use from multiple threads. Each thread gets its own tokenizer and
+ * stemmer the first time it uses the analyzer, and reuses them for every later text. Stems are only
+ * shared between threads once the {@link StemCache} of the analyzer is given a capacity.
+ *
+ * @author Ravneet Singh Bhatia
+ * @version Spring 2024
+ */
+public class Analyzer {
+  /** Analyzer that stems every word with the English stemmer, without removing any words. */
+  public static final Analyzer ENGLISH =
+      new Analyzer(StemCache.ENGLISH, SnowballStemmer.ALGORITHM.ENGLISH, Set.of(), 0, -1);
+
+  /** Common English words that carry little meaning on their own. */
+  public static final Set<String> ENGLISH_STOPWORDS =
+      Set.of(
+          "a", "about", "after", "all", "also", "an", "and", "any", "are", "as", "at", "be",
+          "because", "been", "but", "by", "can", "could", "did", "do", "does", "for", "from", "had",
+          "has", "have", "he", "her", "his", "how", "i", "if", "in", "into", "is", "it", "its",
+          "just", "more", "my", "no", "not", "of", "on", "one", "or", "other", "our", "out", "she",
+          "so", "some", "such", "than", "that", "the", "their", "them", "then", "there", "these",
+          "they", "this", "to", "up", "us", "was", "we", "were", "what", "when", "which", "who",
+          "will", "with", "would", "you", "your");
+
+  /** Stems the words that are kept. */
+  private final StemCache stemmer;
+
+  /** The language of the stemmer. */
+  private final SnowballStemmer.ALGORITHM language;
+
+  /** Cleaned words that are removed before stemming. */
+  private final Set<String> stopwords;
+
+  /** Minimum number of characters of a kept word. */
+  private final int minLength;
+
+  /** Maximum number of characters of a kept word, or -1 if there is no maximum. */
+  private final int maxLength;
+
+  /** The tokenizer of each thread. */
+  private final ThreadLocal<WordTokenizer> tokenizers;
+
+  /**
+   * Creates a new analyzer.
+   *
+   * @param language the language of the Snowball stemmer
+   * @param stopwords cleaned words that are removed before stemming
+   * @param minLength minimum number of characters of a kept word
+   * @param maxLength maximum number of characters of a kept word, or -1 if there is no maximum
+   */
+  public Analyzer(
+      SnowballStemmer.ALGORITHM language,
+      Collection<String> stopwords,
+      int minLength,
+      int maxLength) {
+    this(
+        language == SnowballStemmer.ALGORITHM.ENGLISH
+            ? StemCache.ENGLISH
+            : new StemCache(() -> new SnowballStemmer(language), 0),
+        language,
+        stopwords,
+        minLength,
+        maxLength);
+  }
+
+  /**
+   * Creates a new analyzer.
+   *
+   * @param stemmer stems the words that are kept
+   * @param language the language of the stemmer
+   * @param stopwords cleaned words that are removed before stemming
+   * @param minLength minimum number of characters of a kept word
+   * @param maxLength maximum number of characters of a kept word, or -1 if there is no maximum
+   */
+  private Analyzer(
+      StemCache stemmer,
+      SnowballStemmer.ALGORITHM language,
+      Collection<String> stopwords,
+      int minLength,
+      int maxLength) {
+    if (maxLength >= 0 && maxLength < minLength) {
+      throw new IllegalArgumentException(
+          "Maximum length " + maxLength + " is less than minimum length " + minLength);
+    }
+    this.stemmer = stemmer;
+    this.language = language;
+    this.stopwords = Set.copyOf(stopwords);
+    this.minLength = minLength;
+    this.maxLength = maxLength;
+    this.tokenizers = ThreadLocal.withInitial(WordTokenizer::new);
+  }
+
+  /**
+   * Reads stop words from a text file. Each word is cleaned the same way as the text, so the file
+   * can be a list with one word per line or ordinary text.
+   *
+   * @param path the text file
+   * @return the cleaned stop words
+   * @throws IOException if unable to read the file
+   */
+  public static Set<String> readStopwords(Path path) throws IOException {
+    HashSet<String> words = new HashSet<>();
+    MappedTextReader.read(path, (word, position) -> words.add(word));
+    return words;
+  }
+
+  /**
+   * Checks if a cleaned word is kept, and returns its stem if it is.
+   *
+   * @param word the cleaned word
+   * @return the stem of the word, or null if the word is removed
+   */
+  public String stem(String word) {
+    int length = word.length();
+    if (length < minLength || (maxLength >= 0 && length > maxLength) || stopwords.contains(word)) {
+      return null;
+    }
+    return stemmer.stem(word).toString();
+  }
+
+  /**
+   * Passes each stem of the text to a callback, in order.
+   *
+   * @param text the text to analyze
+   * @param stems receives each stem
+   */
+  public void analyze(CharSequence text, Consumer<String> stems) {
+    tokenizers
+        .get()
+        .parse(
+            text,
+            word -> {
+              String stem = stem(word);
+              if (stem != null) {
+                stems.accept(stem);
+              }
+            });
+  }
+
+  /**
+   * Returns the stems of the text in order.
+   *
+   * @param text the text to analyze
+   * @return a list of stems in parsed order
+   * @see FileStemmer#listStems(String, Stemmer)
+   */
+  public ArrayList<String> listStems(CharSequence text) {
+    ArrayList<String> stems = new ArrayList<>();
+    analyze(text, stems::add);
+    return stems;
+  }
+
+  /**
+   * Returns the unique stems of the text in sorted order.
+   *
+   * @param text the text to analyze
+   * @return a sorted set of unique stems
+   * @see FileStemmer#uniqueStems(String, Stemmer)
+   */
+  public TreeSet<String> uniqueStems(CharSequence text) {
+    TreeSet<String> stems = new TreeSet<>();
+    analyze(text, stems::add);
+    return stems;
+  }
+
+  /**
+   * Returns the tokenizer of the calling thread.
+   *
+   * @return the tokenizer
+   */
+  WordTokenizer tokenizer() {
+    return tokenizers.get();
+  }
+
+  /**
+   * Returns the stemmer shared by every thread, which can cache stems and keep statistics of how
+   * often they are reused.
+   *
+   * @return the stemmer
+   */
+  public StemCache stemmer() {
+    return stemmer;
+  }
+
+  @Override
+  public String toString() {
+    return "Analyzer{"
+        + "language="
+        + language
+        + ", stopwords="
+        + stopwords.size()
+        + ", minLength="
+        + minLength
+        + ", maxLength="
+        + maxLength
+        + '}';
+  }
+}
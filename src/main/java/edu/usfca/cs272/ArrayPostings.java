@@ -0,0 +1,206 @@
+package edu.usfca.cs272;
+
+import java.util.Arrays;
+import java.util.TreeMap;
+
+/**
+ * Postings stored as a sorted array of document ids and a parallel array of position lists.
+ *
+ * @author Ravneet Singh Bhatia
+ * @version Spring 2024
+ */
+public class ArrayPostings implements Postings {
+  /** Initial capacity of new postings. */
+  private static final int DEFAULT_CAPACITY = 2;
+
+  /** Document ids, sorted in increasing order. */
+  private int[] docs;
+
+  /** Positions in each document, parallel to {@link #docs}. */
+  private PositionList[] positions;
+
+  /** Number of documents in the postings. */
+  private int size;
+
+  /** Creates new empty postings. */
+  public ArrayPostings() {
+    this.docs = new int[DEFAULT_CAPACITY];
+    this.positions = new PositionList[DEFAULT_CAPACITY];
+    this.size = 0;
+  }
+
+  @Override
+  public boolean add(int doc, int position) {
+    return getOrCreate(doc).add(position);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Position lists are always copied, so the other postings can still be changed afterward,
+   * such as by {@link #shift(int)}, without changing these postings.
+   */
+  @Override
+  public void addAll(Postings other, int[] docMap) {
+    if (other instanceof ArrayPostings array) {
+      for (int i = 0; i < array.size; i++) {
+        int doc = docMap[array.docs[i]];
+        int index = indexOf(doc);
+        if (index >= 0) {
+          positions[index].addAll(array.positions[i]);
+        } else {
+          PositionList copy = new PositionList();
+          copy.addAll(array.positions[i]);
+          insert(doc, copy);
+        }
+      }
+      return;
+    }
+
+    PostingsCursor cursor = other.cursor();
+    while (cursor.nextDoc() != PostingsCursor.NO_MORE_DOCS) {
+      PositionList list = getOrCreate(docMap[cursor.doc()]);
+      for (int i = cursor.frequency(); i > 0; i--) {
+        list.add(cursor.nextPosition());
+      }
+    }
+  }
+
+  @Override
+  public void renumber(int[] docMap) {
+    for (int i = 0; i < size; i++) {
+      docs[i] = docMap[docs[i]];
+    }
+  }
+
+  @Override
+  public void shift(int offset) {
+    for (int i = 0; i < size; i++) {
+      positions[i].shift(offset);
+    }
+  }
+
+  @Override
+  public PositionList get(int doc) {
+    int index = indexOf(doc);
+    return index >= 0 ? positions[index] : null;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public PostingsCursor cursor() {
+    return new PostingsCursor() {
+      /** Index of the current document. */
+      private int index = -1;
+
+      /** Index of the next position in the current document. */
+      private int next = 0;
+
+      @Override
+      public int nextDoc() {
+        index++;
+        next = 0;
+        return doc();
+      }
+
+      @Override
+      public int doc() {
+        if (index < 0) {
+          return -1;
+        }
+        return index < size ? docs[index] : NO_MORE_DOCS;
+      }
+
+      @Override
+      public int frequency() {
+        return positions[index].size();
+      }
+
+      @Override
+      public int nextPosition() {
+        return positions[index].get(next++);
+      }
+
+      @Override
+      public int advance(int target) {
+        if (index < size && (index < 0 || docs[index] < target)) {
+          int found = Arrays.binarySearch(docs, Math.max(index, 0), size, target);
+          index = found >= 0 ? found : -(found + 1);
+          next = 0;
+        }
+        return doc();
+      }
+    };
+  }
+
+  @Override
+  public TreeMap<String, PositionList> toMap(DocumentDictionary documents) {
+    TreeMap<String, PositionList> map = new TreeMap<>();
+    for (int i = 0; i < size; i++) {
+      map.put(documents.location(docs[i]), positions[i]);
+    }
+    return map;
+  }
+
+  /**
+   * Finds the index of a document id.
+   *
+   * @param doc the document id
+   * @return the index of the document, or {@code -(insertion point) - 1} if it is not present
+   */
+  private int indexOf(int doc) {
+    if (size > 0 && docs[size - 1] == doc) { // the last document is the common case.
+      return size - 1;
+    }
+    return Arrays.binarySearch(docs, 0, size, doc);
+  }
+
+  /**
+   * Returns the positions of a document, adding the document if it is not present.
+   *
+   * @param doc the document id
+   * @return the positions of the document
+   */
+  private PositionList getOrCreate(int doc) {
+    int index = indexOf(doc);
+    if (index >= 0) {
+      return positions[index];
+    }
+    PositionList list = new PositionList();
+    insert(doc, list);
+    return list;
+  }
+
+  /**
+   * Inserts a document that is not yet present, keeping the documents sorted.
+   *
+   * @param doc the document id
+   * @param list the positions of the document
+   */
+  private void insert(int doc, PositionList list) {
+    int index = size;
+    if (size > 0 && docs[size - 1] > doc) {
+      index = -(Arrays.binarySearch(docs, 0, size, doc) + 1);
+    }
+
+    if (size == docs.length) {
+      int grown = size + (size >> 1) + 1;
+      docs = Arrays.copyOf(docs, grown);
+      positions = Arrays.copyOf(positions, grown);
+    }
+    System.arraycopy(docs, index, docs, index + 1, size - index);
+    System.arraycopy(positions, index, positions, index + 1, size - index);
+    docs[index] = doc;
+    positions[index] = list;
+    size++;
+  }
+
+  @Override
+  public String toString() {
+    return "ArrayPostings{" + "size=" + size + '}';
+  }
+}
@@ -0,0 +1,344 @@
+package edu.usfca.cs272;
+
+import java.util.Arrays;
+import java.util.TreeMap;
+
+/**
+ * Postings compressed into a single byte array. Each document is stored as the variable-byte
+ * encoded difference from the previous document id, followed by the number of positions, the
+ * length in bytes of the positions, and the variable-byte encoded differences between consecutive
+ * positions. The byte length lets a cursor skip the positions of a document it does not need.
+ *
+ * <p>The last document added is kept uncompressed until a document with a larger id is added, so
+ * positions can keep being appended to it. Adding a document that is out of order decodes and
+ * re-encodes the postings.
+ *
+ * @author Ravneet Singh Bhatia
+ * @version Spring 2024
+ */
+public class CompressedPostings implements Postings {
+  /** Initial capacity of the byte array. */
+  private static final int DEFAULT_CAPACITY = 8;
+
+  /** The encoded documents. Only the first {@link #length} bytes are used. */
+  private byte[] bytes;
+
+  /** Number of bytes used. */
+  private int length;
+
+  /** Number of documents that have been encoded. */
+  private int encoded;
+
+  /** Id of the last encoded document, or 0 if none have been encoded. */
+  private int lastEncoded;
+
+  /** Id of the document that has not been encoded yet, or -1 if there is none. */
+  private int pendingDoc;
+
+  /** Positions of the document that has not been encoded yet. */
+  private final PositionList pending;
+
+  /** Creates new empty postings. */
+  public CompressedPostings() {
+    this.bytes = new byte[DEFAULT_CAPACITY];
+    this.length = 0;
+    this.encoded = 0;
+    this.lastEncoded = 0;
+    this.pendingDoc = -1;
+    this.pending = new PositionList();
+  }
+
+  @Override
+  public boolean add(int doc, int position) {
+    if (doc == pendingDoc) {
+      return pending.add(position);
+    }
+
+    if (doc > pendingDoc && (encoded == 0 || doc > lastEncoded)) {
+      flush();
+      pendingDoc = doc;
+      return pending.add(position);
+    }
+
+    ArrayPostings decoded = decode();
+    boolean added = decoded.add(doc, position);
+    encode(decoded);
+    return added;
+  }
+
+  @Override
+  public void addAll(Postings other, int[] docMap) {
+    if (isAppend(other, docMap)) {
+      PostingsCursor cursor = other.cursor();
+      while (cursor.nextDoc() != PostingsCursor.NO_MORE_DOCS) {
+        int doc = docMap[cursor.doc()];
+        for (int i = cursor.frequency(); i > 0; i--) {
+          add(doc, cursor.nextPosition());
+        }
+      }
+    } else {
+      ArrayPostings decoded = decode();
+      decoded.addAll(other, docMap);
+      encode(decoded);
+    }
+  }
+
+  @Override
+  public void renumber(int[] docMap) {
+    ArrayPostings decoded = decode();
+    decoded.renumber(docMap);
+    encode(decoded);
+  }
+
+  @Override
+  public void shift(int offset) {
+    ArrayPostings decoded = decode();
+    decoded.shift(offset);
+    encode(decoded);
+  }
+
+  @Override
+  public PositionList get(int doc) {
+    PostingsCursor cursor = cursor();
+    if (cursor.advance(doc) != doc) {
+      return null;
+    }
+    PositionList list = new PositionList();
+    for (int i = cursor.frequency(); i > 0; i--) {
+      list.add(cursor.nextPosition());
+    }
+    return list;
+  }
+
+  @Override
+  public int size() {
+    return pendingDoc >= 0 ? encoded + 1 : encoded;
+  }
+
+  /**
+   * Returns the number of bytes used by the encoded documents.
+   *
+   * @return the number of bytes used
+   */
+  public int bytes() {
+    return length;
+  }
+
+  @Override
+  public PostingsCursor cursor() {
+    return new Cursor();
+  }
+
+  @Override
+  public TreeMap<String, PositionList> toMap(DocumentDictionary documents) {
+    TreeMap<String, PositionList> map = new TreeMap<>();
+    PostingsCursor cursor = cursor();
+    while (cursor.nextDoc() != PostingsCursor.NO_MORE_DOCS) {
+      PositionList list = new PositionList();
+      for (int i = cursor.frequency(); i > 0; i--) {
+        list.add(cursor.nextPosition());
+      }
+      map.put(documents.location(cursor.doc()), list);
+    }
+    return map;
+  }
+
+  /**
+   * Checks if the documents of other postings can be appended without re-encoding.
+   *
+   * @param other the postings to add
+   * @param docMap maps the document ids of the other postings to the ids used by this one
+   * @return true if the translated documents are increasing and not before the last document
+   */
+  private boolean isAppend(Postings other, int[] docMap) {
+    int previous = Math.max(pendingDoc, encoded == 0 ? -1 : lastEncoded);
+    PostingsCursor cursor = other.cursor();
+    while (cursor.nextDoc() != PostingsCursor.NO_MORE_DOCS) {
+      int doc = docMap[cursor.doc()];
+      if (doc < previous || (doc == previous && doc != pendingDoc)) {
+        return false;
+      }
+      previous = doc;
+    }
+    return true;
+  }
+
+  /** Encodes the pending document, if there is one. */
+  private void flush() {
+    if (pendingDoc < 0) {
+      return;
+    }
+
+    int size = pending.size();
+    int positionBytes = 0;
+    int previous = 0;
+    for (int i = 0; i < size; i++) {
+      positionBytes += VarInt.size(pending.get(i) - previous);
+      previous = pending.get(i);
+    }
+
+    int docDelta = pendingDoc - lastEncoded;
+    ensureCapacity(
+        length
+            + VarInt.size(docDelta)
+            + VarInt.size(size)
+            + VarInt.size(positionBytes)
+            + positionBytes);
+    length = VarInt.write(docDelta, bytes, length);
+    length = VarInt.write(size, bytes, length);
+    length = VarInt.write(positionBytes, bytes, length);
+    previous = 0;
+    for (int i = 0; i < size; i++) {
+      length = VarInt.write(pending.get(i) - previous, bytes, length);
+      previous = pending.get(i);
+    }
+
+    encoded++;
+    lastEncoded = pendingDoc;
+    pendingDoc = -1;
+    pending.clear();
+  }
+
+  /**
+   * Decodes all documents into array postings.
+   *
+   * @return the decoded postings, using the same document ids
+   */
+  private ArrayPostings decode() {
+    ArrayPostings decoded = new ArrayPostings();
+    PostingsCursor cursor = cursor();
+    while (cursor.nextDoc() != PostingsCursor.NO_MORE_DOCS) {
+      int doc = cursor.doc();
+      for (int i = cursor.frequency(); i > 0; i--) {
+        decoded.add(doc, cursor.nextPosition());
+      }
+    }
+    return decoded;
+  }
+
+  /**
+   * Replaces the contents of these postings with the encoding of other postings.
+   *
+   * @param postings the postings to encode
+   */
+  private void encode(Postings postings) {
+    length = 0;
+    encoded = 0;
+    lastEncoded = 0;
+    pendingDoc = -1;
+    pending.clear();
+
+    PostingsCursor cursor = postings.cursor();
+    while (cursor.nextDoc() != PostingsCursor.NO_MORE_DOCS) {
+      flush();
+      pendingDoc = cursor.doc();
+      for (int i = cursor.frequency(); i > 0; i--) {
+        pending.add(cursor.nextPosition());
+      }
+    }
+  }
+
+  /**
+   * Grows the byte array by half when it is too small to hold the requested capacity.
+   *
+   * @param capacity the number of bytes the array needs to hold
+   */
+  private void ensureCapacity(int capacity) {
+    if (capacity > bytes.length) {
+      int grown = bytes.length + (bytes.length >> 1);
+      bytes = Arrays.copyOf(bytes, Math.max(grown, capacity));
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "CompressedPostings{" + "size=" + size() + ", bytes=" + length + '}';
+  }
+
+  /** Cursor that decodes the documents and their positions lazily. */
+  private class Cursor implements PostingsCursor {
+    /** Offset of the next document in the byte array. */
+    private int offset;
+
+    /** Offset of the end of the positions of the current document. */
+    private int end;
+
+    /** Number of encoded documents that have been visited. */
+    private int visited;
+
+    /** The current document id. */
+    private int doc;
+
+    /** Number of positions in the current document. */
+    private int frequency;
+
+    /** The last position read from the current document. */
+    private int position;
+
+    /** Index of the next position to read from the pending document. */
+    private int next;
+
+    /** Creates a cursor positioned before the first document. */
+    private Cursor() {
+      this.offset = 0;
+      this.end = 0;
+      this.visited = 0;
+      this.doc = -1;
+    }
+
+    @Override
+    public int nextDoc() {
+      if (doc == NO_MORE_DOCS) {
+        return doc;
+      }
+
+      if (visited < encoded) {
+        offset = end; // skip any positions that were not read.
+        long delta = VarInt.read(bytes, offset);
+        offset = VarInt.next(delta);
+        doc = (visited == 0 ? 0 : doc) + VarInt.value(delta);
+
+        long count = VarInt.read(bytes, offset);
+        offset = VarInt.next(count);
+        frequency = VarInt.value(count);
+
+        long positionBytes = VarInt.read(bytes, offset);
+        offset = VarInt.next(positionBytes);
+        end = offset + VarInt.value(positionBytes);
+
+        position = 0;
+        visited++;
+      } else if (visited == encoded && pendingDoc >= 0) {
+        doc = pendingDoc;
+        frequency = pending.size();
+        next = 0;
+        visited++;
+      } else {
+        doc = NO_MORE_DOCS;
+        frequency = 0;
+      }
+      return doc;
+    }
+
+    @Override
+    public int doc() {
+      return doc;
+    }
+
+    @Override
+    public int frequency() {
+      return frequency;
+    }
+
+    @Override
+    public int nextPosition() {
+      if (visited > encoded) {
+        return pending.get(next++);
+      }
+      long delta = VarInt.read(bytes, offset);
+      offset = VarInt.next(delta);
+      position += VarInt.value(delta);
+      return position;
+    }
+  }
+}
@@ -0,0 +1,51 @@
+package edu.usfca.cs272;
+
+/**
+ * Forward-only cursor over the documents that contain a single word. The cursor starts before the
+ * first document, and documents are visited in increasing document id order. Only the frequency of
+ * the word in each document is available, which is all that scoring needs.
+ *
+ * @author Ravneet Singh Bhatia
+ * @version Spring 2024
+ * @see PostingsCursor
+ */
+public interface DocumentCursor {
+  /** Document id returned once the cursor has moved past the last document. */
+  int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+  /**
+   * Moves the cursor to the next document.
+   *
+   * @return the next document id, or {@link #NO_MORE_DOCS} if there are no more documents
+   */
+  int nextDoc();
+
+  /**
+   * Returns the current document id.
+   *
+   * @return the current document id, -1 if {@link #nextDoc()} has not been called yet, or {@link
+   *     #NO_MORE_DOCS} if the cursor is exhausted
+   */
+  int doc();
+
+  /**
+   * Returns the number of positions of the word in the current document.
+   *
+   * @return the number of positions in the current document
+   */
+  int frequency();
+
+  /**
+   * Moves the cursor to the first document with an id greater than or equal to the target.
+   *
+   * @param target the document id to move to
+   * @return the new current document id, or {@link #NO_MORE_DOCS} if there is no such document
+   */
+  default int advance(int target) {
+    int doc = doc();
+    while (doc < target) {
+      doc = nextDoc();
+    }
+    return doc;
+  }
+}
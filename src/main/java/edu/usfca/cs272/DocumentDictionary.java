@@ -0,0 +1,146 @@
+package edu.usfca.cs272;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Maps each location (file path or url) in the index to a dense integer document id, so the
+ * location string is stored once instead of once per word. Also keeps the stem count of every
+ * document, indexed by document id.
+ *
+ * <p>Warning: This class is not thread-safe. If multiple threads access this class concurrently,
+ * access must be synchronized externally.
+ *
+ * @author Ravneet Singh Bhatia
+ * @version Spring 2024
+ */
+public class DocumentDictionary {
+  /** Initial capacity of the document arrays. */
+  private static final int DEFAULT_CAPACITY = 16;
+
+  /** Map from location to document id. */
+  private final HashMap<String, Integer> ids;
+
+  /** The location of each document, indexed by document id. */
+  private String[] locations;
+
+  /** The stem count of each document, indexed by document id. */
+  private int[] counts;
+
+  /** Number of documents in the dictionary. */
+  private int size;
+
+  /** Creates a new empty document dictionary. */
+  public DocumentDictionary() {
+    this.ids = new HashMap<>();
+    this.locations = new String[DEFAULT_CAPACITY];
+    this.counts = new int[DEFAULT_CAPACITY];
+    this.size = 0;
+  }
+
+  /**
+   * Creates a copy of another document dictionary. Later changes to either dictionary do not affect
+   * the other.
+   *
+   * @param other the dictionary to copy
+   */
+  public DocumentDictionary(DocumentDictionary other) {
+    this.ids = new HashMap<>(other.ids);
+    this.locations = Arrays.copyOf(other.locations, Math.max(other.size, 1));
+    this.counts = Arrays.copyOf(other.counts, Math.max(other.size, 1));
+    this.size = other.size;
+  }
+
+  /**
+   * Returns the id of a location, assigning the next free id if the location is new.
+   *
+   * @param location the location to look up
+   * @return the document id of the location
+   */
+  public int id(String location) {
+    Integer id = ids.get(location);
+    if (id != null) {
+      return id;
+    }
+
+    if (size == locations.length) {
+      int grown = size + (size >> 1) + 1;
+      locations = Arrays.copyOf(locations, grown);
+      counts = Arrays.copyOf(counts, grown);
+    }
+    locations[size] = location;
+    ids.put(location, size);
+    return size++;
+  }
+
+  /**
+   * Returns the id of a location without adding it.
+   *
+   * @param location the location to look up
+   * @return the document id of the location, or -1 if the location is not in the dictionary
+   */
+  public int find(String location) {
+    Integer id = ids.get(location);
+    return id == null ? -1 : id;
+  }
+
+  /**
+   * Returns the location of a document.
+   *
+   * @param doc the document id
+   * @return the location of the document
+   */
+  public String location(int doc) {
+    return locations[doc];
+  }
+
+  /**
+   * Returns the stem count of a document.
+   *
+   * @param doc the document id
+   * @return the stem count of the document
+   */
+  public int count(int doc) {
+    return counts[doc];
+  }
+
+  /**
+   * Updates the stem count of a document if the new count is larger.
+   *
+   * @param doc the document id
+   * @param count the new stem count
+   */
+  public void updateCount(int doc, int count) {
+    counts[doc] = Math.max(counts[doc], count);
+  }
+
+  /**
+   * Returns the number of documents in the dictionary.
+   *
+   * @return the number of documents in the dictionary
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns an unmodifiable map of locations and their stem counts, sorted by location.
+   *
+   * @return unmodifiable map of locations and their stem counts
+   */
+  public Map<String, Integer> getCounts() {
+    TreeMap<String, Integer> map = new TreeMap<>();
+    for (int doc = 0; doc < size; doc++) {
+      map.put(locations[doc], counts[doc]);
+    }
+    return Collections.unmodifiableMap(map);
+  }
+
+  @Override
+  public String toString() {
+    return "DocumentDictionary{" + "size=" + size + '}';
+  }
+}
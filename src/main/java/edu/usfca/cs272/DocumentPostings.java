@@ -0,0 +1,26 @@
+package edu.usfca.cs272;
+
+/**
+ * The documents a single word occurs in, sorted by document id, and how many times the word occurs
+ * in each of them. This is all that scoring and freezing need, so postings that do not keep
+ * positions can still be searched.
+ *
+ * @author Ravneet Singh Bhatia
+ * @version Spring 2024
+ * @see Postings
+ */
+public interface DocumentPostings {
+  /**
+   * Returns the number of documents in the postings.
+   *
+   * @return the number of documents
+   */
+  int size();
+
+  /**
+   * Returns a new cursor positioned before the first document.
+   *
+   * @return a new cursor over the documents
+   */
+  DocumentCursor cursor();
+}
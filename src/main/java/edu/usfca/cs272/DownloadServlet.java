@@ -22,24 +22,22 @@ public class DownloadServlet extends HttpServlet {
   @Serial private static final long serialVersionUID = 202401;
 
   /** The inverted index from which the downloadable file will be generated. */
-  private final transient ThreadSafeInvertedIndex index;
+  private final transient SearchableIndex index;
 
   /**
    * Creates a new DownloadServlet.
    *
    * @param index the inverted index from which the downloadable file will be generated.
    */
-  public DownloadServlet(ThreadSafeInvertedIndex index) {
+  public DownloadServlet(SearchableIndex index) {
     this.index = index;
   }
 
   @Override
   protected void doGet(HttpServletRequest request, HttpServletResponse response)
       throws ServletException, IOException {
-    String content = index.toString();
-    byte[] bytes = content.getBytes();
     Path temp = Files.createTempFile("index", ".json");
-    Files.write(temp, bytes);
+    index.toJson(temp);
     response.setContentType("application/octet-stream");
     response.setHeader("Content-Disposition", "attachment; filename=\"index.json\"");
     try {
@@ -5,6 +5,8 @@ import java.nio.file.Path;
 import java.sql.SQLException;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Set;
+import opennlp.tools.stemmer.snowball.SnowballStemmer;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -27,9 +29,24 @@ public class Driver {
   /** Default path for output file for results. */
   public static final Path DEFAULT_RESULTS = Path.of("results.json");
 
+  /** Default path for the binary index snapshot. */
+  public static final Path DEFAULT_SNAPSHOT = Path.of("index.snapshot");
+
   /** Default number of threads to be used when multithreading. */
   public static final int DEFAULT_THREADS = 5;
 
+  /** Default number of positions buffered by a segmented index before it flushes a segment. */
+  public static final int DEFAULT_SEGMENT = 1 << 20;
+
+  /** Default memory budget of an external-memory build, in megabytes. */
+  public static final int DEFAULT_MEMORY = 256;
+
+  /** Default minimum time between two published generations of the index, in milliseconds. */
+  public static final long DEFAULT_REFRESH = 1000;
+
+  /** Default maximum number of tasks waiting for a worker of a bounded work queue. */
+  public static final int DEFAULT_CAPACITY = 1024;
+
   /** The default number of webpages to crawl. */
   public static final int DEFAULT_CRAWL = 1;
 
@@ -51,19 +68,62 @@ public class Driver {
     Instant start = Instant.now();
 
     ArgumentParser argParser = new ArgumentParser(args);
-    InvertedIndex index;
+    MutableIndex index;
+    SearchableIndex searchable;
+    IndexSnapshot snapshot = null;
+    PublishedIndex published = null;
     InvertedIndexBuilder builder;
     Processor processor;
     WorkQueue queue = null;
     WebCrawler crawler = null;
     SearchServer server = null;
 
+    Analyzer analyzer = analyzer(argParser);
+    if (argParser.hasFlag("-stems")) { // cache shared stems and report how well it works.
+      int capacity = argParser.getInteger("-stems", StemCache.DEFAULT_CAPACITY);
+      analyzer.stemmer().setCapacity(capacity < 0 ? StemCache.DEFAULT_CAPACITY : capacity);
+    }
+
     boolean partial = argParser.hasFlag("-partial");
+    boolean compress = argParser.hasFlag("-compress");
 
     if (argParser.hasFlag("-server")) { // Always perform a partial search when running the server.
       partial = true;
     }
 
+    if (argParser.hasValue("-load")) { // search a saved snapshot instead of the built index.
+      Path path = argParser.getPath("-load");
+      try {
+        snapshot = IndexSnapshot.open(path);
+        log.info("Loaded snapshot {}.", path);
+      } catch (IOException e) {
+        log.error("Unable to load snapshot from path: {}", path);
+      }
+    }
+
+    boolean external = argParser.hasFlag("-memory") && argParser.hasValue("-text");
+    if (external) { // build a snapshot on disk within a memory budget, then search it.
+      Path path = argParser.getPath("-text");
+      Path snapshotOutput = argParser.getPath("-save", DEFAULT_SNAPSHOT);
+      int memory = argParser.getInteger("-memory", DEFAULT_MEMORY);
+      if (memory < 1) {
+        memory = DEFAULT_MEMORY;
+      }
+      SpimiIndexBuilder spimi =
+          new SpimiIndexBuilder(snapshotOutput, memory * 1024L * 1024L, analyzer);
+      try {
+        spimi.build(path);
+        snapshot = IndexSnapshot.open(snapshotOutput);
+        System.out.printf(
+            "Spilled %d runs in %f seconds, merged in %f seconds%n",
+            spimi.runs(),
+            spimi.spillTime().toMillis() / 1000.0,
+            spimi.mergeTime().toMillis() / 1000.0);
+      } catch (IOException e) {
+        log.error("Unable to build snapshot from path: {}", path);
+      }
+    }
+
     // Multi-Threading?
     if (argParser.hasFlag("-threads")
         || argParser.hasValue("-html")
@@ -72,21 +132,58 @@ public class Driver {
       if (threads < 1) {
         threads = DEFAULT_THREADS;
       }
-      queue = new WorkQueue(threads);
-      ThreadSafeInvertedIndex threadedIndex = new ThreadSafeInvertedIndex();
+      int capacity = 0;
+      if (argParser.hasFlag("-capacity")) { // bound the tasks waiting for a worker.
+        capacity = argParser.getInteger("-capacity", DEFAULT_CAPACITY);
+        if (capacity < 1) {
+          capacity = DEFAULT_CAPACITY;
+        }
+      }
+      // -steal gives each worker its own deque.
+      queue = new WorkQueue(threads, argParser.hasFlag("-steal"), capacity, policy(argParser));
+      MutableIndex threadedIndex;
+      if (argParser.hasFlag("-frequencies")) { // keep frequencies but not positions.
+        threadedIndex = new ThreadSafeFrequencyIndex();
+      } else if (argParser.hasFlag("-segments")) { // flush immutable segments as it grows.
+        threadedIndex = new SegmentedInvertedIndex(segmentSize(argParser), compress);
+      } else {
+        threadedIndex = new ThreadSafeInvertedIndex(compress);
+      }
       index = threadedIndex;
-      builder = new ThreadSafeInvertedIndexBuilder(threadedIndex, queue);
-      processor = new ThreadSafeQueryProcessor(threadedIndex, queue, partial);
+      searchable = snapshot != null ? snapshot : threadedIndex;
+      if (snapshot == null && argParser.hasFlag("-refresh")) { // search published generations.
+        long refresh = argParser.getInteger("-refresh", (int) DEFAULT_REFRESH);
+        if (refresh < 1) {
+          refresh = DEFAULT_REFRESH;
+        }
+        published = new PublishedIndex(threadedIndex, refresh);
+        published.start();
+        searchable = published;
+      }
+      // -reduce keeps an index per worker and merges them once, instead of locking per file.
+      builder =
+          new ThreadSafeInvertedIndexBuilder(
+              threadedIndex, queue, argParser.hasFlag("-reduce"), analyzer);
+      processor = new ThreadSafeQueryProcessor(searchable, queue, partial, analyzer);
+      int fetches = 0;
+      if (argParser.hasFlag("-virtual")) { // download on virtual threads, index on the workers.
+        fetches = argParser.getInteger("-virtual", WebCrawler.DEFAULT_FETCHES);
+        if (fetches < 1) {
+          fetches = WebCrawler.DEFAULT_FETCHES;
+        }
+      }
       if (argParser.hasValue("-html")) { // the seed for the crawl.
         int crawl = argParser.getInteger("-crawl", DEFAULT_CRAWL);
-        crawler = new WebCrawler(threadedIndex, queue, argParser.getString("-html"), crawl);
+        crawler =
+            new WebCrawler(
+                threadedIndex, queue, argParser.getString("-html"), crawl, analyzer, fetches);
       }
       if (argParser.hasFlag("-server")) {
         int port = argParser.getInteger("-server", DEFAULT_PORT);
         try {
           DatabaseConnector db = new DatabaseConnector(Path.of("src/main/resources/database.properties"));
           db.createTables();
-          server = new SearchServer(port, threadedIndex, processor, queue);
+          server = new SearchServer(port, searchable, processor, queue, fetches > 0);
         } catch (IOException e) {
           log.error("Could not find template files.");
         } catch (SQLException e) {
@@ -94,12 +191,27 @@ public class Driver {
         }
       }
     } else { // Single Threaded Search Engine.
-      index = new InvertedIndex();
-      builder = new InvertedIndexBuilder(index);
-      processor = new QueryProcessor(index, partial);
+      if (argParser.hasFlag("-frequencies")) {
+        index = new FrequencyIndex();
+      } else if (argParser.hasFlag("-segments")) {
+        index = new SegmentedInvertedIndex(segmentSize(argParser), compress);
+      } else {
+        index = new InvertedIndex(compress);
+      }
+      searchable = snapshot != null ? snapshot : index;
+      builder = new InvertedIndexBuilder(index, analyzer);
+      processor = new QueryProcessor(searchable, partial, analyzer);
     }
 
-    if (argParser.hasValue("-text")) {
+    if (server != null && published != null) {
+      try { // searches read published generations, so they can be served while building.
+        server.launch();
+      } catch (Exception e) {
+        log.info("Unable to start server.");
+      }
+    }
+
+    if (argParser.hasValue("-text") && !external) {
       Path path = argParser.getPath("-text");
       log.info("Using {} for source.", path);
       try {
@@ -115,7 +227,27 @@ public class Driver {
       System.out.println("CRAWLING COMPLETE");
     }
 
-    if (server != null) {
+    if (published != null) {
+      published.stop(); // publish everything that was built.
+    } else if (argParser.hasValue("-query") || server != null) {
+      index.freeze(); // building is done, so searches can use the read-optimized index.
+    }
+
+    if (argParser.hasFlag("-save") && !external) { // an external build already saved it.
+      Path snapshotOutput = argParser.getPath("-save", DEFAULT_SNAPSHOT);
+      if (index instanceof PositionalIndex positional) {
+        try {
+          positional.toSnapshot(snapshotOutput);
+          log.info("Saved snapshot {}.", snapshotOutput);
+        } catch (IOException e) {
+          System.err.printf("Unable to write snapshot to path: %s", snapshotOutput);
+        }
+      } else { // snapshots hold positions.
+        log.error("Unable to save snapshot without positions to path: {}", snapshotOutput);
+      }
+    }
+
+    if (server != null && published == null) {
       try {
         server.launch();
       } catch (Exception e) {
@@ -139,7 +271,7 @@ public class Driver {
     if (argParser.hasFlag("-counts")) {
       Path countOutput = argParser.getPath("-counts", DEFAULT_COUNTS);
       try {
-        JsonWriter.writeObject(index.getCounts(), countOutput);
+        JsonWriter.writeObject(searchable.getCounts(), countOutput);
       } catch (IOException e) {
         System.err.printf("Unable to write counts to path: %s", countOutput);
       }
@@ -148,7 +280,7 @@ public class Driver {
     if (argParser.hasFlag("-index")) {
       Path indexOutput = argParser.getPath("-index", DEFAULT_INDEX);
       try {
-        index.toJson(indexOutput);
+        searchable.toJson(indexOutput);
       } catch (IOException e) {
         System.err.printf("Unable to write index to path: %s", indexOutput);
       }
@@ -163,9 +295,94 @@ public class Driver {
       }
     }
 
+    if (argParser.hasFlag("-stems")) {
+      StemCache stems = analyzer.stemmer();
+      System.out.printf(
+          "Stem cache: %d hits, %d misses, %.1f%% hit rate, %d of %d words cached%n",
+          stems.hits(), stems.misses(), stems.hitRate() * 100, stems.size(), stems.capacity());
+    }
+
+    if (queue != null && queue.capacity() > 0) {
+      System.out.printf(
+          "Work queue: high-water mark of %d of %d tasks, %d tasks found it full (%s)%n",
+          queue.highWater(), queue.capacity(), queue.overflows(), queue.policy());
+    }
+
     // calculate time elapsed and output
     long elapsed = Duration.between(start, Instant.now()).toMillis();
     double seconds = (double) elapsed / Duration.ofSeconds(1).toMillis();
     System.out.printf("Elapsed: %f seconds%n", seconds);
   }
+
+  /**
+   * Returns what a bounded work queue does with a task queued while it is full, chosen by the
+   * -policy flag as block, caller-runs or drop.
+   *
+   * @param argParser the parsed command line arguments
+   * @return the policy, or {@link WorkQueue.Policy#BLOCK} if the flag is missing or unknown
+   */
+  private static WorkQueue.Policy policy(ArgumentParser argParser) {
+    String name = argParser.getString("-policy", WorkQueue.Policy.BLOCK.name());
+    try {
+      return WorkQueue.Policy.valueOf(name.toUpperCase().replace('-', '_'));
+    } catch (IllegalArgumentException e) {
+      log.error("Unknown work queue policy {}, blocking instead.", name);
+      return WorkQueue.Policy.BLOCK;
+    }
+  }
+
+  /**
+   * Returns the analyzer chosen by the command line arguments. The -language flag picks a Snowball
+   * stemmer, -stopwords removes the words in a file or a built-in English list, and -minlength and
+   * -maxlength remove words by their number of characters.
+   *
+   * @param argParser the parsed command line arguments
+   * @return the analyzer, or the default English analyzer if none of its flags are present
+   */
+  private static Analyzer analyzer(ArgumentParser argParser) {
+    if (!argParser.hasFlag("-language")
+        && !argParser.hasFlag("-stopwords")
+        && !argParser.hasFlag("-minlength")
+        && !argParser.hasFlag("-maxlength")) {
+      return Analyzer.ENGLISH;
+    }
+
+    SnowballStemmer.ALGORITHM language = SnowballStemmer.ALGORITHM.ENGLISH;
+    String name = argParser.getString("-language", language.name());
+    try {
+      language = SnowballStemmer.ALGORITHM.valueOf(name.toUpperCase());
+    } catch (IllegalArgumentException e) {
+      log.error("Unknown language {}, using English.", name);
+    }
+
+    Set<String> stopwords = Set.of();
+    if (argParser.hasValue("-stopwords")) {
+      Path path = argParser.getPath("-stopwords");
+      try {
+        stopwords = Analyzer.readStopwords(path);
+      } catch (IOException e) {
+        log.error("Unable to read stop words from path: {}", path);
+      }
+    } else if (argParser.hasFlag("-stopwords")) {
+      stopwords = Analyzer.ENGLISH_STOPWORDS;
+    }
+
+    int minLength = Math.max(0, argParser.getInteger("-minlength", 0));
+    int maxLength = argParser.getInteger("-maxlength", -1);
+    if (maxLength >= 0 && maxLength < minLength) {
+      maxLength = -1;
+    }
+    return new Analyzer(language, stopwords, minLength, maxLength);
+  }
+
+  /**
+   * Returns the number of positions a segmented index buffers before it flushes a segment.
+   *
+   * @param argParser the parsed command line arguments
+   * @return the value of the segments flag, or the default if it is missing or invalid
+   */
+  private static int segmentSize(ArgumentParser argParser) {
+    int size = argParser.getInteger("-segments", DEFAULT_SEGMENT);
+    return size < 1 ? DEFAULT_SEGMENT : size;
+  }
 }
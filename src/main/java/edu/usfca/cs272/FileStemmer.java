@@ -11,8 +11,6 @@ import java.util.Collection;
 import java.util.TreeSet;
 import java.util.regex.Pattern;
 import opennlp.tools.stemmer.Stemmer;
-import opennlp.tools.stemmer.snowball.SnowballStemmer;
-import opennlp.tools.stemmer.snowball.SnowballStemmer.ALGORITHM;
 
 /**
  * Utility class for parsing, cleaning, and stemming text and text files into collections of
@@ -59,10 +57,13 @@ public class FileStemmer {
    * @param text the text to clean and split
    * @return an array of {@link String} objects
    * @see #clean(String)
-   * @see #parse(String)
+   * @see #split(String)
+   * @see WordTokenizer
    */
   public static String[] parse(String text) {
-    return split(clean(text));
+    ArrayList<String> words = new ArrayList<>();
+    new WordTokenizer().parse(text, words::add);
+    return words.toArray(String[]::new);
   }
 
   /**
@@ -76,10 +77,7 @@ public class FileStemmer {
    * @see Collection#add(Object)
    */
   public static void addStems(String line, Stemmer stemmer, Collection<? super String> stems) {
-    String[] words = parse(line);
-    for (String word : words) {
-      stems.add(stemmer.stem(word).toString());
-    }
+    new WordTokenizer().parse(line, word -> stems.add(stemmer.stem(word).toString()));
   }
 
   /**
@@ -103,12 +101,11 @@ public class FileStemmer {
    *
    * @param line the line of words to parse and stem
    * @return a list of cleaned and stemmed words in parsed order
-   * @see SnowballStemmer#SnowballStemmer(ALGORITHM)
-   * @see ALGORITHM#ENGLISH
+   * @see StemCache#ENGLISH
    * @see #listStems(String, Stemmer)
    */
   public static ArrayList<String> listStems(String line) {
-    Stemmer stemmer = new SnowballStemmer(ALGORITHM.ENGLISH);
+    Stemmer stemmer = StemCache.ENGLISH;
     return listStems(line, stemmer);
   }
 
@@ -119,20 +116,14 @@ public class FileStemmer {
    * @param input the input file to parse and stem
    * @return a list of stems from file in parsed order
    * @throws IOException if unable to read or parse file
-   * @see SnowballStemmer
-   * @see ALGORITHM#ENGLISH
+   * @see StemCache#ENGLISH
    * @see StandardCharsets#UTF_8
-   * @see #listStems(String, Stemmer)
+   * @see MappedTextReader
    */
   public static ArrayList<String> listStems(Path input) throws IOException {
     ArrayList<String> list = new ArrayList<>();
-    Stemmer stemmer = new SnowballStemmer(ALGORITHM.ENGLISH);
-    try (BufferedReader br = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
-      String line;
-      while ((line = br.readLine()) != null) {
-        addStems(line, stemmer, list);
-      }
-    }
+    MappedTextReader.read(
+        input, 0, Long.MAX_VALUE, Analyzer.ENGLISH, (stem, position) -> list.add(stem));
     return list;
   }
 
@@ -158,12 +149,11 @@ public class FileStemmer {
    *
    * @param line the line of words to parse and stem
    * @return a sorted set of unique cleaned and stemmed words
-   * @see SnowballStemmer#SnowballStemmer(ALGORITHM)
-   * @see ALGORITHM#ENGLISH
+   * @see StemCache#ENGLISH
    * @see #uniqueStems(String, Stemmer)
    */
   public static TreeSet<String> uniqueStems(String line) {
-    Stemmer stemmer = new SnowballStemmer(ALGORITHM.ENGLISH);
+    Stemmer stemmer = StemCache.ENGLISH;
     return uniqueStems(line, stemmer);
   }
 
@@ -174,14 +164,13 @@ public class FileStemmer {
    * @param input the input file to parse and stem
    * @return a sorted set of unique cleaned and stemmed words from file
    * @throws IOException if unable to read or parse file
-   * @see SnowballStemmer
-   * @see ALGORITHM#ENGLISH
+   * @see StemCache#ENGLISH
    * @see StandardCharsets#UTF_8
    * @see #uniqueStems(String, Stemmer)
    */
   public static TreeSet<String> uniqueStems(Path input) throws IOException {
     TreeSet<String> set = new TreeSet<>();
-    Stemmer stemmer = new SnowballStemmer(ALGORITHM.ENGLISH);
+    Stemmer stemmer = StemCache.ENGLISH;
     try (BufferedReader br = Files.newBufferedReader(input)) {
       String line;
       while ((line = br.readLine()) != null) {
@@ -199,8 +188,7 @@ public class FileStemmer {
    * @param input the input file to parse and stem
    * @return a list where each item is the sets of unique sorted stems parsed from a single line of
    *     the input file
-   * @see SnowballStemmer
-   * @see ALGORITHM#ENGLISH
+   * @see StemCache#ENGLISH
    * @see StandardCharsets#UTF_8
    * @see #uniqueStems(String, Stemmer)
    * @throws IOException if the path is null or invalid.
@@ -209,7 +197,7 @@ public class FileStemmer {
     ArrayList<TreeSet<String>> list = new ArrayList<>();
     try (BufferedReader br = Files.newBufferedReader(input)) {
       String line;
-      Stemmer stemmer = new SnowballStemmer(ALGORITHM.ENGLISH);
+      Stemmer stemmer = StemCache.ENGLISH;
       while ((line = br.readLine()) != null) {
         list.add(uniqueStems(line, stemmer));
       }
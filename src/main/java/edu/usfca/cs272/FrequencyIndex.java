@@ -0,0 +1,362 @@
+package edu.usfca.cs272;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Inverted index that only keeps how many times each stem occurs in each location, not where.
+ * Searching only needs the frequencies, so results and counts are the same as with an {@link
+ * InvertedIndex}, while the postings of common stems take one int per location instead of one per
+ * occurrence. The positions of a stem can not be looked up, so the index is written as JSON with
+ * the frequency of each stem in each location, and can not be saved as a snapshot.
+ *
+ * <p>Local indexes merged into this index still keep their positions while they are built, which
+ * are dropped when they are merged.
+ *
+ * @author Ravneet Singh Bhatia
+ * @version Spring 2024
+ */
+public class FrequencyIndex implements MutableIndex {
+  /** The postings of every stem, sorted by stem. */
+  private final TreeMap<String, FrequencyPostings> index;
+
+  /** Document ids and stem counts of every location. */
+  private final DocumentDictionary documents;
+
+  /** Read-optimized copy of the index, or null if the index changed since it was last frozen. */
+  private volatile FrozenIndex frozen;
+
+  /** Number of changes made to the index, used to tell whether a frozen copy is still current. */
+  private long version;
+
+  /** Creates a new frequency-only index. */
+  public FrequencyIndex() {
+    this.index = new TreeMap<>();
+    this.documents = new DocumentDictionary();
+    this.frozen = null;
+    this.version = 0;
+  }
+
+  @Override
+  public Set<String> getWords() {
+    return Collections.unmodifiableSet(this.index.keySet());
+  }
+
+  @Override
+  public Set<String> getLocations(String word) {
+    var postings = this.index.get(word);
+    if (postings == null) {
+      return Collections.emptySet();
+    }
+    return Collections.unmodifiableSet(frequencies(postings).keySet());
+  }
+
+  @Override
+  public Map<String, Integer> getCounts() {
+    return this.documents.getCounts();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The location is only used for the stem count of the path, so each location of a path must
+   * only be added once.
+   */
+  @Override
+  public boolean add(String stem, String path, int location) {
+    add(stem, this.documents.id(path), location);
+    return true;
+  }
+
+  @Override
+  public boolean addAll(String path, Collection<String> stems) {
+    int doc = this.documents.id(path);
+    int location = 1;
+    for (String stem : stems) {
+      add(stem, doc, location);
+      location++;
+    }
+    return true;
+  }
+
+  /**
+   * Adds one occurrence of a stem.
+   *
+   * @param stem word stem
+   * @param doc the document id of the path
+   * @param location index in stemList
+   */
+  private void add(String stem, int doc, int location) {
+    this.index.computeIfAbsent(stem, s -> new FrequencyPostings()).add(doc, 1);
+    this.documents.updateCount(doc, location);
+    changed();
+  }
+
+  @Override
+  public boolean addIndex(InvertedIndex other) {
+    // translate the document ids of the other index into the ids used by this index.
+    DocumentDictionary otherDocuments = other.documents();
+    int[] docMap = new int[otherDocuments.size()];
+    for (int otherDoc = 0; otherDoc < docMap.length; otherDoc++) {
+      int doc = this.documents.id(otherDocuments.location(otherDoc));
+      this.documents.updateCount(doc, otherDocuments.count(otherDoc));
+      docMap[otherDoc] = doc;
+    }
+
+    for (var entry : other.postings().entrySet()) {
+      this.index
+          .computeIfAbsent(entry.getKey(), s -> new FrequencyPostings())
+          .addAll(entry.getValue(), docMap);
+    }
+    changed();
+    return true;
+  }
+
+  /**
+   * Moves the frequencies of another inverted index into this index. The postings of the other
+   * index hold positions, which this index drops, so they can not be taken over and the frequencies
+   * are copied as in {@link #addIndex(InvertedIndex)}. The postings of the other index are emptied
+   * afterward, so its positions can be collected before the build is done.
+   *
+   * @param other a different inverted index, which is emptied
+   * @return true if the move is successful.
+   */
+  @Override
+  public boolean moveIndex(InvertedIndex other) {
+    addIndex(other);
+    other.clearPostings();
+    return true;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return this.index.isEmpty();
+  }
+
+  @Override
+  public int size() {
+    return this.index.size();
+  }
+
+  @Override
+  public int sizeOfCounts() {
+    return this.documents.size();
+  }
+
+  @Override
+  public int numOfLocations(String word) {
+    var postings = this.index.get(word);
+    return postings != null ? postings.size() : 0;
+  }
+
+  @Override
+  public int numOfPositions(String word, String location) {
+    var postings = this.index.get(word);
+    int doc = this.documents.find(location);
+    return postings != null && doc >= 0 ? postings.get(doc) : 0;
+  }
+
+  @Override
+  public boolean hasWord(String word) {
+    return this.index.containsKey(word);
+  }
+
+  @Override
+  public boolean hasLocation(String word, String location) {
+    var postings = this.index.get(word);
+    int doc = this.documents.find(location);
+    return postings != null && doc >= 0 && postings.get(doc) > 0;
+  }
+
+  @Override
+  public boolean hasCount(String location) {
+    return this.documents.find(location) >= 0;
+  }
+
+  @Override
+  public FrozenIndex freeze() {
+    FrozenIndex current = this.frozen;
+    if (current == null) {
+      current = new FrozenIndex(this.index, this.documents);
+      this.frozen = current;
+    }
+    return current;
+  }
+
+  /** Marks the index as changed, so the frozen copy is no longer used. */
+  private void changed() {
+    this.version++;
+    this.frozen = null;
+  }
+
+  /**
+   * Returns the number of changes made to the index so far. A snapshot and the version read with it
+   * must be taken without any change in between.
+   *
+   * @return the current version of the index
+   */
+  long version() {
+    return this.version;
+  }
+
+  /**
+   * Copies the postings and documents of the index so it can be frozen later, possibly while the
+   * index changes.
+   *
+   * @return a flat copy of the index
+   */
+  FrozenIndex.Snapshot snapshot() {
+    return new FrozenIndex.Snapshot(this.index, this.documents);
+  }
+
+  /**
+   * Makes a frozen index the one searches use, unless the index changed since the snapshot it was
+   * built from was taken.
+   *
+   * @param frozen the index frozen from a snapshot
+   * @param version the version of the index when the snapshot was taken
+   * @return the frozen index
+   */
+  FrozenIndex publish(FrozenIndex frozen, long version) {
+    if (this.version == version) {
+      this.frozen = frozen;
+    }
+    return frozen;
+  }
+
+  @Override
+  public FrozenIndex frozen() {
+    return this.frozen;
+  }
+
+  @Override
+  public ArrayList<InvertedIndex.Score> exactSearch(Set<String> queries) {
+    FrozenIndex current = this.frozen;
+    if (current != null) {
+      return current.exactSearch(queries);
+    }
+    return scores(queries, false).sorted();
+  }
+
+  @Override
+  public ArrayList<InvertedIndex.Score> partialSearch(Set<String> queries) {
+    FrozenIndex current = this.frozen;
+    if (current != null) {
+      return current.partialSearch(queries);
+    }
+    return scores(queries, true).sorted();
+  }
+
+  @Override
+  public ArrayList<InvertedIndex.Score> search(
+      Set<String> queries, boolean partial, int limit, int offset) {
+    FrozenIndex current = this.frozen;
+    if (current != null) {
+      return current.search(queries, partial, limit, offset);
+    }
+    return scores(queries, partial).top(limit, offset);
+  }
+
+  /**
+   * Accumulates the scores of the documents containing any of the queries, or a stem that starts
+   * with any of them.
+   *
+   * @param queries set of stems in the query.
+   * @param partial true if stems that start with a query also match
+   * @return the accumulated scores
+   */
+  private ScoreAccumulator scores(Set<String> queries, boolean partial) {
+    ScoreAccumulator scores = new ScoreAccumulator(this.documents);
+    for (String query : queries) {
+      if (!partial) {
+        var postings = this.index.get(query);
+        if (postings != null) {
+          scores.add(postings.cursor());
+        }
+        continue;
+      }
+      for (var entry : this.index.tailMap(query).entrySet()) {
+        if (!entry.getKey().startsWith(query)) {
+          break;
+        }
+        scores.add(entry.getValue().cursor());
+      }
+    }
+    return scores;
+  }
+
+  /**
+   * Writes the index as pretty JSON, with the number of times each stem occurs in each location
+   * instead of the positions.
+   *
+   * @param output Path of output file.
+   * @throws IOException if path is invalid.
+   */
+  @Override
+  public void toJson(Path output) throws IOException {
+    JsonWriter.writeFrequencies(locationView(), output);
+  }
+
+  /**
+   * Returns a view of the index where the frequencies of each stem are keyed by location. The
+   * location maps are only built while the view is iterated.
+   *
+   * @return view of the index keyed by location
+   */
+  private Map<String, Map<String, Integer>> locationView() {
+    return new AbstractMap<>() {
+      @Override
+      public Set<Entry<String, Map<String, Integer>>> entrySet() {
+        return new AbstractSet<>() {
+          @Override
+          public Iterator<Entry<String, Map<String, Integer>>> iterator() {
+            var iterator = index.entrySet().iterator();
+            return new Iterator<>() {
+              @Override
+              public boolean hasNext() {
+                return iterator.hasNext();
+              }
+
+              @Override
+              public Entry<String, Map<String, Integer>> next() {
+                var entry = iterator.next();
+                return new SimpleImmutableEntry<>(entry.getKey(), frequencies(entry.getValue()));
+              }
+            };
+          }
+
+          @Override
+          public int size() {
+            return index.size();
+          }
+        };
+      }
+    };
+  }
+
+  /**
+   * Returns the frequencies of a stem keyed by location, sorted by location.
+   *
+   * @param postings the postings of the stem
+   * @return the frequency of the stem in each location
+   */
+  private TreeMap<String, Integer> frequencies(FrequencyPostings postings) {
+    TreeMap<String, Integer> map = new TreeMap<>();
+    DocumentCursor cursor = postings.cursor();
+    while (cursor.nextDoc() != DocumentCursor.NO_MORE_DOCS) {
+      map.put(this.documents.location(cursor.doc()), cursor.frequency());
+    }
+    return map;
+  }
+
+  /**
+   * Returns the index as pretty JSON, with the number of times each stem occurs in each location.
+   *
+   * @return the index as pretty JSON
+   */
+  @Override
+  public String toString() {
+    return JsonWriter.writeFrequencies(locationView());
+  }
+}
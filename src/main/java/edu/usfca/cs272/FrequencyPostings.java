@@ -0,0 +1,144 @@
+package edu.usfca.cs272;
+
+import java.util.Arrays;
+
+/**
+ * Postings that only keep how many times the word occurs in each document, stored as a sorted
+ * array of document ids and a parallel array of frequencies. One int per document replaces the
+ * list of positions, which is most of the size of the postings of a common word.
+ *
+ * @author Ravneet Singh Bhatia
+ * @version Spring 2024
+ */
+public class FrequencyPostings implements DocumentPostings {
+  /** Initial capacity of new postings. */
+  private static final int DEFAULT_CAPACITY = 2;
+
+  /** Document ids, sorted in increasing order. */
+  private int[] docs;
+
+  /** Number of times the word occurs in each document, parallel to {@link #docs}. */
+  private int[] frequencies;
+
+  /** Number of documents in the postings. */
+  private int size;
+
+  /** Creates new empty postings. */
+  public FrequencyPostings() {
+    this.docs = new int[DEFAULT_CAPACITY];
+    this.frequencies = new int[DEFAULT_CAPACITY];
+    this.size = 0;
+  }
+
+  /**
+   * Adds occurrences of the word in a document.
+   *
+   * @param doc the document id
+   * @param frequency the number of occurrences to add
+   */
+  public void add(int doc, int frequency) {
+    int index = indexOf(doc);
+    if (index >= 0) {
+      frequencies[index] += frequency;
+      return;
+    }
+
+    index = -(index + 1);
+    if (size == docs.length) {
+      int grown = size + (size >> 1) + 1;
+      docs = Arrays.copyOf(docs, grown);
+      frequencies = Arrays.copyOf(frequencies, grown);
+    }
+    System.arraycopy(docs, index, docs, index + 1, size - index);
+    System.arraycopy(frequencies, index, frequencies, index + 1, size - index);
+    docs[index] = doc;
+    frequencies[index] = frequency;
+    size++;
+  }
+
+  /**
+   * Adds the frequencies of other postings into these postings.
+   *
+   * @param other the postings to add
+   * @param docMap maps the document ids of the other postings to the ids used by these postings
+   */
+  public void addAll(DocumentPostings other, int[] docMap) {
+    DocumentCursor cursor = other.cursor();
+    while (cursor.nextDoc() != DocumentCursor.NO_MORE_DOCS) {
+      add(docMap[cursor.doc()], cursor.frequency());
+    }
+  }
+
+  /**
+   * Returns the number of times the word occurs in a document.
+   *
+   * @param doc the document id
+   * @return the frequency, or 0 if the word does not occur in the document
+   */
+  public int get(int doc) {
+    int index = indexOf(doc);
+    return index >= 0 ? frequencies[index] : 0;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public DocumentCursor cursor() {
+    return new DocumentCursor() {
+      /** Index of the current document. */
+      private int index = -1;
+
+      @Override
+      public int nextDoc() {
+        index++;
+        return doc();
+      }
+
+      @Override
+      public int doc() {
+        if (index < 0) {
+          return -1;
+        }
+        return index < size ? docs[index] : NO_MORE_DOCS;
+      }
+
+      @Override
+      public int frequency() {
+        return frequencies[index];
+      }
+
+      @Override
+      public int advance(int target) {
+        if (index < size && (index < 0 || docs[index] < target)) {
+          int found = Arrays.binarySearch(docs, Math.max(index, 0), size, target);
+          index = found >= 0 ? found : -(found + 1);
+        }
+        return doc();
+      }
+    };
+  }
+
+  /**
+   * Finds the index of a document id.
+   *
+   * @param doc the document id
+   * @return the index of the document, or {@code -(insertion point) - 1} if it is not present
+   */
+  private int indexOf(int doc) {
+    if (size == 0 || docs[size - 1] < doc) { // adding a new last document is the common case.
+      return -(size + 1);
+    }
+    if (docs[size - 1] == doc) {
+      return size - 1;
+    }
+    return Arrays.binarySearch(docs, 0, size, doc);
+  }
+
+  @Override
+  public String toString() {
+    return "FrequencyPostings{" + "size=" + size + '}';
+  }
+}
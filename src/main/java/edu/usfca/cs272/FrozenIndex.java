@@ -0,0 +1,351 @@
+package edu.usfca.cs272;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+
+/**
+ * Immutable, read-optimized copy of an inverted index used for searching once the index is no
+ * longer being built. Terms are kept in a {@link TermDictionary}, and the document ids and
+ * frequencies of all terms are flattened into two arrays, so a search is a trie lookup followed by
+ * a linear scan. Positions are not needed to search and are left out.
+ *
+ * <p>This class is thread-safe. Nothing can change after construction, so searches need no
+ * locking.
+ *
+ * @author Ravneet Singh Bhatia
+ * @version Spring 2024
+ */
+public class FrozenIndex {
+  /** The terms, stored as a trie that maps a prefix to the range of matching term ordinals. */
+  private final TermDictionary terms;
+
+  /** Start of the postings of each term in the flat arrays, plus the end of the last term. */
+  private final int[] offsets;
+
+  /** Document ids of all postings, grouped by term and sorted within each term. */
+  private final int[] docs;
+
+  /** Number of positions of the term in each posting, parallel to {@link #docs}. */
+  private final int[] frequencies;
+
+  /** The highest score each term adds to a single document, used to skip documents. */
+  private final double[] bounds;
+
+  /** The highest frequency of each term in a single document, used to skip documents. */
+  private final int[] maxFrequencies;
+
+  /** Copy of the documents at the time the index was frozen. */
+  private final DocumentDictionary documents;
+
+  /**
+   * Freezes an index.
+   *
+   * @param index the postings of every stem, sorted by stem
+   * @param documents the documents referenced by the postings
+   */
+  public FrozenIndex(
+      SortedMap<String, ? extends DocumentPostings> index, DocumentDictionary documents) {
+    this(new Snapshot(index, documents));
+  }
+
+  /**
+   * Freezes a snapshot of an index. The snapshot already holds its own copy of the postings, so
+   * the index it was taken from may change while the term dictionary and bounds are built.
+   *
+   * @param snapshot the copied postings and documents
+   */
+  FrozenIndex(Snapshot snapshot) {
+    this.terms = new TermDictionary(snapshot.terms);
+    this.offsets = snapshot.offsets;
+    this.docs = snapshot.docs;
+    this.frequencies = snapshot.frequencies;
+    this.documents = snapshot.documents;
+
+    this.bounds = new double[terms.size()];
+    this.maxFrequencies = new int[terms.size()];
+    for (int i = 0; i < terms.size(); i++) {
+      for (int next = offsets[i]; next < offsets[i + 1]; next++) {
+        bounds[i] = Math.max(bounds[i], (double) frequencies[next] / documents.count(docs[next]));
+        maxFrequencies[i] = Math.max(maxFrequencies[i], frequencies[next]);
+      }
+    }
+  }
+
+  /**
+   * Adds the postings of a term to the accumulated scores.
+   *
+   * @param ordinal the index of the term
+   * @param scores the scores to update
+   */
+  private void score(int ordinal, ScoreAccumulator scores) {
+    for (int i = offsets[ordinal]; i < offsets[ordinal + 1]; i++) {
+      scores.add(docs[i], frequencies[i]);
+    }
+  }
+
+  /**
+   * Performs exact search on a set of queries
+   *
+   * @param queries set of queries.
+   * @return ArrayList of Scores.
+   */
+  public ArrayList<InvertedIndex.Score> exactSearch(Set<String> queries) {
+    return exactScores(queries).sorted();
+  }
+
+  /**
+   * Performs partial search on index
+   *
+   * @param queries set of queries
+   * @return ArrayList of Scores
+   */
+  public ArrayList<InvertedIndex.Score> partialSearch(Set<String> queries) {
+    return partialScores(queries).sorted();
+  }
+
+  /**
+   * Performs a search and returns only one page of the best results. Queries that match more than
+   * one term are evaluated document-at-a-time with a {@link MaxScoreEvaluator}, which skips the
+   * documents of low scoring terms that cannot reach the page.
+   *
+   * @param queries set of stems in the query.
+   * @param partial partial flag.
+   * @param limit the maximum number of scores to return
+   * @param offset the number of best scores to skip
+   * @return ArrayList of the scores ranked from {@code offset} to {@code offset + limit}
+   * @see SearchableIndex#search(Set, boolean, int, int)
+   */
+  public ArrayList<InvertedIndex.Score> search(
+      Set<String> queries, boolean partial, int limit, int offset) {
+    ArrayList<Integer> ordinals = new ArrayList<>();
+    for (String query : queries) {
+      if (partial) {
+        int[] range = terms.range(query);
+        for (int ordinal = range[0]; ordinal < range[1]; ordinal++) {
+          ordinals.add(ordinal);
+        }
+      } else {
+        int ordinal = terms.ordinal(query);
+        if (ordinal >= 0) {
+          ordinals.add(ordinal);
+        }
+      }
+    }
+
+    if (ordinals.size() <= 1) {
+      var scores = partial ? partialScores(queries) : exactScores(queries);
+      return scores.top(limit, offset);
+    }
+
+    DocumentCursor[] cursors = new DocumentCursor[ordinals.size()];
+    double[] termBounds = new double[ordinals.size()];
+    int[] termFrequencies = new int[ordinals.size()];
+    int[] termSizes = new int[ordinals.size()];
+    for (int i = 0; i < cursors.length; i++) {
+      int ordinal = ordinals.get(i);
+      cursors[i] = new Cursor(offsets[ordinal], offsets[ordinal + 1]);
+      termBounds[i] = bounds[ordinal];
+      termFrequencies[i] = maxFrequencies[ordinal];
+      termSizes[i] = offsets[ordinal + 1] - offsets[ordinal];
+    }
+    return new MaxScoreEvaluator(documents, cursors, termBounds, termFrequencies, termSizes)
+        .top(limit, offset);
+  }
+
+  /**
+   * Accumulates the scores of the documents containing any of the queries.
+   *
+   * @param queries set of queries.
+   * @return the accumulated scores
+   */
+  private ScoreAccumulator exactScores(Set<String> queries) {
+    ScoreAccumulator scores = new ScoreAccumulator(documents);
+    for (String query : queries) {
+      int ordinal = terms.ordinal(query);
+      if (ordinal >= 0) {
+        score(ordinal, scores);
+      }
+    }
+    return scores;
+  }
+
+  /**
+   * Accumulates the scores of the documents containing a stem that starts with any of the queries.
+   *
+   * @param queries set of queries
+   * @return the accumulated scores
+   */
+  private ScoreAccumulator partialScores(Set<String> queries) {
+    ScoreAccumulator scores = new ScoreAccumulator(documents);
+    for (String query : queries) {
+      int[] range = terms.range(query);
+      for (int ordinal = range[0]; ordinal < range[1]; ordinal++) {
+        score(ordinal, scores);
+      }
+    }
+    return scores;
+  }
+
+  /**
+   * Returns unmodifiable map of files and their stem counts.
+   *
+   * @return unmodifiable map of files and their stem counts.
+   */
+  public Map<String, Integer> getCounts() {
+    return documents.getCounts();
+  }
+
+  /**
+   * Returns the number of terms in the index.
+   *
+   * @return the number of terms
+   */
+  public int size() {
+    return terms.size();
+  }
+
+  /** Cursor over the documents and frequencies of a single term in the flat arrays. */
+  private class Cursor implements DocumentCursor {
+    /** Index of the current posting. */
+    private int index;
+
+    /** One past the index of the last posting of the term. */
+    private final int end;
+
+    /** The current document id. */
+    private int doc;
+
+    /**
+     * Creates a new cursor.
+     *
+     * @param start index of the first posting of the term
+     * @param end one past the index of the last posting of the term
+     */
+    private Cursor(int start, int end) {
+      this.index = start - 1;
+      this.end = end;
+      this.doc = -1;
+    }
+
+    @Override
+    public int nextDoc() {
+      return moveTo(index + 1);
+    }
+
+    /**
+     * Moves the cursor to a posting.
+     *
+     * @param next the index of the posting, at most one past the last posting of the term
+     * @return the new current document id
+     */
+    private int moveTo(int next) {
+      if (next < end) {
+        index = next;
+        doc = docs[next];
+      } else {
+        index = end;
+        doc = NO_MORE_DOCS;
+      }
+      return doc;
+    }
+
+    @Override
+    public int doc() {
+      return doc;
+    }
+
+    @Override
+    public int frequency() {
+      return frequencies[index];
+    }
+
+    @Override
+    public int advance(int target) {
+      if (doc >= target) {
+        return doc;
+      }
+
+      // gallop forward, then binary search the last step.
+      int low = index + 1;
+      int step = 1;
+      int high = low;
+      while (high < end && docs[high] < target) {
+        low = high + 1;
+        high += step;
+        step <<= 1;
+      }
+      high = Math.min(high, end);
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (docs[middle] < target) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      return moveTo(low);
+    }
+  }
+
+  /**
+   * Flat copy of the postings and documents of an index. Taking a snapshot is a single pass over
+   * the postings that only fills arrays, so it is the only part of freezing that must see the
+   * index unchanged. Building the term dictionary and bounds from the snapshot needs no lock.
+   */
+  static class Snapshot {
+    /** The stems, in sorted order. */
+    private final String[] terms;
+
+    /** Start of the postings of each term in the flat arrays, plus the end of the last term. */
+    private final int[] offsets;
+
+    /** Document ids of all postings, grouped by term and sorted within each term. */
+    private final int[] docs;
+
+    /** Number of positions of the term in each posting, parallel to {@link #docs}. */
+    private final int[] frequencies;
+
+    /** Copy of the documents. */
+    private final DocumentDictionary documents;
+
+    /**
+     * Copies the postings and documents of an index.
+     *
+     * @param index the postings of every stem, sorted by stem
+     * @param documents the documents referenced by the postings
+     */
+    Snapshot(SortedMap<String, ? extends DocumentPostings> index, DocumentDictionary documents) {
+      this.terms = index.keySet().toArray(new String[0]);
+      this.offsets = new int[terms.length + 1];
+
+      int total = 0;
+      int i = 0;
+      for (DocumentPostings postings : index.values()) {
+        offsets[i++] = total;
+        total += postings.size();
+      }
+      offsets[i] = total;
+
+      this.docs = new int[total];
+      this.frequencies = new int[total];
+      int next = 0;
+      for (DocumentPostings postings : index.values()) {
+        DocumentCursor cursor = postings.cursor();
+        while (cursor.nextDoc() != DocumentCursor.NO_MORE_DOCS) {
+          docs[next] = cursor.doc();
+          frequencies[next] = cursor.frequency();
+          next++;
+        }
+      }
+
+      this.documents = new DocumentDictionary(documents);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "FrozenIndex{" + "terms=" + terms.size() + ", postings=" + docs.length + '}';
+  }
+}
@@ -0,0 +1,251 @@
+package edu.usfca.cs272;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Immutable sorted run of an inverted index. The stems are kept in a sorted array next to their
+ * {@link CompressedPostings}, so a segment is compact and can be searched with a binary search. A
+ * segment never changes after it is created, so it can be read from any number of threads without
+ * locking, and larger segments are made by merging smaller ones into a new segment.
+ *
+ * @author Ravneet Singh Bhatia
+ * @version Spring 2024
+ */
+public class IndexSegment {
+  /** The stems, sorted. */
+  private final String[] terms;
+
+  /** The postings of each stem, parallel to {@link #terms}. */
+  private final CompressedPostings[] postings;
+
+  /** Number of postings in the segment, summed over every stem. */
+  private final long size;
+
+  /** Number of merges that produced this segment, or 0 if it was created from an index. */
+  private final int level;
+
+  /**
+   * Creates a segment from an index.
+   *
+   * @param index the postings of every stem, sorted by stem
+   * @param documents the number of documents, larger than any document id in the postings
+   */
+  public IndexSegment(SortedMap<String, ? extends Postings> index, int documents) {
+    this.terms = new String[index.size()];
+    this.postings = new CompressedPostings[index.size()];
+
+    int[] identity = identity(documents);
+    long total = 0;
+    int i = 0;
+    for (var entry : index.entrySet()) {
+      terms[i] = entry.getKey();
+      postings[i] = compress(entry.getValue(), identity);
+      total += postings[i].size();
+      i++;
+    }
+    this.size = total;
+    this.level = 0;
+  }
+
+  /**
+   * Creates a segment from arrays that are already sorted and compressed.
+   *
+   * @param terms the stems, sorted
+   * @param postings the postings of each stem
+   * @param level the number of merges that produced this segment
+   */
+  private IndexSegment(String[] terms, CompressedPostings[] postings, int level) {
+    this.terms = terms;
+    this.postings = postings;
+    this.level = level;
+    long total = 0;
+    for (CompressedPostings posting : postings) {
+      total += posting.size();
+    }
+    this.size = total;
+  }
+
+  /**
+   * Merges segments into a new segment. The postings of a stem found in only one segment are
+   * shared with the new segment rather than copied.
+   *
+   * @param segments the segments to merge, oldest first
+   * @param documents the number of documents, larger than any document id in the segments
+   * @return the merged segment
+   */
+  public static IndexSegment merge(List<IndexSegment> segments, int documents) {
+    int[] identity = identity(documents);
+    int[] next = new int[segments.size()];
+    int level = 0;
+    for (IndexSegment segment : segments) {
+      level = Math.max(level, segment.level + 1);
+    }
+    ArrayList<String> terms = new ArrayList<>();
+    ArrayList<CompressedPostings> postings = new ArrayList<>();
+
+    while (true) {
+      // find the smallest stem that has not been merged yet.
+      String term = null;
+      for (int i = 0; i < next.length; i++) {
+        IndexSegment segment = segments.get(i);
+        if (next[i] < segment.terms.length
+            && (term == null || segment.terms[next[i]].compareTo(term) < 0)) {
+          term = segment.terms[next[i]];
+        }
+      }
+      if (term == null) {
+        break;
+      }
+
+      CompressedPostings merged = null;
+      boolean shared = false;
+      for (int i = 0; i < next.length; i++) {
+        IndexSegment segment = segments.get(i);
+        if (next[i] < segment.terms.length && segment.terms[next[i]].equals(term)) {
+          CompressedPostings current = segment.postings[next[i]++];
+          if (merged == null) {
+            merged = current;
+            shared = true;
+          } else {
+            if (shared) { // copy before adding, since the first postings belong to a segment.
+              merged = compress(merged, identity);
+              shared = false;
+            }
+            merged.addAll(current, identity);
+          }
+        }
+      }
+
+      terms.add(term);
+      postings.add(merged);
+    }
+
+    return new IndexSegment(
+        terms.toArray(new String[0]), postings.toArray(new CompressedPostings[0]), level);
+  }
+
+  /**
+   * Copies postings into new compressed postings.
+   *
+   * @param postings the postings to copy
+   * @param identity document id map that keeps every id the same
+   * @return the compressed copy
+   */
+  private static CompressedPostings compress(Postings postings, int[] identity) {
+    CompressedPostings compressed = new CompressedPostings();
+    compressed.addAll(postings, identity);
+    return compressed;
+  }
+
+  /**
+   * Creates a document id map that keeps every id the same.
+   *
+   * @param documents the number of documents
+   * @return the identity map
+   */
+  private static int[] identity(int documents) {
+    int[] identity = new int[documents];
+    Arrays.setAll(identity, doc -> doc);
+    return identity;
+  }
+
+  /**
+   * Returns the index of a stem.
+   *
+   * @param term the stem to look up
+   * @return the index of the stem, or -1 if it is not in the segment
+   */
+  public int find(String term) {
+    int index = Arrays.binarySearch(terms, term);
+    return index >= 0 ? index : -1;
+  }
+
+  /**
+   * Returns the index of the first stem that is greater than or equal to a prefix. The stems that
+   * start with the prefix follow it in order.
+   *
+   * @param prefix the prefix to look up
+   * @return the index of the first stem not less than the prefix
+   */
+  public int ceiling(String prefix) {
+    int index = Arrays.binarySearch(terms, prefix);
+    return index >= 0 ? index : -index - 1;
+  }
+
+  /**
+   * Returns the stem at an index.
+   *
+   * @param index the index of the stem
+   * @return the stem
+   */
+  public String term(int index) {
+    return terms[index];
+  }
+
+  /**
+   * Returns the postings of the stem at an index.
+   *
+   * @param index the index of the stem
+   * @return the postings of the stem
+   */
+  public Postings postings(int index) {
+    return postings[index];
+  }
+
+  /**
+   * Returns the postings of every stem as a new sorted map.
+   *
+   * @return the postings of every stem, sorted by stem
+   */
+  public TreeMap<String, Postings> toMap() {
+    TreeMap<String, Postings> map = new TreeMap<>();
+    for (int i = 0; i < terms.length; i++) {
+      map.put(terms[i], postings[i]);
+    }
+    return map;
+  }
+
+  /**
+   * Returns the number of stems in the segment.
+   *
+   * @return the number of stems
+   */
+  public int terms() {
+    return terms.length;
+  }
+
+  /**
+   * Returns the number of postings in the segment, summed over every stem.
+   *
+   * @return the number of postings
+   */
+  public long size() {
+    return size;
+  }
+
+  /**
+   * Returns the number of merges that produced this segment. A merged segment is one level above
+   * the highest of the segments it was merged from.
+   *
+   * @return the merge level, 0 if the segment was created from an index
+   */
+  public int level() {
+    return level;
+  }
+
+  @Override
+  public String toString() {
+    return "IndexSegment{"
+        + "terms="
+        + terms.length
+        + ", postings="
+        + size
+        + ", level="
+        + level
+        + '}';
+  }
+}
@@ -0,0 +1,667 @@
+package edu.usfca.cs272;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+
+/**
+ * Read-only inverted index stored in a binary file and opened with {@link FileChannel#map}. Only
+ * the document locations and stem counts are read onto the heap when the snapshot is opened. The
+ * term dictionary and postings stay in the mapped file and are paged in by the operating system as
+ * searches touch them.
+ *
+ * <p>The file is laid out as:
+ *
+ * <ol>
+ *   <li>the magic number and format version
+ *   <li>the number of documents, then the stem count, byte length and UTF-8 location of each
+ *       document, sorted by location
+ *   <li>the UTF-8 bytes of every term, sorted by term
+ *   <li>the postings of every term, in the same format as {@link CompressedPostings} and preceded
+ *       by the number of documents
+ *   <li>a table with the offset of each term and of its postings, plus one extra entry marking the
+ *       end of both sections
+ *   <li>the offset of the table, the number of terms, and the magic number again
+ * </ol>
+ *
+ * <p>All offsets are stored as {@code int}, so a snapshot is limited to 2 GB.
+ *
+ * @author Ravneet Singh Bhatia
+ * @version Spring 2024
+ */
+public class IndexSnapshot implements SearchableIndex {
+  /** Marks the start and end of a snapshot file. */
+  private static final int MAGIC = 0x53494458;
+
+  /** Version of the file format. */
+  private static final int VERSION = 1;
+
+  /** Size of a term table entry in bytes. */
+  private static final int ENTRY = 2 * Integer.BYTES;
+
+  /** Size of the trailer in bytes. */
+  private static final int TRAILER = 3 * Integer.BYTES;
+
+  /** The mapped snapshot file. */
+  private final MappedByteBuffer buffer;
+
+  /** The documents in the snapshot. Document ids follow the order of the locations. */
+  private final DocumentDictionary documents;
+
+  /** Offset of the term table. */
+  private final int table;
+
+  /** Number of terms in the snapshot. */
+  private final int terms;
+
+  /**
+   * Creates a snapshot over a mapped file.
+   *
+   * @param buffer the mapped snapshot file
+   * @throws IOException if the file is not a valid snapshot
+   */
+  private IndexSnapshot(MappedByteBuffer buffer) throws IOException {
+    int limit = buffer.limit();
+    if (limit < 3 * Integer.BYTES + TRAILER
+        || buffer.getInt(0) != MAGIC
+        || buffer.getInt(limit - Integer.BYTES) != MAGIC) {
+      throw new IOException("Not an index snapshot.");
+    }
+    if (buffer.getInt(Integer.BYTES) != VERSION) {
+      throw new IOException("Unsupported snapshot version: " + buffer.getInt(Integer.BYTES));
+    }
+
+    this.buffer = buffer;
+    this.table = buffer.getInt(limit - TRAILER);
+    this.terms = buffer.getInt(limit - TRAILER + Integer.BYTES);
+    this.documents = new DocumentDictionary();
+
+    int offset = 2 * Integer.BYTES;
+    int size = buffer.getInt(offset);
+    offset += Integer.BYTES;
+    for (int i = 0; i < size; i++) {
+      int count = buffer.getInt(offset);
+      int length = buffer.getInt(offset + Integer.BYTES);
+      offset += 2 * Integer.BYTES;
+      int doc = documents.id(string(offset, length));
+      documents.updateCount(doc, count);
+      offset += length;
+    }
+  }
+
+  /**
+   * Opens a snapshot file.
+   *
+   * @param input the snapshot file
+   * @return the opened snapshot
+   * @throws IOException if unable to read the file or the file is not a snapshot
+   */
+  public static IndexSnapshot open(Path input) throws IOException {
+    try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("Snapshot is larger than 2 GB: " + input);
+      }
+      return new IndexSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  /**
+   * Writes an index as a snapshot file.
+   *
+   * @param index the postings of every stem, sorted by stem
+   * @param documents the documents referenced by the postings
+   * @param output the snapshot file to write
+   * @throws IOException if unable to write the file
+   */
+  public static void write(
+      SortedMap<String, ? extends Postings> index, DocumentDictionary documents, Path output)
+      throws IOException {
+    // renumber the documents in location order, so the postings are in the order JSON is written.
+    int[] order =
+        IntStream.range(0, documents.size())
+            .boxed()
+            .sorted(Comparator.comparing(documents::location))
+            .mapToInt(Integer::intValue)
+            .toArray();
+    int[] docMap = new int[order.length];
+    for (int i = 0; i < order.length; i++) {
+      docMap[order[i]] = i;
+    }
+
+    int[] termOffsets = new int[index.size() + 1];
+    int[] postingsOffsets = new int[index.size() + 1];
+
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(output)))) {
+      writeHeader(documents, order, out);
+
+      int i = 0;
+      for (String term : index.keySet()) {
+        termOffsets[i++] = checkedSize(out);
+        out.write(term.getBytes(UTF_8));
+      }
+      termOffsets[i] = checkedSize(out);
+
+      i = 0;
+      byte[] scratch = new byte[64];
+      for (Postings postings : index.values()) {
+        postingsOffsets[i++] = checkedSize(out);
+        ArrayPostings renumbered = new ArrayPostings();
+        renumbered.addAll(postings, docMap);
+        scratch = writePostings(renumbered.size(), renumbered.cursor(), out, scratch);
+      }
+      postingsOffsets[i] = checkedSize(out);
+
+      writeTable(termOffsets, postingsOffsets, out);
+    }
+  }
+
+  /**
+   * Writes the magic number, the format version and the documents.
+   *
+   * @param documents the documents to write
+   * @param order the document ids in the order to write them, which becomes their id in the file
+   * @param out the stream to write to
+   * @throws IOException if unable to write
+   */
+  private static void writeHeader(DocumentDictionary documents, int[] order, DataOutputStream out)
+      throws IOException {
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+
+    out.writeInt(order.length);
+    for (int doc : order) {
+      byte[] location = documents.location(doc).getBytes(UTF_8);
+      out.writeInt(documents.count(doc));
+      out.writeInt(location.length);
+      out.write(location);
+    }
+  }
+
+  /**
+   * Writes the term table and the trailer.
+   *
+   * @param termOffsets the offset of each term, plus the end of the terms
+   * @param postingsOffsets the offset of the postings of each term, plus the end of the postings
+   * @param out the stream to write to
+   * @throws IOException if unable to write or the snapshot has grown past 2 GB
+   */
+  private static void writeTable(int[] termOffsets, int[] postingsOffsets, DataOutputStream out)
+      throws IOException {
+    int tableOffset = checkedSize(out);
+    for (int i = 0; i < termOffsets.length; i++) {
+      out.writeInt(termOffsets[i]);
+      out.writeInt(postingsOffsets[i]);
+    }
+
+    out.writeInt(tableOffset);
+    out.writeInt(termOffsets.length - 1);
+    out.writeInt(MAGIC);
+    checkedSize(out);
+  }
+
+  /**
+   * Writes postings in the {@link CompressedPostings} format, preceded by the number of documents.
+   *
+   * @param size the number of documents in the postings
+   * @param cursor cursor over the postings, positioned before the first document
+   * @param out the stream to write to
+   * @param scratch reusable buffer for encoding
+   * @return the scratch buffer, grown if it was too small
+   * @throws IOException if unable to write
+   */
+  private static byte[] writePostings(
+      int size, PostingsCursor cursor, DataOutputStream out, byte[] scratch) throws IOException {
+    int length = VarInt.write(size, scratch, 0);
+    out.write(scratch, 0, length);
+
+    int previousDoc = 0;
+    while (cursor.nextDoc() != PostingsCursor.NO_MORE_DOCS) {
+      int frequency = cursor.frequency();
+      int needed = 3 * 5 + frequency * 5;
+      if (scratch.length < needed) {
+        scratch = new byte[Math.max(needed, scratch.length * 2)];
+      }
+
+      // encode the positions at the end of the buffer to learn their length first.
+      int start = 3 * 5;
+      int end = start;
+      int previous = 0;
+      for (int i = 0; i < frequency; i++) {
+        int position = cursor.nextPosition();
+        end = VarInt.write(position - previous, scratch, end);
+        previous = position;
+      }
+
+      length = VarInt.write(cursor.doc() - previousDoc, scratch, 0);
+      length = VarInt.write(frequency, scratch, length);
+      length = VarInt.write(end - start, scratch, length);
+      out.write(scratch, 0, length);
+      out.write(scratch, start, end - start);
+      previousDoc = cursor.doc();
+    }
+    return scratch;
+  }
+
+  /**
+   * Returns the number of bytes written so far.
+   *
+   * @param out the stream being written
+   * @return the number of bytes written
+   * @throws IOException if the snapshot has grown past 2 GB
+   */
+  private static int checkedSize(DataOutputStream out) throws IOException {
+    if (out.size() == Integer.MAX_VALUE) {
+      throw new IOException("Snapshot is larger than 2 GB.");
+    }
+    return out.size();
+  }
+
+  /**
+   * Decodes a UTF-8 string from the mapped file.
+   *
+   * @param offset offset of the first byte
+   * @param length number of bytes
+   * @return the decoded string
+   */
+  private String string(int offset, int length) {
+    byte[] bytes = new byte[length];
+    buffer.get(offset, bytes);
+    return new String(bytes, UTF_8);
+  }
+
+  /**
+   * Returns a term from the term dictionary.
+   *
+   * @param ordinal the index of the term in sorted order
+   * @return the term
+   */
+  String term(int ordinal) {
+    int start = buffer.getInt(table + ordinal * ENTRY);
+    int end = buffer.getInt(table + (ordinal + 1) * ENTRY);
+    return string(start, end - start);
+  }
+
+  /**
+   * Finds the first term that is greater than or equal to a word.
+   *
+   * @param word the word to look up
+   * @return the index of the word, or {@code -(insertion point) - 1} if it is not a term
+   */
+  private int find(String word) {
+    int low = 0;
+    int high = terms - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int compare = term(middle).compareTo(word);
+      if (compare < 0) {
+        low = middle + 1;
+      } else if (compare > 0) {
+        high = middle - 1;
+      } else {
+        return middle;
+      }
+    }
+    return -(low + 1);
+  }
+
+  /**
+   * Returns a cursor over the postings of a term.
+   *
+   * @param ordinal the index of the term in sorted order
+   * @return a cursor over the postings of the term
+   */
+  PostingsCursor cursor(int ordinal) {
+    return new Cursor(buffer.getInt(table + ordinal * ENTRY + Integer.BYTES));
+  }
+
+  /**
+   * Returns the number of documents in the postings of a term.
+   *
+   * @param ordinal the index of the term in sorted order
+   * @return the number of documents containing the term
+   */
+  int postingsSize(int ordinal) {
+    int start = buffer.getInt(table + ordinal * ENTRY + Integer.BYTES);
+    return VarInt.value(VarInt.read(buffer, start));
+  }
+
+  /**
+   * Returns the documents in the snapshot, numbered in location order.
+   *
+   * @return the documents in the snapshot
+   */
+  DocumentDictionary documents() {
+    return documents;
+  }
+
+  /**
+   * Returns the number of terms in the snapshot.
+   *
+   * @return the number of terms
+   */
+  public int size() {
+    return terms;
+  }
+
+  @Override
+  public ArrayList<InvertedIndex.Score> exactSearch(Set<String> queries) {
+    return exactScores(queries).sorted();
+  }
+
+  @Override
+  public ArrayList<InvertedIndex.Score> partialSearch(Set<String> queries) {
+    return partialScores(queries).sorted();
+  }
+
+  @Override
+  public ArrayList<InvertedIndex.Score> search(
+      Set<String> queries, boolean partial, int limit, int offset) {
+    var scores = partial ? partialScores(queries) : exactScores(queries);
+    return scores.top(limit, offset);
+  }
+
+  /**
+   * Accumulates the scores of the documents containing any of the queries.
+   *
+   * @param queries set of queries.
+   * @return the accumulated scores
+   */
+  private ScoreAccumulator exactScores(Set<String> queries) {
+    ScoreAccumulator scores = new ScoreAccumulator(documents);
+    for (String query : queries) {
+      int ordinal = find(query);
+      if (ordinal >= 0) {
+        scores.add(cursor(ordinal));
+      }
+    }
+    return scores;
+  }
+
+  /**
+   * Accumulates the scores of the documents containing a stem that starts with any of the queries.
+   *
+   * @param queries set of queries
+   * @return the accumulated scores
+   */
+  private ScoreAccumulator partialScores(Set<String> queries) {
+    ScoreAccumulator scores = new ScoreAccumulator(documents);
+    for (String query : queries) {
+      int ordinal = find(query);
+      if (ordinal < 0) {
+        ordinal = -(ordinal + 1);
+      }
+      while (ordinal < terms && term(ordinal).startsWith(query)) {
+        scores.add(cursor(ordinal));
+        ordinal++;
+      }
+    }
+    return scores;
+  }
+
+  @Override
+  public Map<String, Integer> getCounts() {
+    return documents.getCounts();
+  }
+
+  @Override
+  public void toJson(Path output) throws IOException {
+    try (BufferedWriter writer = Files.newBufferedWriter(output, UTF_8)) {
+      JsonWriter.writeIndex(entries(), writer, 0);
+    }
+  }
+
+  /**
+   * Returns the entries of the index keyed by location, decoding one term at a time.
+   *
+   * @return iterator over the entries of the index
+   */
+  private Iterator<Map.Entry<String, TreeMap<String, PositionList>>> entries() {
+    return new Iterator<>() {
+      /** The next term to decode. */
+      private int next = 0;
+
+      @Override
+      public boolean hasNext() {
+        return next < terms;
+      }
+
+      @Override
+      public Map.Entry<String, TreeMap<String, PositionList>> next() {
+        if (next >= terms) {
+          throw new NoSuchElementException();
+        }
+        TreeMap<String, PositionList> locations = new TreeMap<>();
+        PostingsCursor cursor = cursor(next);
+        while (cursor.nextDoc() != PostingsCursor.NO_MORE_DOCS) {
+          PositionList positions = new PositionList();
+          for (int i = cursor.frequency(); i > 0; i--) {
+            positions.add(cursor.nextPosition());
+          }
+          locations.put(documents.location(cursor.doc()), positions);
+        }
+        return new SimpleImmutableEntry<>(term(next++), locations);
+      }
+    };
+  }
+
+  @Override
+  public String toString() {
+    return "IndexSnapshot{" + "terms=" + terms + ", documents=" + documents.size() + '}';
+  }
+
+  /**
+   * Writes a snapshot one term at a time, for indexes too large to hold in memory. Postings are
+   * written to a temporary file next to the output as they are added, and only the terms and their
+   * offsets stay in memory until {@link #close()} assembles the snapshot.
+   */
+  public static class Writer implements Closeable {
+    /** The snapshot file to write. */
+    private final Path output;
+
+    /** The documents of the snapshot, numbered in location order. */
+    private final DocumentDictionary documents;
+
+    /** Temporary file holding the postings written so far. */
+    private final Path temporary;
+
+    /** Stream writing to the temporary postings file. */
+    private final DataOutputStream postings;
+
+    /** The terms added so far, in sorted order. */
+    private final ArrayList<String> terms;
+
+    /** Offset of the postings of each term in the temporary file. */
+    private int[] offsets;
+
+    /** Reusable buffer for encoding postings. */
+    private byte[] scratch;
+
+    /**
+     * Creates a new writer.
+     *
+     * @param output the snapshot file to write
+     * @param documents the documents referenced by the postings, numbered in location order
+     * @throws IOException if unable to create the temporary postings file
+     */
+    public Writer(Path output, DocumentDictionary documents) throws IOException {
+      for (int doc = 1; doc < documents.size(); doc++) {
+        if (documents.location(doc - 1).compareTo(documents.location(doc)) >= 0) {
+          throw new IllegalArgumentException("Documents must be numbered in location order.");
+        }
+      }
+      Path directory = output.toAbsolutePath().getParent();
+      this.output = output;
+      this.documents = documents;
+      this.temporary = Files.createTempFile(directory, "postings", ".tmp");
+      this.postings =
+          new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)));
+      this.terms = new ArrayList<>();
+      this.offsets = new int[16];
+      this.scratch = new byte[64];
+    }
+
+    /**
+     * Adds the postings of a term. Terms must be added in sorted order.
+     *
+     * @param term the term
+     * @param size the number of documents in the postings
+     * @param cursor cursor over the postings, positioned before the first document
+     * @throws IOException if unable to write the postings
+     */
+    public void add(String term, int size, PostingsCursor cursor) throws IOException {
+      if (!terms.isEmpty() && terms.getLast().compareTo(term) >= 0) {
+        throw new IllegalArgumentException("Terms must be added in sorted order: " + term);
+      }
+      if (terms.size() + 1 == offsets.length) {
+        offsets = Arrays.copyOf(offsets, offsets.length + (offsets.length >> 1));
+      }
+      offsets[terms.size()] = checkedSize(postings);
+      terms.add(term);
+      scratch = writePostings(size, cursor, postings, scratch);
+    }
+
+    /**
+     * Assembles the snapshot from the terms and the temporary postings file, then deletes the
+     * temporary file.
+     *
+     * @throws IOException if unable to write the snapshot
+     */
+    @Override
+    public void close() throws IOException {
+      try {
+        postings.close();
+        offsets[terms.size()] = checkedSize(postings);
+
+        int[] order = IntStream.range(0, documents.size()).toArray();
+        int[] termOffsets = new int[terms.size() + 1];
+        int[] postingsOffsets = new int[terms.size() + 1];
+
+        try (DataOutputStream out =
+            new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(output)))) {
+          writeHeader(documents, order, out);
+
+          for (int i = 0; i < terms.size(); i++) {
+            termOffsets[i] = checkedSize(out);
+            out.write(terms.get(i).getBytes(UTF_8));
+          }
+          termOffsets[terms.size()] = checkedSize(out);
+
+          int base = checkedSize(out);
+          if ((long) base + offsets[terms.size()] >= Integer.MAX_VALUE) {
+            throw new IOException("Snapshot is larger than 2 GB.");
+          }
+          Files.copy(temporary, out);
+          for (int i = 0; i < postingsOffsets.length; i++) {
+            postingsOffsets[i] = base + offsets[i];
+          }
+
+          writeTable(termOffsets, postingsOffsets, out);
+        }
+      } finally {
+        Files.deleteIfExists(temporary);
+      }
+    }
+
+    @Override
+    public String toString() {
+      return "IndexSnapshot.Writer{" + "output=" + output + ", terms=" + terms.size() + '}';
+    }
+  }
+
+  /** Cursor that decodes postings directly from the mapped file. */
+  private class Cursor implements PostingsCursor {
+    /** Number of documents in the postings. */
+    private final int size;
+
+    /** Offset of the next document. */
+    private int offset;
+
+    /** Offset of the end of the positions of the current document. */
+    private int end;
+
+    /** Number of documents visited. */
+    private int visited;
+
+    /** The current document id. */
+    private int doc;
+
+    /** Number of positions in the current document. */
+    private int frequency;
+
+    /** The last position read from the current document. */
+    private int position;
+
+    /**
+     * Creates a cursor positioned before the first document.
+     *
+     * @param start offset of the postings in the mapped file
+     */
+    private Cursor(int start) {
+      long read = VarInt.read(buffer, start);
+      this.size = VarInt.value(read);
+      this.end = VarInt.next(read);
+      this.visited = 0;
+      this.doc = -1;
+    }
+
+    @Override
+    public int nextDoc() {
+      if (visited >= size) {
+        doc = NO_MORE_DOCS;
+        frequency = 0;
+        return doc;
+      }
+
+      offset = end; // skip any positions that were not read.
+      long read = VarInt.read(buffer, offset);
+      doc = (visited == 0 ? 0 : doc) + VarInt.value(read);
+      read = VarInt.read(buffer, VarInt.next(read));
+      frequency = VarInt.value(read);
+      read = VarInt.read(buffer, VarInt.next(read));
+      offset = VarInt.next(read);
+      end = offset + VarInt.value(read);
+      position = 0;
+      visited++;
+      return doc;
+    }
+
+    @Override
+    public int doc() {
+      return doc;
+    }
+
+    @Override
+    public int frequency() {
+      return frequency;
+    }
+
+    @Override
+    public int nextPosition() {
+      long read = VarInt.read(buffer, offset);
+      offset = VarInt.next(read);
+      position += VarInt.value(read);
+      return position;
+    }
+  }
+}
@@ -10,96 +10,141 @@ import java.util.*;
  * @author Ravneet Singh Bhatia
  * @version Spring 2024
  */
-public class InvertedIndex {
+public class InvertedIndex implements PositionalIndex {
+  /**
+   * Merges walk both indexes together unless the other index has fewer than one stem for every
+   * this many stems of this index, in which case looking up each of its stems is cheaper.
+   */
+  private static final int LOCKSTEP_RATIO = 16;
+
   /** Map for Index. */
-  private final TreeMap<String, TreeMap<String, TreeSet<Integer>>> index;
+  private final TreeMap<String, Postings> index;
+
+  /** Document ids and stem counts of every location in the index. */
+  private final DocumentDictionary documents;
+
+  /** True if the postings are stored compressed. */
+  private final boolean compressed;
+
+  /** Read-optimized copy of the index, or null if the index changed since it was last frozen. */
+  private volatile FrozenIndex frozen;
 
-  /** Map for counts. */
-  private final Map<String, Integer> counts;
+  /** Number of changes made to the index, used to tell whether a frozen copy is still current. */
+  private long version;
 
   /** Creates a new inverted index. */
   public InvertedIndex() {
+    this(false);
+  }
+
+  /**
+   * Creates a new inverted index.
+   *
+   * @param compressed true if the postings should be stored delta and variable-byte compressed
+   */
+  public InvertedIndex(boolean compressed) {
     this.index = new TreeMap<>();
-    this.counts = new TreeMap<>();
+    this.documents = new DocumentDictionary();
+    this.compressed = compressed;
+    this.frozen = null;
+    this.version = 0;
   }
 
   /**
-   * Returns unmodifiable set of keys in the index.
+   * Creates new empty postings in the format used by this index.
    *
-   * @return unmodifiable set of keys in the index.
+   * @return new empty postings
    */
-  public Set<String> getWords() {
-    return Collections.unmodifiableSet(this.index.keySet());
+  private Postings newPostings() {
+    return newPostings(compressed);
   }
 
   /**
-   * Returns unmodifiable map of files and their stem counts.
+   * Creates new empty postings.
    *
-   * @return unmodifiable map of files and their stem counts.
+   * @param compressed true if the postings should be stored delta and variable-byte compressed
+   * @return new empty postings
    */
-  public Map<String, Integer> getCounts() {
-    return Collections.unmodifiableMap(this.counts);
+  static Postings newPostings(boolean compressed) {
+    return compressed ? new CompressedPostings() : new ArrayPostings();
   }
 
   /**
-   * Returns unmodifiable map where key is file path value is location of word.
+   * Returns the postings of every stem, sorted by stem. Used to merge an index that is no longer
+   * being changed into another index of this package.
    *
-   * @param word key in the index.
-   * @param location the file in which word is located.
-   * @return unmodifiable map where key is file path value is location of word.
+   * @return unmodifiable view of the postings of every stem
    */
-  public Set<Integer> getPositions(String word, String location) {
-    var locations = this.index.get(word);
-    if (locations != null) {
-      var positions = locations.get(location);
-      if (positions != null) {
-        return Collections.unmodifiableSet(positions);
-      }
-    }
-    return Collections.emptySet();
+  NavigableMap<String, Postings> postings() {
+    return Collections.unmodifiableNavigableMap(this.index);
   }
 
   /**
-   * returns the locations in which a word occurs
+   * Returns the documents of the index. Used to merge an index that is no longer being changed into
+   * another index of this package.
    *
-   * @param word stem to be searched
-   * @return locations.
+   * @return the documents of the index
    */
-  public Set<String> getLocations(String word) {
-    var locations = this.index.get(word);
-    if (locations != null) {
-      return Collections.unmodifiableSet(locations.keySet());
-    }
-    return Collections.emptySet();
+  DocumentDictionary documents() {
+    return this.documents;
   }
 
   /**
-   * adds a stem to the index. updates the count after adding the stem to the index.
+   * Adds an offset to every position in the index and to the stem count of every document. Used to
+   * place an index built from one part of a file after the parts before it, before it is merged.
    *
-   * @param stem word stem
-   * @param path file path
-   * @param location index in stemList
-   * @return true if added successfully.
+   * @param offset the number of stems before the part of the file this index was built from
    */
+  void shiftPositions(int offset) {
+    changed();
+    for (Postings postings : this.index.values()) {
+      postings.shift(offset);
+    }
+    for (int doc = 0; doc < this.documents.size(); doc++) {
+      this.documents.updateCount(doc, this.documents.count(doc) + offset);
+    }
+  }
+
+  @Override
+  public Set<String> getWords() {
+    return Collections.unmodifiableSet(this.index.keySet());
+  }
+
+  @Override
+  public Map<String, Integer> getCounts() {
+    return this.documents.getCounts();
+  }
+
+  @Override
+  public Set<Integer> getPositions(String word, String location) {
+    var positions = lookup(word, location);
+    if (positions != null) {
+      return Collections.unmodifiableSet(positions);
+    }
+    return Collections.emptySet();
+  }
+
+  @Override
+  public Set<String> getLocations(String word) {
+    var postings = this.index.get(word);
+    if (postings != null) {
+      return Collections.unmodifiableSet(postings.toMap(documents).keySet());
+    }
+    return Collections.emptySet();
+  }
+
+  @Override
   public boolean add(String stem, String path, int location) {
-    boolean addToIndex =
-        this.index
-            .computeIfAbsent(stem, s -> new TreeMap<>())
-            .computeIfAbsent(path, p -> new TreeSet<>())
-            .add(location);
+    changed();
+    int doc = this.documents.id(path);
+    boolean addToIndex = this.index.computeIfAbsent(stem, s -> newPostings()).add(doc, location);
 
-    this.counts.merge(path, location, Integer::max);
+    this.documents.updateCount(doc, location);
 
     return addToIndex;
   }
 
-  /**
-   * Add a collection of stems to Index.
-   *
-   * @param path Path of file.
-   * @param stems Collection of stems
-   * @return true if successful.
-   */
+  @Override
   public boolean addAll(String path, Collection<String> stems) {
     int location = 1;
     for (String stem : stems) {
@@ -109,241 +154,345 @@ public class InvertedIndex {
     return true;
   }
 
+  @Override
+  public boolean addIndex(InvertedIndex other) {
+    return merge(other, false);
+  }
+
+  @Override
+  public boolean moveIndex(InvertedIndex other) {
+    return merge(other, true);
+  }
+
   /**
-   * Copies data from another inverted index into this index.
+   * Merges another inverted index into this index. If this index is empty and the postings can be
+   * moved, the sorted map of the other index is taken over in one linear pass. If the other index
+   * is not much smaller than this one, both maps are walked in order together, so stems found in
+   * both are merged without looking them up. Otherwise each stem of the other index is looked up.
    *
    * @param other a different inverted index
-   * @return true if the add is successful.
+   * @param move true if the postings of the other index may be taken over
+   * @return true if the merge is successful.
    */
-  public boolean addIndex(InvertedIndex other) {
-    for (var otherEntry : other.index.entrySet()) {
-      String otherEntryKey = otherEntry.getKey();
-      var otherEntryValue = otherEntry.getValue();
-      var thisEntry = this.index.get(otherEntryKey);
-      if (thisEntry == null) {
-        this.index.put(otherEntryKey, otherEntryValue);
-      } else {
-        for (var entry : otherEntryValue.entrySet()) {
-          String entryKey = entry.getKey();
-          var entryValue = entry.getValue();
-          if (thisEntry.containsKey(entryKey)) {
-            thisEntry.get(entryKey).addAll(entryValue);
-          } else {
-            thisEntry.put(entryKey, entryValue);
-          }
-        }
+  private boolean merge(InvertedIndex other, boolean move) {
+    changed();
+
+    // translate the document ids of the other index into the ids used by this index.
+    int[] docMap = new int[other.documents.size()];
+    for (int otherDoc = 0; otherDoc < docMap.length; otherDoc++) {
+      int doc = this.documents.id(other.documents.location(otherDoc));
+      this.documents.updateCount(doc, other.documents.count(otherDoc));
+      docMap[otherDoc] = doc;
+    }
+    boolean transfer = move && transferable(other, docMap, this.compressed);
+
+    if (transfer && this.index.isEmpty()) {
+      for (Postings postings : other.index.values()) {
+        postings.renumber(docMap);
       }
+      this.index.putAll(other.index); // builds the tree from the sorted map in linear time.
+      other.clearPostings();
+      return true;
     }
 
-    for (var otherEntry : other.counts.entrySet()) {
-      this.counts.merge(otherEntry.getKey(), otherEntry.getValue(), Integer::max);
+    if (other.index.size() * LOCKSTEP_RATIO < this.index.size()) {
+      for (var entry : other.index.entrySet()) {
+        mergePostings(this.index, entry.getKey(), entry.getValue(), docMap, transfer, compressed);
+      }
+    } else {
+      // walk both sorted maps together, and only look up the stems that are new to this index.
+      ArrayList<Map.Entry<String, Postings>> added = new ArrayList<>();
+      Iterator<Map.Entry<String, Postings>> mine = this.index.entrySet().iterator();
+      Map.Entry<String, Postings> current = mine.hasNext() ? mine.next() : null;
+      for (var entry : other.index.entrySet()) {
+        while (current != null && current.getKey().compareTo(entry.getKey()) < 0) {
+          current = mine.hasNext() ? mine.next() : null;
+        }
+        if (current != null && current.getKey().equals(entry.getKey())) {
+          current.getValue().addAll(entry.getValue(), docMap);
+        } else {
+          added.add(entry);
+        }
+      }
+      for (var entry : added) {
+        mergePostings(this.index, entry.getKey(), entry.getValue(), docMap, transfer, compressed);
+      }
     }
 
+    if (move) {
+      other.clearPostings();
+    }
     return true;
   }
 
   /**
-   * Returns true if index is empty.
+   * Checks if the postings of another index can be taken over by an index instead of copied. The
+   * postings must be stored in the same format, and the document ids must keep their order.
    *
-   * @return true if index is empty.
+   * @param other the index whose postings would be moved
+   * @param docMap maps the document ids of the other index to the ids of the index
+   * @param compressed true if the index stores its postings compressed
+   * @return true if the postings of the other index can be renumbered and moved
    */
-  public boolean isEmpty() {
-    return this.index.isEmpty();
+  static boolean transferable(InvertedIndex other, int[] docMap, boolean compressed) {
+    if (other.compressed != compressed) {
+      return false;
+    }
+    for (int i = 1; i < docMap.length; i++) {
+      if (docMap[i - 1] >= docMap[i]) {
+        return false;
+      }
+    }
+    return true;
   }
 
   /**
-   * Returns the number of stems in the index.
+   * Adds postings to the postings of a stem in an index. If the stem is new and the postings may be
+   * moved, they are renumbered in place and taken over instead of copied.
    *
-   * @return the number of stems in the index.
+   * @param index the postings of every stem of the index being added to
+   * @param stem the stem
+   * @param postings the postings to add
+   * @param docMap maps the document ids of the postings to the ids of the index
+   * @param transfer true if the postings may be taken over
+   * @param compressed true if the index stores its postings compressed
    */
+  static void mergePostings(
+      Map<String, Postings> index,
+      String stem,
+      Postings postings,
+      int[] docMap,
+      boolean transfer,
+      boolean compressed) {
+    Postings mine = index.get(stem);
+    if (mine != null) {
+      mine.addAll(postings, docMap);
+    } else if (transfer) {
+      postings.renumber(docMap);
+      index.put(stem, postings);
+    } else {
+      mine = newPostings(compressed);
+      mine.addAll(postings, docMap);
+      index.put(stem, mine);
+    }
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return this.index.isEmpty();
+  }
+
+  @Override
   public int size() {
     return this.index.size();
   }
 
-  /**
-   * Returns the number of locations for which there is a stem count.
-   *
-   * @return the number of locations for which there is a stem count.
-   */
+  @Override
   public int sizeOfCounts() {
-    return this.counts.size();
+    return this.documents.size();
   }
 
-  /**
-   * Returns the number of locations where a word occurs.
-   *
-   * @param word stem to be searched.
-   * @return the number of locations where a word occurs.
-   */
+  @Override
   public int numOfLocations(String word) {
-    var locations = this.index.get(word);
-    if (locations != null) {
-      return locations.size();
+    var postings = this.index.get(word);
+    if (postings != null) {
+      return postings.size();
     }
     return 0;
   }
 
-  /**
-   * Returns the number of positions where a word occurs in a location.
-   *
-   * @param word stem to be searched.
-   * @param location file path.
-   * @return the number of positions where the word occurs in location.
-   */
+  @Override
   public int numOfPositions(String word, String location) {
-    var locations = this.index.get(word);
-    if (locations != null) {
-      var positions = locations.get(location);
+    var positions = lookup(word, location);
+    if (positions != null) {
       return positions.size();
     }
     return 0;
   }
 
-  /**
-   * checks if word is in the index or not.
-   *
-   * @param word stem to be looked up
-   * @return true if word is in the index.
-   */
+  @Override
   public boolean hasWord(String word) {
     return this.index.containsKey(word);
   }
 
-  /**
-   * checks if the index has a location for the word.
-   *
-   * @param word stem in the index.
-   * @param location location of the stem.
-   * @return true if the stem has that location. false if the word or location is not in the index.
-   */
+  @Override
   public boolean hasLocation(String word, String location) {
-    var locations = this.index.get(word);
-    if (locations != null) {
-      return locations.containsKey(location);
+    return lookup(word, location) != null;
+  }
+
+  @Override
+  public boolean hasPosition(String word, String location, int position) {
+    var positions = lookup(word, location);
+    if (positions != null) {
+      return positions.contains(position);
     }
     return false;
   }
 
+  @Override
+  public boolean hasCount(String location) {
+    return this.documents.find(location) >= 0;
+  }
+
   /**
-   * Checks to see if a word is present in location at specified position
+   * Looks up the positions of a word in a location.
    *
-   * @param word stem to be checked
+   * @param word stem to be looked up
    * @param location file path
-   * @param position position in file to be checked.
-   * @return true if the word is found in the location at specified location.
+   * @return the positions, or null if the word does not occur in the location
    */
-  public boolean hasPosition(String word, String location, int position) {
-    var locations = this.index.get(word);
-    if (locations != null) {
-      var positions = locations.get(location);
-      if (positions != null) {
-        return positions.contains(position);
+  private PositionList lookup(String word, String location) {
+    var postings = this.index.get(word);
+    if (postings != null) {
+      int doc = this.documents.find(location);
+      if (doc >= 0) {
+        return postings.get(doc);
       }
     }
-    return false;
+    return null;
+  }
+
+  @Override
+  public FrozenIndex freeze() {
+    FrozenIndex current = this.frozen;
+    if (current == null) {
+      current = new FrozenIndex(this.index, this.documents);
+      this.frozen = current;
+    }
+    return current;
   }
 
   /**
-   * checks if stem counts for a location is present.
+   * Empties the postings of the index once they were moved into another index. The documents and
+   * their stem counts are kept.
+   */
+  void clearPostings() {
+    this.index.clear();
+    changed();
+  }
+
+  /** Marks the index as changed, so the frozen copy is no longer used. */
+  private void changed() {
+    this.version++;
+    this.frozen = null;
+  }
+
+  /**
+   * Returns the number of changes made to the index so far. A snapshot and the version read with it
+   * must be taken without any change in between.
    *
-   * @param location path of file.
-   * @return true if there is a stem count for the location.
+   * @return the current version of the index
    */
-  public boolean hasCount(String location) {
-    return this.counts.containsKey(location);
+  long version() {
+    return this.version;
   }
 
   /**
-   * Method to determine if partial or exact search needs to be performed.
+   * Copies the postings and documents of the index so it can be frozen later, possibly while the
+   * index changes.
    *
-   * @param queries set of stems in the query.
-   * @param partial partial flag.
-   * @return ArrayList of scores
+   * @return a flat copy of the index
    */
-  public ArrayList<Score> search(Set<String> queries, boolean partial) {
-    if (partial) {
-      return partialSearch(queries);
-    } else {
-      return exactSearch(queries);
+  FrozenIndex.Snapshot snapshot() {
+    return new FrozenIndex.Snapshot(this.index, this.documents);
+  }
+
+  /**
+   * Makes a frozen index the one searches use, unless the index changed since the snapshot it was
+   * built from was taken.
+   *
+   * @param frozen the index frozen from a snapshot
+   * @param version the version of the index when the snapshot was taken
+   * @return the frozen index
+   */
+  FrozenIndex publish(FrozenIndex frozen, long version) {
+    if (this.version == version) {
+      this.frozen = frozen;
+    }
+    return frozen;
+  }
+
+  @Override
+  public FrozenIndex frozen() {
+    return this.frozen;
+  }
+
+  @Override
+  public ArrayList<Score> exactSearch(Set<String> queries) {
+    FrozenIndex current = this.frozen;
+    if (current != null) {
+      return current.exactSearch(queries);
     }
+    return exactScores(queries).sorted();
+  }
+
+  @Override
+  public ArrayList<Score> partialSearch(Set<String> queries) {
+    FrozenIndex current = this.frozen;
+    if (current != null) {
+      return current.partialSearch(queries);
+    }
+    return partialScores(queries).sorted();
+  }
+
+  @Override
+  public ArrayList<Score> search(Set<String> queries, boolean partial, int limit, int offset) {
+    FrozenIndex current = this.frozen;
+    if (current != null) {
+      return current.search(queries, partial, limit, offset);
+    }
+    var scores = partial ? partialScores(queries) : exactScores(queries);
+    return scores.top(limit, offset);
   }
 
   /**
-   * Performs exact search on a set of queries
+   * Accumulates the scores of the documents containing any of the queries.
    *
    * @param queries set of queries.
-   * @return ArrayList of Scores.
+   * @return the accumulated scores
    */
-  public ArrayList<Score> exactSearch(Set<String> queries) {
-    ArrayList<Score> scores = new ArrayList<>();
-    HashMap<String, Score> lookup = new HashMap<>();
+  private ScoreAccumulator exactScores(Set<String> queries) {
+    ScoreAccumulator scores = new ScoreAccumulator(documents);
 
     for (String query : queries) {
-      var locations = index.get(query);
-      if (locations != null) {
-        updateScore(locations, lookup, scores);
+      var postings = index.get(query);
+      if (postings != null) {
+        scores.add(postings.cursor());
       }
     }
-    Collections.sort(scores);
     return scores;
   }
 
   /**
-   * Performs partial search on index
+   * Accumulates the scores of the documents containing a stem that starts with any of the queries.
    *
    * @param queries set of queries
-   * @return ArrayList of Scores
+   * @return the accumulated scores
    */
-  public ArrayList<Score> partialSearch(Set<String> queries) {
-    ArrayList<Score> scores = new ArrayList<>();
-    HashMap<String, Score> lookup = new HashMap<>();
+  private ScoreAccumulator partialScores(Set<String> queries) {
+    ScoreAccumulator scores = new ScoreAccumulator(documents);
     for (String query : queries) {
       for (var entry : index.tailMap(query).entrySet()) {
         String stem = entry.getKey();
-        TreeMap<String, TreeSet<Integer>> locations = entry.getValue();
+        Postings postings = entry.getValue();
         if (stem.startsWith(query)) {
-          updateScore(locations, lookup, scores);
+          scores.add(postings.cursor());
         } else {
           break;
         }
       }
     }
-    Collections.sort(scores);
     return scores;
   }
 
-  /**
-   * Updates the score.
-   *
-   * @param locations TreeMap of location and their positions.
-   * @param lookup the lookup map
-   * @param scores the list of scores.
-   */
-  private void updateScore(
-      TreeMap<String, TreeSet<Integer>> locations,
-      HashMap<String, Score> lookup,
-      ArrayList<Score> scores) {
-    for (var locEntry : locations.entrySet()) {
-      String location = locEntry.getKey();
-      Score score = lookup.get(location);
-      if (score == null) {
-        score = new Score(location);
-        scores.add(score);
-        lookup.put(location, score);
-      }
-      int count = locEntry.getValue().size();
-      score.update(count);
-    }
+  @Override
+  public void toJson(Path output) throws IOException {
+    JsonWriter.writeIndex(locationView(this.index, this.documents), output);
   }
 
-  /**
-   * writes index in pretty Json to output file.
-   *
-   * @param output Path of output file.
-   * @throws IOException if path is invalid.
-   */
-  public void toJson(Path output) throws IOException {
-    JsonWriter.writeIndex(this.index, output);
+  @Override
+  public void toSnapshot(Path output) throws IOException {
+    IndexSnapshot.write(this.index, this.documents, output);
   }
 
   /**
@@ -353,11 +502,52 @@ public class InvertedIndex {
    */
   @Override
   public String toString() {
-    return JsonWriter.writeIndex(index);
+    return JsonWriter.writeIndex(locationView(this.index, this.documents));
+  }
+
+  /**
+   * Returns a view of the index where the postings of each stem are keyed by location instead of
+   * document id. The location maps are only built while the view is iterated.
+   *
+   * @param index the postings of every stem, sorted by stem
+   * @param documents the documents referenced by the postings
+   * @return view of the index keyed by location
+   */
+  static Map<String, Map<String, PositionList>> locationView(
+      SortedMap<String, Postings> index, DocumentDictionary documents) {
+    return new AbstractMap<>() {
+      @Override
+      public Set<Entry<String, Map<String, PositionList>>> entrySet() {
+        return new AbstractSet<>() {
+          @Override
+          public Iterator<Entry<String, Map<String, PositionList>>> iterator() {
+            var iterator = index.entrySet().iterator();
+            return new Iterator<>() {
+              @Override
+              public boolean hasNext() {
+                return iterator.hasNext();
+              }
+
+              @Override
+              public Entry<String, Map<String, PositionList>> next() {
+                var entry = iterator.next();
+                return new SimpleImmutableEntry<>(
+                    entry.getKey(), entry.getValue().toMap(documents));
+              }
+            };
+          }
+
+          @Override
+          public int size() {
+            return index.size();
+          }
+        };
+      }
+    };
   }
 
   /** ScoreMap class to store the result */
-  public class Score implements Comparable<Score> {
+  public static class Score implements Comparable<Score> {
     /** Number of times query is present in file. */
     private int count;
 
@@ -367,15 +557,20 @@ public class InvertedIndex {
     /** File path where query word is located. */
     private final String location;
 
+    /** Total number of stems in the file. */
+    private final int total;
+
     /**
      * Constructor for the ScoreMap
      *
      * @param location the file where the query was searched.
+     * @param total the total number of stems in the file.
      */
-    public Score(String location) {
+    public Score(String location, int total) {
       this.count = 0;
       this.score = 0.0;
       this.location = location;
+      this.total = total;
     }
 
     /**
@@ -383,9 +578,9 @@ public class InvertedIndex {
      *
      * @param count the value by which to increment score.
      */
-    private void update(int count) {
+    void update(int count) {
       this.count += count;
-      this.score = (double) this.count / counts.get(this.location);
+      this.score = (double) this.count / this.total;
     }
 
     /**
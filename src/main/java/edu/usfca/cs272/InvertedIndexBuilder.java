@@ -1,13 +1,9 @@
 package edu.usfca.cs272;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import opennlp.tools.stemmer.Stemmer;
-import opennlp.tools.stemmer.snowball.SnowballStemmer;
 
 /**
  * InvertedIndexBuilder Class for the Search Engine Project.
@@ -18,15 +14,29 @@ import opennlp.tools.stemmer.snowball.SnowballStemmer;
 public class InvertedIndexBuilder {
 
   /** The inverted index to populate. */
-  private final InvertedIndex index;
+  private final MutableIndex index;
+
+  /** Turns the text into stems. */
+  private final Analyzer analyzer;
+
+  /**
+   * Constructor for InvertedIndexBuilder Class.
+   *
+   * @param invertedIndex InvertedIndex
+   */
+  public InvertedIndexBuilder(MutableIndex invertedIndex) {
+    this(invertedIndex, Analyzer.ENGLISH);
+  }
 
   /**
    * Constructor for InvertedIndexBuilder Class.
    *
    * @param invertedIndex InvertedIndex
+   * @param analyzer turns the text into stems
    */
-  public InvertedIndexBuilder(InvertedIndex invertedIndex) {
+  public InvertedIndexBuilder(MutableIndex invertedIndex, Analyzer analyzer) {
     this.index = invertedIndex;
+    this.analyzer = analyzer;
   }
 
   /**
@@ -68,7 +78,19 @@ public class InvertedIndexBuilder {
    * @throws IOException if file is not found.
    */
   public void readFile(Path file) throws IOException {
-    readFile(file, this.index);
+    readFile(file, this.index, this.analyzer);
+  }
+
+  /**
+   * reads text file to populate InvertedIndex.
+   *
+   * @param file path of text file.
+   * @param index Inverted index to populate
+   * @throws IOException if unable to read file.
+   * @see MappedTextReader
+   */
+  public static void readFile(Path file, MutableIndex index) throws IOException {
+    readFile(file, index, Analyzer.ENGLISH);
   }
 
   /**
@@ -76,23 +98,30 @@ public class InvertedIndexBuilder {
    *
    * @param file path of text file.
    * @param index Inverted index to populate
+   * @param analyzer turns the text into stems
+   * @throws IOException if unable to read file.
+   */
+  public static void readFile(Path file, MutableIndex index, Analyzer analyzer) throws IOException {
+    readFile(file, 0, Long.MAX_VALUE, index, analyzer);
+  }
+
+  /**
+   * Reads part of a text file to populate InvertedIndex, numbering the stems from 1.
+   *
+   * @param file path of text file.
+   * @param start the offset of the first byte to read, which must be the start of a line.
+   * @param end the offset after the last byte to read, which must be the end of a line or file.
+   * @param index Inverted index to populate
+   * @param analyzer turns the text into stems
+   * @return the number of stems read.
    * @throws IOException if unable to read file.
    */
-  public static void readFile(Path file, InvertedIndex index) throws IOException {
+  static int readFile(Path file, long start, long end, MutableIndex index, Analyzer analyzer)
+      throws IOException {
     // CITE: Talked to Frank about not having multi-line reading.
-    int iter = 1; // the position of the stem in the file.
-    try (BufferedReader br = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
-      String line;
-      String location = file.toString();
-      Stemmer stemmer = new SnowballStemmer(SnowballStemmer.ALGORITHM.ENGLISH);
-      while ((line = br.readLine()) != null) {
-        String[] words = FileStemmer.parse(line);
-        for (String word : words) {
-          index.add(String.valueOf(stemmer.stem(word)), location, iter);
-          iter++;
-        }
-      }
-    }
+    String location = file.toString();
+    return MappedTextReader.read(
+        file, start, end, analyzer, (stem, position) -> index.add(stem, location, position));
   }
 
   /**
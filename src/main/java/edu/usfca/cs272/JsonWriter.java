@@ -390,8 +390,26 @@ public class JsonWriter {
       Writer writer,
       int indent)
       throws IOException {
+    writeIndex(index.entrySet().iterator(), writer, indent);
+  }
+
+  /**
+   * Writes InvertedIndex as a pretty JSON, one entry at a time. Useful when the index is not held
+   * in memory as a map.
+   *
+   * @param iterator the entries of the InvertedIndex, sorted by stem
+   * @param writer Writer
+   * @param indent indent value
+   * @throws IOException if writer error.
+   */
+  public static void writeIndex(
+      Iterator<
+              ? extends Map.Entry<String, ? extends Map<String, ? extends Set<? extends Number>>>>
+          iterator,
+      Writer writer,
+      int indent)
+      throws IOException {
     writer.write("{");
-    var iterator = index.entrySet().iterator();
     if (iterator.hasNext()) {
       var element = iterator.next();
       writer.write("\n");
@@ -410,6 +428,69 @@ public class JsonWriter {
     writeIndent("}", writer, indent);
   }
 
+  /**
+   * Writes an index without positions as a pretty JSON object of nested objects, mapping each stem
+   * to the number of times it occurs in each location.
+   *
+   * @param index the frequencies of every stem in each location, sorted by stem
+   * @return pretty Json or null if IOException is thrown.
+   */
+  public static String writeFrequencies(
+      Map<String, ? extends Map<String, ? extends Number>> index) {
+    try {
+      StringWriter writer = new StringWriter();
+      writeFrequencies(index, writer, 0);
+      return writer.toString();
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Writes an index without positions as a pretty JSON object of nested objects.
+   *
+   * @param index the frequencies of every stem in each location, sorted by stem
+   * @param path path of output file.
+   * @throws IOException if BufferedWriter error.
+   */
+  public static void writeFrequencies(
+      Map<String, ? extends Map<String, ? extends Number>> index, Path path) throws IOException {
+    try (BufferedWriter bufferedWriter = Files.newBufferedWriter(path, UTF_8)) {
+      writeFrequencies(index, bufferedWriter, 0);
+    }
+  }
+
+  /**
+   * Writes an index without positions as a pretty JSON object of nested objects.
+   *
+   * @param index the frequencies of every stem in each location, sorted by stem
+   * @param writer Writer
+   * @param indent indent value
+   * @throws IOException if writer error.
+   */
+  public static void writeFrequencies(
+      Map<String, ? extends Map<String, ? extends Number>> index, Writer writer, int indent)
+      throws IOException {
+    writer.write("{");
+    var iterator = index.entrySet().iterator();
+    if (iterator.hasNext()) {
+      var element = iterator.next();
+      writer.write("\n");
+      writeQuote(element.getKey(), writer, indent + 1);
+      writer.write(": ");
+      writeObject(element.getValue(), writer, indent + 1);
+    }
+    while (iterator.hasNext()) {
+      var element = iterator.next();
+      writer.write(",\n");
+      writeQuote(element.getKey(), writer, indent + 1);
+      writer.write(": ");
+      writeObject(element.getValue(), writer, indent + 1);
+    }
+    writer.write("\n");
+    writeIndent("}", writer, indent);
+  }
+
   /**
    * Writes search results in pretty Json
    *
@@ -0,0 +1,203 @@
+package edu.usfca.cs272;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Reads the cleaned words of a UTF-8 text file by mapping the file into memory and tokenizing the
+ * bytes directly, instead of decoding every line into a string first. Only the finished words are
+ * created as strings.
+ *
+ * <p>Lines that only contain ASCII characters are tokenized byte by byte: letters are lowercased
+ * into a reusable buffer, other non-whitespace characters are removed, and whitespace ends a word.
+ * A line with any other character is decoded and split with a {@link WordTokenizer}, so the words
+ * are always the same as reading the file line by line.
+ *
+ * @author Ravneet Singh Bhatia
+ * @version Spring 2024
+ */
+public class MappedTextReader {
+  /** Largest number of bytes mapped at once. */
+  private static final int MAP_SIZE = 1 << 30;
+
+  /** Receives each word and its position. */
+  private final ObjIntConsumer<String> words;
+
+  /** Removes and stems the words, or null if the cleaned words are passed on as they are. */
+  private final Analyzer analyzer;
+
+  /** Letters of the ASCII word being read. */
+  private char[] word;
+
+  /** Splits the lines that are not ASCII into words. */
+  private final WordTokenizer tokenizer;
+
+  /** Number of words read so far. */
+  private int count;
+
+  /**
+   * Creates a new reader.
+   *
+   * @param analyzer removes and stems the words, or null if the cleaned words are passed on
+   * @param words receives each word and its position
+   */
+  private MappedTextReader(Analyzer analyzer, ObjIntConsumer<String> words) {
+    this.words = words;
+    this.analyzer = analyzer;
+    this.word = new char[32];
+    this.tokenizer = analyzer != null ? analyzer.tokenizer() : new WordTokenizer();
+    this.count = 0;
+  }
+
+  /**
+   * Reads the cleaned words of a file, numbering them from 1.
+   *
+   * @param file path of the text file
+   * @param words receives each word and its position
+   * @return the number of words read
+   * @throws IOException if unable to read the file, or if it is not valid UTF-8
+   */
+  public static int read(Path file, ObjIntConsumer<String> words) throws IOException {
+    return read(file, 0, Long.MAX_VALUE, null, words);
+  }
+
+  /**
+   * Reads the stems of part of a file, numbering them from 1. Words removed by the analyzer are not
+   * numbered.
+   *
+   * @param file path of the text file
+   * @param start the offset of the first byte to read, which must be the start of a line
+   * @param end the offset after the last byte to read, which must be the end of a line or file
+   * @param analyzer removes and stems the words, or null to pass on the cleaned words
+   * @param stems receives each stem and its position
+   * @return the number of stems read
+   * @throws IOException if unable to read the file, or if it is not valid UTF-8
+   */
+  public static int read(
+      Path file, long start, long end, Analyzer analyzer, ObjIntConsumer<String> stems)
+      throws IOException {
+    MappedTextReader reader = new MappedTextReader(analyzer, stems);
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long limit = Math.min(end, channel.size());
+      long offset = start;
+      while (offset < limit) {
+        long length = Math.min(MAP_SIZE, limit - offset);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        offset += reader.readLines(buffer, offset + length == limit);
+      }
+    }
+    return reader.count;
+  }
+
+  /**
+   * Reads the complete lines of a mapped part of a file. A line that runs past the end of the
+   * buffer is left for the next buffer, unless it is the last buffer or the only line.
+   *
+   * @param buffer the mapped bytes
+   * @param last true if the buffer ends at the end of the text
+   * @return the number of bytes read
+   * @throws IOException if a line is not valid UTF-8
+   */
+  private int readLines(ByteBuffer buffer, boolean last) throws IOException {
+    int limit = buffer.limit();
+    int line = 0;
+    while (line < limit) {
+      int end = line;
+      boolean ascii = true;
+      while (end < limit) {
+        byte b = buffer.get(end);
+        if (b == '\n' || b == '\r') {
+          break;
+        }
+        ascii &= b >= 0;
+        end++;
+      }
+
+      if (end == limit && !last && line > 0) {
+        break; // read the rest of the line from the next buffer.
+      }
+
+      if (ascii) {
+        readAscii(buffer, line, end);
+      } else {
+        readDecoded(buffer, line, end);
+      }
+      line = end + 1; // a \r\n ending is read as an extra empty line.
+    }
+    return Math.min(line, limit);
+  }
+
+  /**
+   * Reads the words of a line that only contains ASCII characters.
+   *
+   * @param buffer the mapped bytes
+   * @param start the index of the first byte of the line
+   * @param end the index after the last byte of the line
+   */
+  private void readAscii(ByteBuffer buffer, int start, int end) {
+    int length = 0;
+    for (int i = start; i < end; i++) {
+      int b = buffer.get(i);
+      if (b == ' ' || (b >= '\t' && b <= '\r')) {
+        length = finish(length);
+      } else if ((b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z')) {
+        if (length == word.length) {
+          word = Arrays.copyOf(word, length * 2);
+        }
+        word[length++] = (char) (b | 0x20); // lowercase.
+      }
+    }
+    finish(length);
+  }
+
+  /**
+   * Passes on the ASCII word in the buffer, if there is one.
+   *
+   * @param length the number of letters in the buffer
+   * @return 0, the length of the next word so far
+   */
+  private int finish(int length) {
+    if (length > 0) {
+      accept(new String(word, 0, length));
+    }
+    return 0;
+  }
+
+  /**
+   * Passes on a cleaned word, or its stem if it is kept by the analyzer.
+   *
+   * @param cleaned the cleaned word
+   */
+  private void accept(String cleaned) {
+    String kept = analyzer != null ? analyzer.stem(cleaned) : cleaned;
+    if (kept != null) {
+      words.accept(kept, ++count);
+    }
+  }
+
+  /**
+   * Reads the words of a line that contains characters other than ASCII.
+   *
+   * @param buffer the mapped bytes
+   * @param start the index of the first byte of the line
+   * @param end the index after the last byte of the line
+   * @throws IOException if the line is not valid UTF-8
+   */
+  private void readDecoded(ByteBuffer buffer, int start, int end) throws IOException {
+    CharBuffer line = StandardCharsets.UTF_8.newDecoder().decode(buffer.slice(start, end - start));
+    tokenizer.parse(line, this::accept);
+  }
+
+  @Override
+  public String toString() {
+    return "MappedTextReader{" + "count=" + count + '}';
+  }
+}
@@ -0,0 +1,318 @@
+package edu.usfca.cs272;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Finds the best scores of a query document-at-a-time, using the MaxScore algorithm to skip
+ * documents that cannot reach the best results. Each term has an upper bound, the highest score it
+ * adds to any single document. Once enough documents have been found, the terms whose bounds add up
+ * to less than the worst of the best scores cannot rank a document on their own, so only the
+ * documents of the other terms are visited and the cheap terms are only checked for documents that
+ * could still make it. The essential terms are added up term-at-a-time over windows of document
+ * ids, which keeps the cost per document close to a {@link ScoreAccumulator}.
+ *
+ * <p>The score of a document is its number of matches divided by its stem count, which is the sum
+ * of the scores of its matching terms, so the results are the same as a full search. A document is
+ * only skipped if its bound is clearly below the worst kept score, so documents that tie with it
+ * and differ in count or location are never lost to rounding.
+ *
+ * @author Ravneet Singh Bhatia
+ * @version Spring 2024
+ */
+public class MaxScoreEvaluator {
+  /** Relative margin a bound must be below the threshold by before a document is skipped. */
+  private static final double EPSILON = 1e-9;
+
+  /** Number of document ids whose essential terms are added up together. */
+  private static final int WINDOW = 4096;
+
+  /** The dictionary used to look up the location and stem count of a document. */
+  private final DocumentDictionary documents;
+
+  /** Cursors over the postings of each term, sorted by increasing upper bound. */
+  private final DocumentCursor[] cursors;
+
+  /** Sum of the upper bounds of the terms up to and including each term. */
+  private final double[] bounds;
+
+  /** Sum of the highest frequencies of the terms up to and including each term. */
+  private final long[] frequencies;
+
+  /** Number of documents of each term. */
+  private final int[] sizes;
+
+  /** Sum of the number of documents of the terms from each term on, plus a final zero. */
+  private final long[] candidates;
+
+  /**
+   * Creates a new evaluator.
+   *
+   * @param documents the dictionary of the documents being searched
+   * @param cursors cursors over the postings of each query term
+   * @param bounds the upper bound of each query term, parallel to the cursors
+   * @param frequencies the highest frequency of each query term in a single document, parallel to
+   *     the cursors
+   * @param sizes the number of documents of each query term, parallel to the cursors
+   */
+  public MaxScoreEvaluator(
+      DocumentDictionary documents,
+      DocumentCursor[] cursors,
+      double[] bounds,
+      int[] frequencies,
+      int[] sizes) {
+    this.documents = documents;
+    this.cursors = new DocumentCursor[cursors.length];
+    this.bounds = new double[cursors.length];
+    this.frequencies = new long[cursors.length];
+    this.sizes = new int[cursors.length];
+    this.candidates = new long[cursors.length + 1];
+
+    Integer[] order = new Integer[cursors.length];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, (first, second) -> Double.compare(bounds[first], bounds[second]));
+
+    double sum = 0;
+    long frequency = 0;
+    for (int i = 0; i < order.length; i++) {
+      this.cursors[i] = cursors[order[i]];
+      sum += bounds[order[i]];
+      this.bounds[i] = sum;
+      frequency += frequencies[order[i]];
+      this.frequencies[i] = frequency;
+      this.sizes[i] = sizes[order[i]];
+    }
+    for (int i = order.length - 1; i >= 0; i--) {
+      this.candidates[i] = this.candidates[i + 1] + this.sizes[i];
+    }
+  }
+
+  /**
+   * Returns one page of the best scores, sorted from best to worst.
+   *
+   * @param limit the maximum number of scores to return
+   * @param offset the number of best scores to skip
+   * @return the sorted scores ranked from {@code offset} to {@code offset + limit}
+   */
+  public ArrayList<InvertedIndex.Score> top(int limit, int offset) {
+    int keep = (int) Math.min((long) limit + offset, documents.size());
+    if (keep <= 0 || offset >= keep) {
+      return new ArrayList<>();
+    }
+
+    // heap of the best documents seen so far, with the worst of them at the root.
+    int[] heapDocs = new int[keep];
+    int[] heapCounts = new int[keep];
+    int heapSize = 0;
+    double threshold = 0;
+
+    // terms before this index are not enough to reach the threshold on their own.
+    int essential = 0;
+
+    for (DocumentCursor cursor : cursors) {
+      cursor.nextDoc();
+    }
+
+    // small indexes fit in a single window, so only allocate what the documents need.
+    int window = Math.min(WINDOW, (documents.size() + Long.SIZE - 1) & -Long.SIZE);
+    int[] counts = new int[window];
+    long[] seen = new long[window / Long.SIZE];
+
+    while (true) {
+      int base = DocumentCursor.NO_MORE_DOCS;
+      for (int i = essential; i < cursors.length; i++) {
+        base = Math.min(base, cursors[i].doc());
+      }
+      if (base == DocumentCursor.NO_MORE_DOCS) {
+        break;
+      }
+
+      // add up the essential terms for the documents in the window, one term at a time.
+      int end = (int) Math.min((long) base + window, DocumentCursor.NO_MORE_DOCS);
+      int last = 0;
+      for (int i = essential; i < cursors.length; i++) {
+        DocumentCursor cursor = cursors[i];
+        for (int doc = cursor.doc(); doc < end; doc = cursor.nextDoc()) {
+          int index = doc - base;
+          counts[index] += cursor.frequency();
+          seen[index >>> 6] |= 1L << index;
+          last = Math.max(last, index);
+        }
+      }
+
+      // then finish the documents of the window in order.
+      for (int word = 0; word <= last >>> 6; word++) {
+        long bits = seen[word];
+        seen[word] = 0;
+        while (bits != 0) {
+          int index = word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+          bits &= bits - 1;
+
+          int doc = base + index;
+          int count = counts[index];
+          counts[index] = 0;
+
+          // check the other terms from the highest bound down, while the document can make it.
+          int total = documents.count(doc);
+          boolean skipped = false;
+          for (int i = essential - 1; i >= 0; i--) {
+            if (heapSize == keep
+                && (below((double) count / total + bounds[i], threshold)
+                    || below((double) (count + frequencies[i]) / total, threshold))) {
+              skipped = true;
+              break;
+            }
+            if (cursors[i].advance(doc) == doc) {
+              count += cursors[i].frequency();
+            }
+          }
+          if (skipped) {
+            continue;
+          }
+
+          if (heapSize < keep) {
+            heapDocs[heapSize] = doc;
+            heapCounts[heapSize] = count;
+            siftUp(heapDocs, heapCounts, heapSize++);
+          } else if (compare(doc, count, heapDocs[0], heapCounts[0]) < 0) {
+            heapDocs[0] = doc;
+            heapCounts[0] = count;
+            siftDown(heapDocs, heapCounts, heapSize);
+          } else {
+            continue;
+          }
+
+          if (heapSize == keep) {
+            threshold = (double) heapCounts[0] / documents.count(heapDocs[0]);
+          }
+        }
+      }
+
+      // the essential terms only change between windows, so no document is counted twice.
+      while (essential < cursors.length && skippable(essential, threshold)) {
+        essential++;
+      }
+    }
+
+    ArrayList<InvertedIndex.Score> scores = new ArrayList<>(heapSize);
+    for (int i = 0; i < heapSize; i++) {
+      InvertedIndex.Score score =
+          new InvertedIndex.Score(documents.location(heapDocs[i]), documents.count(heapDocs[i]));
+      score.update(heapCounts[i]);
+      scores.add(score);
+    }
+    Collections.sort(scores);
+    return new ArrayList<>(scores.subList(Math.min(offset, scores.size()), scores.size()));
+  }
+
+  /**
+   * Returns true if a term no longer needs to be added up term-at-a-time. The term must not be able
+   * to reach the threshold together with the terms of lower bounds, and checking it for each
+   * candidate document must be cheaper than reading all of its documents. The second check matters
+   * because rare terms tend to have the lowest bounds, and looking them up for every document of
+   * the common terms would cost more than it saves.
+   *
+   * @param term the index of the term
+   * @param threshold the worst kept score
+   * @return true if the term can be checked only for candidate documents
+   */
+  private boolean skippable(int term, double threshold) {
+    long estimate = Math.min(candidates[term + 1], documents.size());
+    return below(bounds[term], threshold) && sizes[term] >= estimate;
+  }
+
+  /**
+   * Returns true if a bound is clearly below the threshold, even allowing for rounding.
+   *
+   * @param bound the upper bound of a score
+   * @param threshold the worst kept score
+   * @return true if no document within the bound can be kept
+   */
+  private static boolean below(double bound, double threshold) {
+    return bound + bound * EPSILON < threshold;
+  }
+
+  /**
+   * Compares two matching documents in the same order as {@link InvertedIndex.Score}.
+   *
+   * @param first the first document id
+   * @param firstCount the number of matches in the first document
+   * @param second the second document id
+   * @param secondCount the number of matches in the second document
+   * @return a negative number if the first document ranks better than the second
+   */
+  private int compare(int first, int firstCount, int second, int secondCount) {
+    double firstScore = (double) firstCount / documents.count(first);
+    double secondScore = (double) secondCount / documents.count(second);
+    int compare = Double.compare(secondScore, firstScore);
+    if (compare == 0) {
+      compare = Integer.compare(secondCount, firstCount);
+      if (compare == 0) {
+        compare = documents.location(first).compareTo(documents.location(second));
+      }
+    }
+    return compare;
+  }
+
+  /**
+   * Moves the document at an index up the heap until its parent ranks worse.
+   *
+   * @param docs the document ids in the heap
+   * @param counts the number of matches of each document in the heap
+   * @param index the index of the document to move
+   */
+  private void siftUp(int[] docs, int[] counts, int index) {
+    int doc = docs[index];
+    int count = counts[index];
+    while (index > 0) {
+      int parent = (index - 1) >>> 1;
+      if (compare(doc, count, docs[parent], counts[parent]) <= 0) {
+        break;
+      }
+      docs[index] = docs[parent];
+      counts[index] = counts[parent];
+      index = parent;
+    }
+    docs[index] = doc;
+    counts[index] = count;
+  }
+
+  /**
+   * Moves the document at the root down the heap until both children rank better.
+   *
+   * @param docs the document ids in the heap
+   * @param counts the number of matches of each document in the heap
+   * @param heapSize the number of documents in the heap
+   */
+  private void siftDown(int[] docs, int[] counts, int heapSize) {
+    int index = 0;
+    int doc = docs[0];
+    int count = counts[0];
+    while (true) {
+      int child = 2 * index + 1;
+      if (child >= heapSize) {
+        break;
+      }
+      if (child + 1 < heapSize
+          && compare(docs[child + 1], counts[child + 1], docs[child], counts[child]) > 0) {
+        child++;
+      }
+      if (compare(doc, count, docs[child], counts[child]) >= 0) {
+        break;
+      }
+      docs[index] = docs[child];
+      counts[index] = counts[child];
+      index = child;
+    }
+    docs[index] = doc;
+    counts[index] = count;
+  }
+
+  @Override
+  public String toString() {
+    return "MaxScoreEvaluator{" + "terms=" + cursors.length + '}';
+  }
+}
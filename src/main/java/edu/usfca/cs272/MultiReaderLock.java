@@ -1,6 +1,7 @@
 package edu.usfca.cs272;
 
 import java.util.ConcurrentModificationException;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -46,21 +47,26 @@ public class MultiReaderLock {
   private static final Logger log = LogManager.getLogger();
 
   /**
-   * The lock object used for synchronized access of readers and writers. For security reasons, a
-   * separate private final lock object is used.
+   * The lock used for access of readers and writers. For security reasons, a separate private final
+   * lock object is used. It is a {@link ReentrantLock} rather than a monitor, so a virtual thread
+   * that waits for it does not pin its carrier thread.
    *
    * @see <a href=
    *     "https://wiki.sei.cmu.edu/confluence/display/java/LCK00-J.+Use+private+final+lock+objects+to+synchronize+classes+that+may+interact+with+untrusted+code">
    *     SEI CERT Oracle Coding Standard for Java</a>
    */
-  private final Object lock;
+  private final ReentrantLock lock;
+
+  /** Signalled when the last reader or writer releases its lock. */
+  private final Condition released;
 
   /** Initializes a new simple read/write lock. */
   public MultiReaderLock() {
     readerLock = new ReadLock();
     writerLock = new WriteLock();
 
-    lock = new Object();
+    lock = new ReentrantLock();
+    released = lock.newCondition();
 
     readers = 0;
     writers = 0;
@@ -92,8 +98,11 @@ public class MultiReaderLock {
    * @return the number of active readers
    */
   public int readers() {
-    synchronized (lock) {
+    lock.lock();
+    try {
       return readers;
+    } finally {
+      lock.unlock();
     }
   }
 
@@ -103,8 +112,11 @@ public class MultiReaderLock {
    * @return the number of active writers
    */
   public int writers() {
-    synchronized (lock) {
+    lock.lock();
+    try {
       return writers;
+    } finally {
+      lock.unlock();
     }
   }
 
@@ -117,8 +129,11 @@ public class MultiReaderLock {
    * @see Thread#currentThread()
    */
   public boolean isActiveWriter() {
-    synchronized (lock) {
+    lock.lock();
+    try {
       return Thread.currentThread().equals(activeWriter);
+    } finally {
+      lock.unlock();
     }
   }
 
@@ -151,16 +166,17 @@ public class MultiReaderLock {
      */
     @Override
     public void lock() {
+      lock.lock();
       try {
-        synchronized (lock) {
-          while (writers > 0 && (!isActiveWriter())) {
-            lock.wait();
-          }
-          readers++;
+        while (writers > 0 && (!isActiveWriter())) {
+          released.await();
         }
+        readers++;
       } catch (InterruptedException ex) {
         log.catching(Level.DEBUG, ex);
         Thread.currentThread().interrupt();
+      } finally {
+        lock.unlock();
       }
     }
 
@@ -171,14 +187,17 @@ public class MultiReaderLock {
      */
     @Override
     public void unlock() throws IllegalStateException {
-      synchronized (lock) {
+      lock.lock();
+      try {
         if (readers < 1) {
           throw new IllegalStateException("No Readers to unlock");
         }
         readers--;
         if (readers == 0) {
-          lock.notifyAll();
+          released.signalAll();
         }
+      } finally {
+        lock.unlock();
       }
     }
   }
@@ -193,17 +212,18 @@ public class MultiReaderLock {
      */
     @Override
     public void lock() {
+      lock.lock();
       try {
-        synchronized (lock) {
-          while ((readers > 0 || writers > 0) && !isActiveWriter()) {
-            lock.wait();
-          }
-          writers++;
-          activeWriter = Thread.currentThread();
+        while ((readers > 0 || writers > 0) && !isActiveWriter()) {
+          released.await();
         }
+        writers++;
+        activeWriter = Thread.currentThread();
       } catch (InterruptedException e) {
         log.catching(Level.DEBUG, e);
         Thread.currentThread().interrupt();
+      } finally {
+        lock.unlock();
       }
     }
 
@@ -217,7 +237,8 @@ public class MultiReaderLock {
      */
     @Override
     public void unlock() throws IllegalStateException, ConcurrentModificationException {
-      synchronized (lock) {
+      lock.lock();
+      try {
         if (writers < 1) {
           throw new IllegalStateException("No Writers to unlock.");
         }
@@ -227,8 +248,10 @@ public class MultiReaderLock {
         writers--;
         if (writers == 0) {
           activeWriter = null;
-          lock.notifyAll();
+          released.signalAll();
         }
+      } finally {
+        lock.unlock();
       }
     }
   }
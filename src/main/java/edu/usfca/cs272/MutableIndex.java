@@ -0,0 +1,149 @@
+package edu.usfca.cs272;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * An inverted index that can be added to while it is built, and then frozen for searching. Stems
+ * are mapped to the locations they occur in and how many times they occur in each location. A
+ * {@link PositionalIndex} also keeps the position of every occurrence.
+ *
+ * <p>{@link InvertedIndex} keeps every stem in one sorted map. Other implementations, such as
+ * {@link SegmentedInvertedIndex}, keep their own structures, which is why merging only ever reads
+ * from a plain {@link InvertedIndex}.
+ *
+ * @author Ravneet Singh Bhatia
+ * @version Spring 2024
+ */
+public interface MutableIndex extends SearchableIndex {
+  /**
+   * Returns unmodifiable set of keys in the index.
+   *
+   * @return unmodifiable set of keys in the index.
+   */
+  Set<String> getWords();
+
+  /**
+   * returns the locations in which a word occurs
+   *
+   * @param word stem to be searched
+   * @return locations.
+   */
+  Set<String> getLocations(String word);
+
+  /**
+   * adds a stem to the index. updates the count after adding the stem to the index.
+   *
+   * @param stem word stem
+   * @param path file path
+   * @param location index in stemList
+   * @return true if added successfully.
+   */
+  boolean add(String stem, String path, int location);
+
+  /**
+   * Add a collection of stems to Index.
+   *
+   * @param path Path of file.
+   * @param stems Collection of stems
+   * @return true if successful.
+   */
+  boolean addAll(String path, Collection<String> stems);
+
+  /**
+   * Copies data from another inverted index into this index.
+   *
+   * @param other a different inverted index
+   * @return true if the add is successful.
+   */
+  boolean addIndex(InvertedIndex other);
+
+  /**
+   * Moves data from another inverted index into this index. Unlike {@link
+   * #addIndex(InvertedIndex)}, the postings of stems that are new to this index are taken over
+   * rather than copied, so the other index must not be used afterward. Meant for local indexes that
+   * are built only to be merged.
+   *
+   * @param other a different inverted index, which is emptied
+   * @return true if the move is successful.
+   */
+  boolean moveIndex(InvertedIndex other);
+
+  /**
+   * Returns true if index is empty.
+   *
+   * @return true if index is empty.
+   */
+  boolean isEmpty();
+
+  /**
+   * Returns the number of stems in the index.
+   *
+   * @return the number of stems in the index.
+   */
+  int size();
+
+  /**
+   * Returns the number of locations for which there is a stem count.
+   *
+   * @return the number of locations for which there is a stem count.
+   */
+  int sizeOfCounts();
+
+  /**
+   * Returns the number of locations where a word occurs.
+   *
+   * @param word stem to be searched.
+   * @return the number of locations where a word occurs.
+   */
+  int numOfLocations(String word);
+
+  /**
+   * Returns the number of times a word occurs in a location.
+   *
+   * @param word stem to be searched.
+   * @param location file path.
+   * @return the number of times the word occurs in location.
+   */
+  int numOfPositions(String word, String location);
+
+  /**
+   * checks if word is in the index or not.
+   *
+   * @param word stem to be looked up
+   * @return true if word is in the index.
+   */
+  boolean hasWord(String word);
+
+  /**
+   * checks if the index has a location for the word.
+   *
+   * @param word stem in the index.
+   * @param location location of the stem.
+   * @return true if the stem has that location. false if the word or location is not in the index.
+   */
+  boolean hasLocation(String word, String location);
+
+  /**
+   * checks if stem counts for a location is present.
+   *
+   * @param location path of file.
+   * @return true if there is a stem count for the location.
+   */
+  boolean hasCount(String location);
+
+  /**
+   * Creates a read-optimized copy of the index that later searches will use until the index is
+   * changed again. Should be called once the index is done being built.
+   *
+   * @return the frozen index
+   */
+  FrozenIndex freeze();
+
+  /**
+   * Returns the read-optimized copy of the index if it is up to date.
+   *
+   * @return the frozen index, or null if the index has not been frozen since it last changed
+   */
+  FrozenIndex frozen();
+}
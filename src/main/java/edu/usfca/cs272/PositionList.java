@@ -0,0 +1,211 @@
+package edu.usfca.cs272;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Sorted set of word positions backed by a growable primitive {@code int[]} array. Positions are
+ * normally appended in increasing order, which is a constant time operation. Out of order positions
+ * are still supported but require shifting the array.
+ *
+ * @author Ravneet Singh Bhatia
+ * @version Spring 2024
+ */
+public class PositionList extends AbstractSet<Integer> {
+  /** Initial capacity of a new position list. */
+  private static final int DEFAULT_CAPACITY = 4;
+
+  /** The positions, sorted in increasing order. Only the first {@link #size} values are used. */
+  private int[] positions;
+
+  /** Number of positions in the list. */
+  private int size;
+
+  /** Creates a new empty position list. */
+  public PositionList() {
+    this.positions = new int[DEFAULT_CAPACITY];
+    this.size = 0;
+  }
+
+  /**
+   * Adds a position to the list, keeping the list sorted and free of duplicates.
+   *
+   * @param position the position to add
+   * @return true if the position was not already in the list
+   */
+  public boolean add(int position) {
+    if (size == 0 || positions[size - 1] < position) { // sorted append, the common case.
+      ensureCapacity(size + 1);
+      positions[size++] = position;
+      return true;
+    }
+
+    int index = Arrays.binarySearch(positions, 0, size, position);
+    if (index >= 0) {
+      return false;
+    }
+
+    index = -(index + 1);
+    ensureCapacity(size + 1);
+    System.arraycopy(positions, index, positions, index + 1, size - index);
+    positions[index] = position;
+    size++;
+    return true;
+  }
+
+  @Override
+  public boolean add(Integer position) {
+    return add(position.intValue());
+  }
+
+  /**
+   * Adds all positions from another list into this one.
+   *
+   * @param other the list of positions to add
+   * @return true if this list changed
+   */
+  public boolean addAll(PositionList other) {
+    if (other.size == 0) {
+      return false;
+    }
+
+    if (size == 0 || positions[size - 1] < other.positions[0]) { // bulk append.
+      ensureCapacity(size + other.size);
+      System.arraycopy(other.positions, 0, positions, size, other.size);
+      size += other.size;
+      return true;
+    }
+
+    // merge the two sorted arrays, dropping duplicates.
+    int[] merged = new int[size + other.size];
+    int i = 0;
+    int j = 0;
+    int k = 0;
+    while (i < size && j < other.size) {
+      int a = positions[i];
+      int b = other.positions[j];
+      if (a < b) {
+        merged[k++] = a;
+        i++;
+      } else if (b < a) {
+        merged[k++] = b;
+        j++;
+      } else {
+        merged[k++] = a;
+        i++;
+        j++;
+      }
+    }
+    while (i < size) {
+      merged[k++] = positions[i++];
+    }
+    while (j < other.size) {
+      merged[k++] = other.positions[j++];
+    }
+
+    boolean changed = k != size;
+    this.positions = merged;
+    this.size = k;
+    return changed;
+  }
+
+  /**
+   * Adds an offset to every position in the list. The order of the positions does not change.
+   *
+   * @param offset the amount to add to each position
+   */
+  public void shift(int offset) {
+    for (int i = 0; i < size; i++) {
+      positions[i] += offset;
+    }
+  }
+
+  /**
+   * Checks if the list contains a position.
+   *
+   * @param position the position to look up
+   * @return true if the position is in the list
+   */
+  public boolean contains(int position) {
+    return Arrays.binarySearch(positions, 0, size, position) >= 0;
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    return o instanceof Integer position && contains(position.intValue());
+  }
+
+  /**
+   * Returns the position at an index in the sorted list.
+   *
+   * @param index the index of the position
+   * @return the position at that index
+   */
+  public int get(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException(index);
+    }
+    return positions[index];
+  }
+
+  /**
+   * Returns the largest position in the list.
+   *
+   * @return the largest position, or 0 if the list is empty
+   */
+  public int last() {
+    return size == 0 ? 0 : positions[size - 1];
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  /** Removes all positions from the list, keeping the backing array for reuse. */
+  public void clear() {
+    size = 0;
+  }
+
+  /** Shrinks the backing array to the number of positions in the list. */
+  public void trimToSize() {
+    if (positions.length > size) {
+      positions = Arrays.copyOf(positions, size);
+    }
+  }
+
+  /**
+   * Grows the backing array by half when it is too small to hold the requested capacity.
+   *
+   * @param capacity the number of positions the array needs to hold
+   */
+  private void ensureCapacity(int capacity) {
+    if (capacity > positions.length) {
+      int grown = positions.length + (positions.length >> 1) + 1;
+      positions = Arrays.copyOf(positions, Math.max(grown, capacity));
+    }
+  }
+
+  @Override
+  public Iterator<Integer> iterator() {
+    return new Iterator<>() {
+      /** Index of the next position to return. */
+      private int next = 0;
+
+      @Override
+      public boolean hasNext() {
+        return next < size;
+      }
+
+      @Override
+      public Integer next() {
+        if (next >= size) {
+          throw new NoSuchElementException();
+        }
+        return positions[next++];
+      }
+    };
+  }
+}
@@ -0,0 +1,41 @@
+package edu.usfca.cs272;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Set;
+
+/**
+ * A mutable index that keeps the position of every occurrence of a stem, so the exact positions
+ * can be looked up and the whole index can be saved as a snapshot.
+ *
+ * @author Ravneet Singh Bhatia
+ * @version Spring 2024
+ */
+public interface PositionalIndex extends MutableIndex {
+  /**
+   * Returns unmodifiable set of the positions of a word in a location.
+   *
+   * @param word key in the index.
+   * @param location the file in which word is located.
+   * @return unmodifiable set of the positions of the word in the location.
+   */
+  Set<Integer> getPositions(String word, String location);
+
+  /**
+   * Checks to see if a word is present in location at specified position
+   *
+   * @param word stem to be checked
+   * @param location file path
+   * @param position position in file to be checked.
+   * @return true if the word is found in the location at specified location.
+   */
+  boolean hasPosition(String word, String location, int position);
+
+  /**
+   * Writes the index as a binary snapshot that can be opened with {@link IndexSnapshot#open(Path)}.
+   *
+   * @param output Path of output file.
+   * @throws IOException if unable to write the file.
+   */
+  void toSnapshot(Path output) throws IOException;
+}
@@ -0,0 +1,71 @@
+package edu.usfca.cs272;
+
+import java.util.TreeMap;
+
+/**
+ * The postings of a single word: the documents the word occurs in, sorted by document id, and the
+ * positions of the word in each of those documents.
+ *
+ * @author Ravneet Singh Bhatia
+ * @version Spring 2024
+ */
+public interface Postings extends DocumentPostings {
+  /**
+   * Adds a position of the word in a document.
+   *
+   * @param doc the document id
+   * @param position the position of the word in the document
+   * @return true if the position was not already in the postings
+   */
+  boolean add(int doc, int position);
+
+  /**
+   * Adds all the positions of another postings into this one.
+   *
+   * @param other the postings to add
+   * @param docMap maps the document ids of the other postings to the ids used by this one
+   */
+  void addAll(Postings other, int[] docMap);
+
+  /**
+   * Changes the document ids of these postings in place. The map must keep the ids in the same
+   * order, such as one that gives the documents of a local index the ids they were assigned in a
+   * larger index, so the postings stay sorted without moving anything.
+   *
+   * @param docMap maps the current document ids to the new ids, strictly increasing
+   */
+  void renumber(int[] docMap);
+
+  /**
+   * Adds an offset to every position in these postings, such as to place the positions of one part
+   * of a document after the positions of the parts before it.
+   *
+   * @param offset the amount to add to each position
+   */
+  void shift(int offset);
+
+  /**
+   * Returns the positions of the word in a document.
+   *
+   * @param doc the document id
+   * @return the positions, or null if the word does not occur in the document
+   */
+  PositionList get(int doc);
+
+  /**
+   * Returns a new cursor positioned before the first document, which can also read the positions
+   * in each document.
+   *
+   * @return a new cursor over the postings
+   */
+  @Override
+  PostingsCursor cursor();
+
+  /**
+   * Returns the postings as a map from location to positions, sorted by location.
+   *
+   * @param documents the dictionary used to look up locations
+   * @return the postings keyed by location
+   */
+  TreeMap<String, PositionList> toMap(DocumentDictionary documents);
+}
@@ -0,0 +1,19 @@
+package edu.usfca.cs272;
+
+/**
+ * Forward-only cursor over the postings of a single word. Besides the documents and frequencies of
+ * a {@link DocumentCursor}, the positions of the current document can be read one at a time without
+ * building a set.
+ *
+ * @author Ravneet Singh Bhatia
+ * @version Spring 2024
+ */
+public interface PostingsCursor extends DocumentCursor {
+  /**
+   * Returns the next position of the word in the current document. May be called at most {@link
+   * #frequency()} times per document.
+   *
+   * @return the next position in the current document
+   */
+  int nextPosition();
+}
@@ -74,6 +74,17 @@ public interface Processor {
    */
   List<InvertedIndex.Score> getScores(String query);
 
+  /**
+   * Searches for a query and returns one page of the best scores, without storing them in the
+   * results.
+   *
+   * @param query the query to be searched.
+   * @param limit the maximum number of scores to return.
+   * @param offset the number of best scores to skip.
+   * @return the scores ranked from {@code offset} to {@code offset + limit}.
+   */
+  List<InvertedIndex.Score> search(String query, int limit, int offset);
+
   /**
    * Returns the set of queries.
    *
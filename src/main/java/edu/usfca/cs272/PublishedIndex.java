@@ -0,0 +1,141 @@
+package edu.usfca.cs272;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * Searches the last published generation of an index that is still being built. Writers keep
+ * adding to the underlying index under its own locks, while a background timer freezes a new
+ * immutable {@link FrozenIndex} generation at most once per refresh interval and publishes it
+ * through a volatile reference. Searches only read that reference, so they never wait for a writer,
+ * at the cost of missing whatever was added since the last refresh.
+ *
+ * @author Ravneet Singh Bhatia
+ * @version Spring 2024
+ */
+public class PublishedIndex implements SearchableIndex {
+  /** The index being built. */
+  private final MutableIndex index;
+
+  /** Minimum time between two generations, in milliseconds. */
+  private final long interval;
+
+  /** The generation that searches currently read. */
+  private volatile FrozenIndex generation;
+
+  /** Timer that publishes new generations, or null if it is not running. */
+  private Timer timer;
+
+  /**
+   * Creates a new published index and publishes the first generation.
+   *
+   * @param index the index being built, which must be safe to freeze while other threads add to it
+   * @param interval minimum time between two generations, in milliseconds
+   */
+  public PublishedIndex(MutableIndex index, long interval) {
+    if (interval < 1) {
+      throw new IllegalArgumentException("Refresh interval must be positive: " + interval);
+    }
+    this.index = index;
+    this.interval = interval;
+    this.generation = index.freeze();
+    this.timer = null;
+  }
+
+  /**
+   * Starts publishing a new generation every refresh interval, if the index changed since the last
+   * one. The timer thread is a daemon, so it does not keep the program running.
+   */
+  public synchronized void start() {
+    if (timer != null) {
+      return;
+    }
+    timer = new Timer("index-refresh", true);
+    timer.schedule(
+        new TimerTask() {
+          @Override
+          public void run() {
+            if (index.frozen() == null) { // skip the freeze if nothing changed.
+              refresh();
+            }
+          }
+        },
+        interval,
+        interval);
+  }
+
+  /** Stops the timer and publishes a final generation with everything added so far. */
+  public void stop() {
+    synchronized (this) {
+      if (timer != null) {
+        timer.cancel();
+        timer = null;
+      }
+    }
+    refresh();
+  }
+
+  /**
+   * Freezes the index and publishes the result as the current generation. Synchronized so a slow
+   * refresh cannot publish an older generation over a newer one.
+   *
+   * @return the published generation
+   */
+  public synchronized FrozenIndex refresh() {
+    FrozenIndex next = index.freeze();
+    this.generation = next;
+    return next;
+  }
+
+  /**
+   * Returns the generation that searches currently read.
+   *
+   * @return the current generation
+   */
+  public FrozenIndex generation() {
+    return this.generation;
+  }
+
+  @Override
+  public ArrayList<InvertedIndex.Score> exactSearch(Set<String> queries) {
+    return generation.exactSearch(queries);
+  }
+
+  @Override
+  public ArrayList<InvertedIndex.Score> partialSearch(Set<String> queries) {
+    return generation.partialSearch(queries);
+  }
+
+  @Override
+  public ArrayList<InvertedIndex.Score> search(
+      Set<String> queries, boolean partial, int limit, int offset) {
+    return generation.search(queries, partial, limit, offset);
+  }
+
+  @Override
+  public Map<String, Integer> getCounts() {
+    return generation.getCounts();
+  }
+
+  /**
+   * Writes the underlying index in pretty Json, including anything added since the last refresh.
+   * Generations do not keep positions, so this reads the index being built under its own locks.
+   *
+   * @param output Path of output file.
+   * @throws IOException if path is invalid.
+   */
+  @Override
+  public void toJson(Path output) throws IOException {
+    index.toJson(output);
+  }
+
+  @Override
+  public String toString() {
+    return "PublishedIndex{" + "interval=" + interval + ", generation=" + generation + '}';
+  }
+}
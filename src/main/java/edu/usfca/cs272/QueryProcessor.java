@@ -4,7 +4,6 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.function.Function;
-import opennlp.tools.stemmer.snowball.SnowballStemmer;
 
 /** Single threaded query processor. */
 public class QueryProcessor implements Processor {
@@ -12,21 +11,40 @@ public class QueryProcessor implements Processor {
   /** Map of the query and its score */
   private final TreeMap<String, ArrayList<InvertedIndex.Score>> searches;
 
+  /** The index to be searched. */
+  private final SearchableIndex index;
+
+  /** True if partial search is to be performed. */
+  private final boolean partial;
+
   /** The search method that will be used on the index. */
   private final Function<Set<String>, ArrayList<InvertedIndex.Score>> searchMethod;
 
-  /** Stemmer for the processor. */
-  private static final SnowballStemmer stemmer =
-      new SnowballStemmer(SnowballStemmer.ALGORITHM.ENGLISH);
+  /** Turns the queries into stems. */
+  private final Analyzer analyzer;
+
+  /**
+   * Creates a new query processor.
+   *
+   * @param invertedIndex The index to be searched.
+   * @param partial true if partial search is to be performed.
+   */
+  public QueryProcessor(SearchableIndex invertedIndex, boolean partial) {
+    this(invertedIndex, partial, Analyzer.ENGLISH);
+  }
 
   /**
    * Creates a new query processor.
    *
    * @param invertedIndex The index to be searched.
    * @param partial true if partial search is to be performed.
+   * @param analyzer turns the queries into stems, which must be the analyzer used by the index.
    */
-  public QueryProcessor(InvertedIndex invertedIndex, boolean partial) {
+  public QueryProcessor(SearchableIndex invertedIndex, boolean partial, Analyzer analyzer) {
+    this.analyzer = analyzer;
     this.searches = new TreeMap<>();
+    this.index = invertedIndex;
+    this.partial = partial;
     this.searchMethod = partial ? invertedIndex::partialSearch : invertedIndex::exactSearch;
   }
 
@@ -35,14 +53,13 @@ public class QueryProcessor implements Processor {
    *
    * @param invertedIndex index to be searched
    */
-  public QueryProcessor(InvertedIndex invertedIndex) {
-    this.searches = new TreeMap<>();
-    this.searchMethod = invertedIndex::exactSearch;
+  public QueryProcessor(SearchableIndex invertedIndex) {
+    this(invertedIndex, false);
   }
 
   @Override
   public void parseQuery(String query) {
-    var stems = FileStemmer.uniqueStems(query, stemmer);
+    var stems = analyzer.uniqueStems(query);
     query = String.join(" ", stems);
 
     if (query.isBlank() || searches.containsKey(query)) {
@@ -52,6 +69,15 @@ public class QueryProcessor implements Processor {
     searches.put(query, scores);
   }
 
+  @Override
+  public List<InvertedIndex.Score> search(String query, int limit, int offset) {
+    var stems = analyzer.uniqueStems(query);
+    if (stems.isEmpty()) {
+      return Collections.emptyList();
+    }
+    return Collections.unmodifiableList(index.search(stems, partial, limit, offset));
+  }
+
   @Override
   public void toJson(Path path) throws IOException {
     JsonWriter.writeSearch(searches, path);
@@ -64,7 +90,7 @@ public class QueryProcessor implements Processor {
 
   @Override
   public List<InvertedIndex.Score> getScores(String query) {
-    var stems = FileStemmer.uniqueStems(query, stemmer);
+    var stems = analyzer.uniqueStems(query);
     query = String.join(" ", stems);
     ArrayList<InvertedIndex.Score> scores = searches.get(query);
     if (scores == null) {
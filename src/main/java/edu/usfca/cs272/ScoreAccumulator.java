@@ -0,0 +1,209 @@
+package edu.usfca.cs272;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Accumulates the scores of the documents matching a query, one postings cursor at a time. Matches
+ * are counted in an array indexed by document id, and a {@link InvertedIndex.Score} is only created
+ * for the documents that are returned.
+ *
+ * @author Ravneet Singh Bhatia
+ * @version Spring 2024
+ */
+public class ScoreAccumulator {
+  /** The dictionary used to look up the location and stem count of a document. */
+  private final DocumentDictionary documents;
+
+  /** The number of matches in each document, indexed by document id. */
+  private final int[] matches;
+
+  /** The documents with at least one match, in the order they first matched. */
+  private int[] matched;
+
+  /** Number of documents with at least one match. */
+  private int size;
+
+  /**
+   * Creates a new accumulator.
+   *
+   * @param documents the dictionary of the documents being searched
+   */
+  public ScoreAccumulator(DocumentDictionary documents) {
+    this.documents = documents;
+    this.matches = new int[documents.size()];
+    this.matched = new int[16];
+    this.size = 0;
+  }
+
+  /**
+   * Adds the frequency of every document in a postings cursor to its score.
+   *
+   * @param cursor cursor over the postings of a matching stem
+   */
+  public void add(DocumentCursor cursor) {
+    for (int doc = cursor.nextDoc(); doc != DocumentCursor.NO_MORE_DOCS; doc = cursor.nextDoc()) {
+      add(doc, cursor.frequency());
+    }
+  }
+
+  /**
+   * Adds to the score of a single document.
+   *
+   * @param doc the document id
+   * @param count the number of matches in the document, at least one
+   */
+  public void add(int doc, int count) {
+    if (matches[doc] == 0) {
+      if (size == matched.length) {
+        matched = Arrays.copyOf(matched, size * 2);
+      }
+      matched[size++] = doc;
+    }
+    matches[doc] += count;
+  }
+
+  /**
+   * Returns the number of documents with at least one match.
+   *
+   * @return the number of matching documents
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the accumulated scores, sorted from best to worst.
+   *
+   * @return the sorted scores
+   */
+  public ArrayList<InvertedIndex.Score> sorted() {
+    ArrayList<InvertedIndex.Score> scores = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      scores.add(score(matched[i]));
+    }
+    Collections.sort(scores);
+    return scores;
+  }
+
+  /**
+   * Returns one page of the best scores, sorted from best to worst. Only the best {@code offset +
+   * limit} documents are kept in a bounded heap while scanning, so the other matches are never
+   * sorted and never turned into {@link InvertedIndex.Score} objects.
+   *
+   * @param limit the maximum number of scores to return
+   * @param offset the number of best scores to skip
+   * @return the sorted scores ranked from {@code offset} to {@code offset + limit}
+   */
+  public ArrayList<InvertedIndex.Score> top(int limit, int offset) {
+    int keep = (int) Math.min((long) limit + offset, size);
+    if (keep <= 0 || offset >= keep) {
+      return new ArrayList<>();
+    }
+
+    // heap of the best documents seen so far, with the worst of them at the root.
+    int[] heap = new int[keep];
+    int heapSize = 0;
+    for (int i = 0; i < size; i++) {
+      int doc = matched[i];
+      if (heapSize < keep) {
+        heap[heapSize] = doc;
+        siftUp(heap, heapSize++);
+      } else if (compare(doc, heap[0]) < 0) {
+        heap[0] = doc;
+        siftDown(heap, heapSize);
+      }
+    }
+
+    ArrayList<InvertedIndex.Score> scores = new ArrayList<>(heapSize);
+    for (int i = 0; i < heapSize; i++) {
+      scores.add(score(heap[i]));
+    }
+    Collections.sort(scores);
+    return new ArrayList<>(scores.subList(offset, scores.size()));
+  }
+
+  /**
+   * Creates the score of a matching document.
+   *
+   * @param doc the document id
+   * @return the score of the document
+   */
+  private InvertedIndex.Score score(int doc) {
+    InvertedIndex.Score score =
+        new InvertedIndex.Score(documents.location(doc), documents.count(doc));
+    score.update(matches[doc]);
+    return score;
+  }
+
+  /**
+   * Compares two matching documents in the same order as {@link InvertedIndex.Score}.
+   *
+   * @param first the first document id
+   * @param second the second document id
+   * @return a negative number if the first document ranks better than the second
+   */
+  private int compare(int first, int second) {
+    double firstScore = (double) matches[first] / documents.count(first);
+    double secondScore = (double) matches[second] / documents.count(second);
+    int compare = Double.compare(secondScore, firstScore);
+    if (compare == 0) {
+      compare = Integer.compare(matches[second], matches[first]);
+      if (compare == 0) {
+        compare = documents.location(first).compareTo(documents.location(second));
+      }
+    }
+    return compare;
+  }
+
+  /**
+   * Moves the document at an index up the heap until its parent ranks worse.
+   *
+   * @param heap the heap of document ids
+   * @param index the index of the document to move
+   */
+  private void siftUp(int[] heap, int index) {
+    int doc = heap[index];
+    while (index > 0) {
+      int parent = (index - 1) >>> 1;
+      if (compare(doc, heap[parent]) <= 0) {
+        break;
+      }
+      heap[index] = heap[parent];
+      index = parent;
+    }
+    heap[index] = doc;
+  }
+
+  /**
+   * Moves the document at the root down the heap until both children rank better.
+   *
+   * @param heap the heap of document ids
+   * @param heapSize the number of documents in the heap
+   */
+  private void siftDown(int[] heap, int heapSize) {
+    int index = 0;
+    int doc = heap[0];
+    while (true) {
+      int child = 2 * index + 1;
+      if (child >= heapSize) {
+        break;
+      }
+      if (child + 1 < heapSize && compare(heap[child + 1], heap[child]) > 0) {
+        child++;
+      }
+      if (compare(doc, heap[child]) >= 0) {
+        break;
+      }
+      heap[index] = heap[child];
+      index = child;
+    }
+    heap[index] = doc;
+  }
+
+  @Override
+  public String toString() {
+    return "ScoreAccumulator{" + "matches=" + size + '}';
+  }
+}
@@ -6,6 +6,7 @@ import java.io.Serial;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.concurrent.Executors;
 
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServlet;
@@ -13,8 +14,10 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.apache.commons.text.StringEscapeUtils;
 import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.servlet.ServletHandler;
 import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 
 /**
  * Server for the Search Engine.
@@ -49,10 +52,36 @@ public class SearchServer {
    * @param index the index to perform search on
    * @param processor the processor to perform search on index.
    */
-  public SearchServer(int port, ThreadSafeInvertedIndex index, Processor processor, WorkQueue queue)
+  public SearchServer(int port, SearchableIndex index, Processor processor, WorkQueue queue)
+      throws IOException {
+    this(port, index, processor, queue, false);
+  }
+
+  /**
+   * Host the server on localhost.
+   *
+   * @param port the port on which to host the server.
+   * @param index the index to perform search on
+   * @param processor the processor to perform search on index.
+   * @param queue the work queue that executes the search tasks.
+   * @param virtual true if each request is handled on its own virtual thread instead of a thread of
+   *     a bounded pool.
+   * @throws IOException if the templates cannot be read.
+   */
+  public SearchServer(
+      int port, SearchableIndex index, Processor processor, WorkQueue queue, boolean virtual)
       throws IOException {
     DatabaseConnector db = new DatabaseConnector(Path.of("src/main/resources/database.properties"));
-    this.server = new Server(port); // instantiate the Server.
+    if (virtual) { // the pool still accepts connections, but requests run on virtual threads.
+      QueuedThreadPool pool = new QueuedThreadPool();
+      pool.setVirtualThreadsExecutor(Executors.newVirtualThreadPerTaskExecutor());
+      this.server = new Server(pool);
+      ServerConnector connector = new ServerConnector(server);
+      connector.setPort(port);
+      server.addConnector(connector);
+    } else {
+      this.server = new Server(port); // instantiate the Server.
+    }
     this.queue = queue;
     ServletHandler handler = new ServletHandler();
     // Map the servlets.
@@ -7,6 +7,7 @@ import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.Serial;
+import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.sql.Connection;
@@ -32,6 +33,9 @@ public class SearchServlet extends HttpServlet {
   /** Class version for serialization, in [YEAR][TERM] format (unused). */
   @Serial private static final long serialVersionUID = 202401;
 
+  /** The number of results shown on each page. */
+  public static final int RESULTS_PER_PAGE = 50;
+
   /** The thread-safe query processor to be used. */
   private final transient Processor processor;
 
@@ -60,8 +64,8 @@ public class SearchServlet extends HttpServlet {
   @Override
   protected void doGet(HttpServletRequest request, HttpServletResponse response)
       throws ServletException, IOException {
-    String query = request.getParameter("query");
-    query = StringEscapeUtils.escapeHtml4(query);
+    String parameter = request.getParameter("query");
+    String query = StringEscapeUtils.escapeHtml4(parameter);
     StringJoiner sb = new StringJoiner("\n");
     StringJoiner stats = new StringJoiner("\n");
     if (query != null) {
@@ -75,22 +79,36 @@ public class SearchServlet extends HttpServlet {
         }
       }
 
+      int page = parsePage(request.getParameter("page"));
+      int offset = (page - 1) * RESULTS_PER_PAGE;
+
       Instant start = Instant.now(); // the instant the search is going to be called.
-      processor.parseQuery(query);
+      // ask for one extra result to know if there is a next page.
+      var scores = processor.search(query, RESULTS_PER_PAGE + 1, offset);
       long elapsed = Duration.between(start, Instant.now()).toMillis();
       double seconds =
           (double) elapsed / Duration.ofSeconds(1).toMillis(); // time taken to execute the search.
-      var scores = processor.getScores(query);
+      boolean hasNext = scores.size() > RESULTS_PER_PAGE;
+      if (hasNext) {
+        scores = scores.subList(0, RESULTS_PER_PAGE);
+      }
 
-      // Let the user know how many results were found in how many seconds.
+      // Let the user know which results are shown and how many seconds the search took.
       sb.add("<div class='hero has-text-centered'>");
-      sb.add(
-          "<br /> <p class='sub-title is-5'> "
-              + scores.size()
-              + " results in "
-              + seconds
-              + " seconds."
-              + "</p>");
+      if (scores.isEmpty()) {
+        sb.add("<br /> <p class='sub-title is-5'> No results in " + seconds + " seconds.</p>");
+      } else {
+        sb.add(
+            "<br /> <p class='sub-title is-5'> Results "
+                + (offset + 1)
+                + "&ndash;"
+                + (offset + scores.size())
+                + " in "
+                + seconds
+                + " seconds."
+                + "</p>");
+      }
+      sb.add(pageLinks(parameter, page, hasNext));
       sb.add("</div>");
 
       // Serve the results.
@@ -150,4 +168,42 @@ public class SearchServlet extends HttpServlet {
     out.printf(htmlTemplate, SearchServer.theme, sb, stats, metaResults);
     out.flush();
   }
+
+  /**
+   * Parses the requested page number.
+   *
+   * @param page the page parameter of the request, may be null
+   * @return the page number, starting at 1
+   */
+  private static int parsePage(String page) {
+    if (page == null) {
+      return 1;
+    }
+    try {
+      // keep the offset of the page from overflowing.
+      return Math.clamp(Integer.parseInt(page), 1, Integer.MAX_VALUE / RESULTS_PER_PAGE);
+    } catch (NumberFormatException e) {
+      return 1;
+    }
+  }
+
+  /**
+   * Creates the links to the previous and next page of results.
+   *
+   * @param query the query parameter of the request
+   * @param page the current page number
+   * @param hasNext true if there are more results after the current page
+   * @return the html of the links
+   */
+  private static String pageLinks(String query, int page, boolean hasNext) {
+    String href = "/?query=" + URLEncoder.encode(query, StandardCharsets.UTF_8) + "&page=";
+    StringJoiner links = new StringJoiner(" ", "<p class='sub-title is-6'>", "</p>");
+    if (page > 1) {
+      links.add("<a href='" + href + (page - 1) + "'>Previous</a>");
+    }
+    if (hasNext) {
+      links.add("<a href='" + href + (page + 1) + "'>Next</a>");
+    }
+    return links.toString();
+  }
 }
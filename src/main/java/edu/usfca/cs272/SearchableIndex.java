@@ -0,0 +1,75 @@
+package edu.usfca.cs272;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An index that can be searched and written as JSON, whether it is held in memory or opened from
+ * disk.
+ *
+ * @author Ravneet Singh Bhatia
+ * @version Spring 2024
+ */
+public interface SearchableIndex {
+  /**
+   * Performs exact search on a set of queries
+   *
+   * @param queries set of queries.
+   * @return ArrayList of Scores.
+   */
+  ArrayList<InvertedIndex.Score> exactSearch(Set<String> queries);
+
+  /**
+   * Performs partial search on index
+   *
+   * @param queries set of queries
+   * @return ArrayList of Scores
+   */
+  ArrayList<InvertedIndex.Score> partialSearch(Set<String> queries);
+
+  /**
+   * Method to determine if partial or exact search needs to be performed.
+   *
+   * @param queries set of stems in the query.
+   * @param partial partial flag.
+   * @return ArrayList of scores
+   */
+  default ArrayList<InvertedIndex.Score> search(Set<String> queries, boolean partial) {
+    if (partial) {
+      return partialSearch(queries);
+    } else {
+      return exactSearch(queries);
+    }
+  }
+
+  /**
+   * Performs a search and returns only one page of the best results. Unlike {@link #search(Set,
+   * boolean)}, the matches outside the page are never fully sorted.
+   *
+   * @param queries set of stems in the query.
+   * @param partial partial flag.
+   * @param limit the maximum number of scores to return
+   * @param offset the number of best scores to skip
+   * @return ArrayList of the scores ranked from {@code offset} to {@code offset + limit}
+   */
+  ArrayList<InvertedIndex.Score> search(
+      Set<String> queries, boolean partial, int limit, int offset);
+
+  /**
+   * Returns unmodifiable map of files and their stem counts.
+   *
+   * @return unmodifiable map of files and their stem counts.
+   */
+  Map<String, Integer> getCounts();
+
+  /**
+   * writes index in pretty Json to output file.
+   *
+   * @param output Path of output file.
+   * @throws IOException if path is invalid.
+   */
+  void toJson(Path output) throws IOException;
+}
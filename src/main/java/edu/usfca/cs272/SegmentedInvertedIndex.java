@@ -0,0 +1,743 @@
+package edu.usfca.cs272;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Thread-safe inverted index that ingests at a steady rate however large it grows. New postings go
+ * into a small in-memory buffer, which is flushed into an immutable sorted {@link IndexSegment}
+ * once it holds enough positions, so adding a document never touches the postings of older
+ * documents. A background thread keeps the number of segments small with a log merge: whenever
+ * {@link #MERGE_FACTOR} adjacent segments have the same level, they are merged into one segment of
+ * the next level. Searches fan out over the buffer and every live segment and add up the scores of
+ * each document.
+ *
+ * <p>The buffer is only flushed between documents, so the postings of a document usually live in
+ * exactly one place. Adding to a document that was already flushed puts the new postings in the
+ * buffer like any other, so the buffer and newer segments then overlay the older ones for that
+ * document. Scores of the same document simply add up across segments, while positions and
+ * locations are combined wherever a document may be split, and merging segments folds the overlay
+ * back into one set of postings.
+ *
+ * <p>Merges run without holding the lock, since segments never change. Flushes only append
+ * segments, so the segments a merge was made from are still in place when it is swapped in. For the
+ * same reason, freezing and writing the index only hold the lock to copy the buffer and the
+ * documents, and merge the segments into one afterward, so writers are not held up for the whole
+ * index.
+ *
+ * @author Ravneet Singh Bhatia
+ * @version Spring 2024
+ */
+public class SegmentedInvertedIndex implements PositionalIndex {
+  /** Number of segments of the same level that are merged into one segment of the next level. */
+  public static final int MERGE_FACTOR = 8;
+
+  /** Document ids and stem counts of every location, shared by the buffer and all segments. */
+  private final DocumentDictionary documents;
+
+  /** The postings of the documents that have not been flushed yet. */
+  private TreeMap<String, Postings> buffer;
+
+  /** Number of positions in the buffer. */
+  private long buffered;
+
+  /** Number of documents at the last flush. Documents with higher ids live only in the buffer. */
+  private int flushed;
+
+  /** True once a flushed document was added to, so its postings may be split over segments. */
+  private boolean split;
+
+  /** The live segments, oldest first. Replaced rather than changed, so it can be read unlocked. */
+  private volatile List<IndexSegment> segments;
+
+  /** Number of positions the buffer holds before it is flushed. */
+  private final long flushSize;
+
+  /** True if the postings of the buffer are stored compressed. */
+  private final boolean compressed;
+
+  /** The lock guarding the documents, the buffer and the list of segments. */
+  private final MultiReaderLock lock;
+
+  /** Single background thread that merges segments. */
+  private final ExecutorService merger;
+
+  /** The number of changes made to the index so far. */
+  private long version;
+
+  /** Read-optimized copy of the index, or null if the index changed since it was last frozen. */
+  private volatile FrozenIndex frozen;
+
+  /**
+   * Creates a new segmented inverted index.
+   *
+   * @param flushSize the number of positions the buffer holds before it is flushed, at least one
+   */
+  public SegmentedInvertedIndex(long flushSize) {
+    this(flushSize, false);
+  }
+
+  /**
+   * Creates a new segmented inverted index.
+   *
+   * @param flushSize the number of positions the buffer holds before it is flushed, at least one
+   * @param compressed true if the postings of the buffer should be stored delta and variable-byte
+   *     compressed
+   */
+  public SegmentedInvertedIndex(long flushSize, boolean compressed) {
+    if (flushSize < 1) {
+      throw new IllegalArgumentException("Flush size must be at least one: " + flushSize);
+    }
+    this.documents = new DocumentDictionary();
+    this.buffer = new TreeMap<>();
+    this.buffered = 0;
+    this.flushed = 0;
+    this.split = false;
+    this.segments = List.of();
+    this.flushSize = flushSize;
+    this.compressed = compressed;
+    this.lock = new MultiReaderLock();
+    this.version = 0;
+    this.merger =
+        Executors.newSingleThreadExecutor(
+            task -> {
+              Thread thread = new Thread(task, "segment-merge");
+              thread.setDaemon(true); // merging never keeps the program running.
+              return thread;
+            });
+    this.frozen = null;
+  }
+
+  /**
+   * Returns the live segments, oldest first. The buffer is not included.
+   *
+   * @return unmodifiable list of the live segments
+   */
+  public List<IndexSegment> segments() {
+    return this.segments;
+  }
+
+  /**
+   * Flushes the buffer into a new segment and schedules a merge. Must be called while holding the
+   * write lock.
+   */
+  private void flush() {
+    if (buffer.isEmpty()) {
+      return;
+    }
+    ArrayList<IndexSegment> next = new ArrayList<>(segments);
+    next.add(new IndexSegment(buffer, documents.size()));
+    segments = Collections.unmodifiableList(next);
+    buffer = new TreeMap<>();
+    buffered = 0;
+    flushed = documents.size();
+    merger.execute(this::mergeSegments);
+  }
+
+  /**
+   * Copies the buffer into a segment and takes the live segments and a copy of the documents, so
+   * they can be merged without holding the lock. Must be called while holding a lock.
+   *
+   * @return the segments and documents of the index as they are now
+   */
+  private View view() {
+    ArrayList<IndexSegment> all = new ArrayList<>(segments);
+    all.add(new IndexSegment(buffer, documents.size()));
+    return new View(all, new DocumentDictionary(documents), version);
+  }
+
+  /**
+   * Takes a {@link #view()} of the index while holding the read lock.
+   *
+   * @return the segments and documents of the index as they are now
+   */
+  private View lockedView() {
+    lock.readLock().lock();
+    try {
+      return view();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** The segments and documents of the index at one point in time, which never change. */
+  private static class View {
+    /** The live segments and a segment copied from the buffer, oldest first. */
+    private final List<IndexSegment> segments;
+
+    /** Copy of the documents. */
+    private final DocumentDictionary documents;
+
+    /** The version of the index the view was taken at. */
+    private final long version;
+
+    /**
+     * Creates a view.
+     *
+     * @param segments the live segments and a segment copied from the buffer, oldest first
+     * @param documents copy of the documents
+     * @param version the version of the index the view was taken at
+     */
+    private View(List<IndexSegment> segments, DocumentDictionary documents, long version) {
+      this.segments = segments;
+      this.documents = documents;
+      this.version = version;
+    }
+
+    /**
+     * Merges every segment of the view into one.
+     *
+     * @return the postings of every stem, sorted by stem
+     */
+    private TreeMap<String, Postings> merge() {
+      return IndexSegment.merge(segments, documents.size()).toMap();
+    }
+  }
+
+  /**
+   * Merges adjacent segments of the same level until no level has enough segments. Runs on the
+   * background merge thread and only holds the lock to pick segments and to swap in the result.
+   */
+  private void mergeSegments() {
+    while (true) {
+      List<IndexSegment> chosen;
+      int documentCount;
+      lock.readLock().lock();
+      try {
+        chosen = choose(segments);
+        documentCount = documents.size();
+      } finally {
+        lock.readLock().unlock();
+      }
+      if (chosen == null) {
+        return;
+      }
+
+      IndexSegment merged = IndexSegment.merge(chosen, documentCount);
+
+      lock.writeLock().lock();
+      try {
+        // segments only change by appending a flush or by this thread, so the run is still live.
+        List<IndexSegment> current = segments;
+        int start = indexOf(current, chosen.get(0));
+        ArrayList<IndexSegment> next = new ArrayList<>(current.subList(0, start));
+        next.add(merged);
+        next.addAll(current.subList(start + chosen.size(), current.size()));
+        segments = Collections.unmodifiableList(next);
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+  }
+
+  /**
+   * Picks the first run of {@link #MERGE_FACTOR} adjacent segments that have the same level.
+   *
+   * @param segments the live segments, oldest first
+   * @return the segments to merge, or null if there are none
+   */
+  private static List<IndexSegment> choose(List<IndexSegment> segments) {
+    int start = 0;
+    for (int i = 1; i <= segments.size(); i++) {
+      if (i == segments.size() || segments.get(i).level() != segments.get(start).level()) {
+        if (i - start >= MERGE_FACTOR) {
+          return segments.subList(start, start + MERGE_FACTOR);
+        }
+        start = i;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Finds a segment by identity.
+   *
+   * @param segments the segments to search
+   * @param segment the segment to find
+   * @return the index of the segment, or -1 if it is not in the list
+   */
+  private static int indexOf(List<IndexSegment> segments, IndexSegment segment) {
+    for (int i = 0; i < segments.size(); i++) {
+      if (segments.get(i) == segment) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public Set<String> getWords() {
+    lock.readLock().lock();
+    try {
+      TreeSet<String> words = new TreeSet<>(buffer.keySet());
+      for (IndexSegment segment : segments) {
+        for (int i = 0; i < segment.terms(); i++) {
+          words.add(segment.term(i));
+        }
+      }
+      return Collections.unmodifiableSet(words);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public Map<String, Integer> getCounts() {
+    lock.readLock().lock();
+    try {
+      return documents.getCounts();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Looks up the positions of a word in a location, combining them if the document was added to
+   * after it was flushed. Must be called while holding the lock.
+   *
+   * @param word stem to be looked up
+   * @param location file path
+   * @return the positions, or null if the word does not occur in the location
+   */
+  private PositionList lookup(String word, String location) {
+    int doc = documents.find(location);
+    if (doc < 0) {
+      return null;
+    }
+    var postings = buffer.get(word);
+    PositionList found = postings == null ? null : postings.get(doc);
+    if (doc >= flushed) {
+      return found;
+    }
+
+    boolean copied = false;
+    for (IndexSegment segment : segments) {
+      int index = segment.find(word);
+      if (index >= 0) {
+        var positions = segment.postings(index).get(doc);
+        if (positions == null) {
+          continue;
+        }
+        if (found == null) {
+          found = positions;
+          if (!split) { // the document lives in exactly one place.
+            return found;
+          }
+        } else {
+          if (!copied) { // combined into a copy, since the buffer postings keep their own list.
+            PositionList combined = new PositionList();
+            combined.addAll(found);
+            found = combined;
+            copied = true;
+          }
+          found.addAll(positions);
+        }
+      }
+    }
+    return found;
+  }
+
+  @Override
+  public Set<Integer> getPositions(String word, String location) {
+    lock.readLock().lock();
+    try {
+      var positions = lookup(word, location);
+      if (positions != null) {
+        return Collections.unmodifiableSet(positions);
+      }
+      return Collections.emptySet();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public Set<String> getLocations(String word) {
+    lock.readLock().lock();
+    try {
+      TreeSet<String> locations = new TreeSet<>();
+      var postings = buffer.get(word);
+      if (postings != null) {
+        locations.addAll(postings.toMap(documents).keySet());
+      }
+      for (IndexSegment segment : segments) {
+        int index = segment.find(word);
+        if (index >= 0) {
+          locations.addAll(segment.postings(index).toMap(documents).keySet());
+        }
+      }
+      return Collections.unmodifiableSet(locations);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public boolean add(String stem, String path, int location) {
+    boolean added;
+    lock.writeLock().lock();
+    try {
+      int doc = documents.find(path);
+      if (doc < 0 && buffered >= flushSize) { // only flush between documents.
+        flush();
+      } else if (doc >= 0 && doc < flushed) { // the new postings overlay the flushed ones.
+        split = true;
+      }
+      doc = documents.id(path);
+      documents.updateCount(doc, location);
+      added =
+          buffer
+              .computeIfAbsent(stem, s -> InvertedIndex.newPostings(compressed))
+              .add(doc, location);
+      buffered++;
+      version++;
+    } finally {
+      lock.writeLock().unlock();
+    }
+
+    // cleared after the change, so a concurrent freeze that missed it cannot stay published.
+    this.frozen = null;
+    return added;
+  }
+
+  @Override
+  public boolean addAll(String path, Collection<String> stems) {
+    InvertedIndex local = new InvertedIndex(compressed);
+    local.addAll(path, stems);
+    return moveIndex(local);
+  }
+
+  @Override
+  public boolean addIndex(InvertedIndex other) {
+    return merge(other, false);
+  }
+
+  @Override
+  public boolean moveIndex(InvertedIndex other) {
+    return merge(other, true);
+  }
+
+  /**
+   * Merges another inverted index into the buffer, flushing first if every document is new.
+   *
+   * @param other a different inverted index
+   * @param move true if the postings of the other index may be taken over, in which case it must
+   *     not be used afterward
+   * @return true if the merge is successful.
+   */
+  private boolean merge(InvertedIndex other, boolean move) {
+    DocumentDictionary otherDocuments = other.documents();
+    lock.writeLock().lock();
+    try {
+      boolean known = false;
+      for (int otherDoc = 0; otherDoc < otherDocuments.size(); otherDoc++) {
+        int doc = documents.find(otherDocuments.location(otherDoc));
+        known |= doc >= 0;
+        split |= doc >= 0 && doc < flushed; // the new postings overlay the flushed ones.
+      }
+      if (!known && buffered >= flushSize) { // only flush between documents.
+        flush();
+      }
+
+      // translate the document ids of the other index into the shared ids.
+      int[] docMap = new int[otherDocuments.size()];
+      for (int otherDoc = 0; otherDoc < docMap.length; otherDoc++) {
+        int doc = documents.id(otherDocuments.location(otherDoc));
+        documents.updateCount(doc, otherDocuments.count(otherDoc));
+        docMap[otherDoc] = doc;
+        buffered += otherDocuments.count(otherDoc);
+      }
+
+      boolean transfer = move && InvertedIndex.transferable(other, docMap, compressed);
+      for (var entry : other.postings().entrySet()) {
+        InvertedIndex.mergePostings(
+            buffer, entry.getKey(), entry.getValue(), docMap, transfer, compressed);
+      }
+      version++;
+    } finally {
+      lock.writeLock().unlock();
+    }
+
+    // cleared after the change, so a concurrent freeze that missed it cannot stay published.
+    this.frozen = null;
+    return true;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  @Override
+  public int size() {
+    return getWords().size();
+  }
+
+  @Override
+  public int sizeOfCounts() {
+    lock.readLock().lock();
+    try {
+      return documents.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public int numOfLocations(String word) {
+    lock.readLock().lock();
+    try {
+      var postings = buffer.get(word);
+      if (split) { // a document may be in several places, so count each one once.
+        BitSet docs = new BitSet();
+        if (postings != null) {
+          addDocs(postings, docs);
+        }
+        for (IndexSegment segment : segments) {
+          int index = segment.find(word);
+          if (index >= 0) {
+            addDocs(segment.postings(index), docs);
+          }
+        }
+        return docs.cardinality();
+      }
+
+      // every document lives in exactly one place, so the sizes add up.
+      int count = postings == null ? 0 : postings.size();
+      for (IndexSegment segment : segments) {
+        int index = segment.find(word);
+        if (index >= 0) {
+          count += segment.postings(index).size();
+        }
+      }
+      return count;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Adds the document ids of postings to a set.
+   *
+   * @param postings the postings
+   * @param docs the set of document ids to add to
+   */
+  private static void addDocs(Postings postings, BitSet docs) {
+    DocumentCursor cursor = postings.cursor();
+    while (cursor.nextDoc() != DocumentCursor.NO_MORE_DOCS) {
+      docs.set(cursor.doc());
+    }
+  }
+
+  @Override
+  public int numOfPositions(String word, String location) {
+    lock.readLock().lock();
+    try {
+      var positions = lookup(word, location);
+      return positions == null ? 0 : positions.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public boolean hasWord(String word) {
+    lock.readLock().lock();
+    try {
+      if (buffer.containsKey(word)) {
+        return true;
+      }
+      for (IndexSegment segment : segments) {
+        if (segment.find(word) >= 0) {
+          return true;
+        }
+      }
+      return false;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public boolean hasLocation(String word, String location) {
+    lock.readLock().lock();
+    try {
+      return lookup(word, location) != null;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public boolean hasPosition(String word, String location, int position) {
+    lock.readLock().lock();
+    try {
+      var positions = lookup(word, location);
+      return positions != null && positions.contains(position);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public boolean hasCount(String location) {
+    lock.readLock().lock();
+    try {
+      return documents.find(location) >= 0;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Creates a read-optimized copy of the index. The segments are merged and the copy is built
+   * without holding the lock, and the copy is only published if no writer changed the index in the
+   * meantime.
+   *
+   * @return the frozen index
+   */
+  @Override
+  public FrozenIndex freeze() {
+    FrozenIndex current = this.frozen;
+    if (current != null) {
+      return current;
+    }
+
+    View view = lockedView();
+    current = new FrozenIndex(view.merge(), view.documents);
+
+    lock.readLock().lock();
+    try {
+      if (version == view.version) {
+        this.frozen = current;
+      }
+      return current;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public FrozenIndex frozen() {
+    return this.frozen;
+  }
+
+  @Override
+  public ArrayList<InvertedIndex.Score> exactSearch(Set<String> queries) {
+    FrozenIndex current = this.frozen;
+    if (current != null) { // the frozen index never changes, so no lock is needed.
+      return current.exactSearch(queries);
+    }
+
+    lock.readLock().lock();
+    try {
+      return exactScores(queries).sorted();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public ArrayList<InvertedIndex.Score> partialSearch(Set<String> queries) {
+    FrozenIndex current = this.frozen;
+    if (current != null) { // the frozen index never changes, so no lock is needed.
+      return current.partialSearch(queries);
+    }
+
+    lock.readLock().lock();
+    try {
+      return partialScores(queries).sorted();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public ArrayList<InvertedIndex.Score> search(
+      Set<String> queries, boolean partial, int limit, int offset) {
+    FrozenIndex current = this.frozen;
+    if (current != null) { // the frozen index never changes, so no lock is needed.
+      return current.search(queries, partial, limit, offset);
+    }
+
+    lock.readLock().lock();
+    try {
+      var scores = partial ? partialScores(queries) : exactScores(queries);
+      return scores.top(limit, offset);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Accumulates the scores of the documents containing any of the queries, over the buffer and
+   * every segment. Must be called while holding the lock.
+   *
+   * @param queries set of queries.
+   * @return the accumulated scores
+   */
+  private ScoreAccumulator exactScores(Set<String> queries) {
+    ScoreAccumulator scores = new ScoreAccumulator(documents);
+    for (String query : queries) {
+      var postings = buffer.get(query);
+      if (postings != null) {
+        scores.add(postings.cursor());
+      }
+      for (IndexSegment segment : segments) {
+        int index = segment.find(query);
+        if (index >= 0) {
+          scores.add(segment.postings(index).cursor());
+        }
+      }
+    }
+    return scores;
+  }
+
+  /**
+   * Accumulates the scores of the documents containing a stem that starts with any of the queries,
+   * over the buffer and every segment. Must be called while holding the lock.
+   *
+   * @param queries set of queries
+   * @return the accumulated scores
+   */
+  private ScoreAccumulator partialScores(Set<String> queries) {
+    ScoreAccumulator scores = new ScoreAccumulator(documents);
+    for (String query : queries) {
+      for (var entry : buffer.tailMap(query).entrySet()) {
+        if (!entry.getKey().startsWith(query)) {
+          break;
+        }
+        scores.add(entry.getValue().cursor());
+      }
+      for (IndexSegment segment : segments) {
+        for (int i = segment.ceiling(query);
+            i < segment.terms() && segment.term(i).startsWith(query);
+            i++) {
+          scores.add(segment.postings(i).cursor());
+        }
+      }
+    }
+    return scores;
+  }
+
+  @Override
+  public void toJson(Path output) throws IOException {
+    View view = lockedView();
+    JsonWriter.writeIndex(InvertedIndex.locationView(view.merge(), view.documents), output);
+  }
+
+  @Override
+  public void toSnapshot(Path output) throws IOException {
+    View view = lockedView();
+    IndexSnapshot.write(view.merge(), view.documents, output);
+  }
+
+  @Override
+  public String toString() {
+    View view = lockedView();
+    return JsonWriter.writeIndex(InvertedIndex.locationView(view.merge(), view.documents));
+  }
+}
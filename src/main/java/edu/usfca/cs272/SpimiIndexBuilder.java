@@ -0,0 +1,341 @@
+package edu.usfca.cs272;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Builds an {@link IndexSnapshot} from text files that may not fit in memory, using single-pass
+ * in-memory indexing. Files are inverted into an in-memory index until its estimated size reaches
+ * the memory budget, then the index is spilled to a temporary run file in the snapshot format and
+ * a new one is started. Once every file is read, the runs are merged term by term into the final
+ * snapshot, so only one term of each run is held in memory at a time.
+ *
+ * <p>Files are read in location order, so the documents of each run follow the documents of the
+ * runs before it. The postings of a term are then merged by concatenating the runs in order, and
+ * the document ids of the final snapshot are in location order without sorting anything.
+ *
+ * @author Ravneet Singh Bhatia
+ * @version Spring 2024
+ */
+public class SpimiIndexBuilder {
+  /** Logger used for this class. */
+  private static final Logger log = LogManager.getLogger();
+
+  /** Estimated heap used by each position of an in-memory index, including its postings. */
+  private static final int BYTES_PER_POSITION = 20;
+
+  /** Estimated heap used by each term of an in-memory index. */
+  private static final int BYTES_PER_TERM = 96;
+
+  /** The snapshot file to write. */
+  private final Path output;
+
+  /** Estimated number of bytes the in-memory index may use before it is spilled. */
+  private final long budget;
+
+  /** Turns the text into stems. */
+  private final Analyzer analyzer;
+
+  /** The run files spilled so far, in location order. */
+  private final ArrayList<Path> runs;
+
+  /** The documents of every run, numbered in location order. */
+  private final DocumentDictionary documents;
+
+  /** Total time spent spilling runs. */
+  private Duration spilling;
+
+  /** Time spent merging the runs into the snapshot. */
+  private Duration merging;
+
+  /**
+   * Creates a new builder.
+   *
+   * @param output the snapshot file to write
+   * @param budget estimated number of bytes the in-memory index may use before it is spilled
+   */
+  public SpimiIndexBuilder(Path output, long budget) {
+    this(output, budget, Analyzer.ENGLISH);
+  }
+
+  /**
+   * Creates a new builder.
+   *
+   * @param output the snapshot file to write
+   * @param budget estimated number of bytes the in-memory index may use before it is spilled
+   * @param analyzer turns the text into stems
+   */
+  public SpimiIndexBuilder(Path output, long budget, Analyzer analyzer) {
+    if (budget < 1) {
+      throw new IllegalArgumentException("Memory budget must be positive: " + budget);
+    }
+    this.output = output;
+    this.budget = budget;
+    this.analyzer = analyzer;
+    this.runs = new ArrayList<>();
+    this.documents = new DocumentDictionary();
+    this.spilling = Duration.ZERO;
+    this.merging = Duration.ZERO;
+  }
+
+  /**
+   * Builds a snapshot from a text file or a directory of text files. The run files are written to a
+   * temporary directory next to the snapshot and deleted once they are merged.
+   *
+   * @param input Path of input file or directory.
+   * @throws IOException if unable to read a file or write the snapshot
+   */
+  public void build(Path input) throws IOException {
+    ArrayList<Path> files = new ArrayList<>();
+    if (Files.isDirectory(input)) {
+      listDirectory(input, files);
+    } else {
+      files.add(input);
+    }
+    files.sort(Comparator.comparing(Path::toString));
+
+    Path directory = Files.createTempDirectory(output.toAbsolutePath().getParent(), "runs");
+    try {
+      InvertedIndex index = new InvertedIndex();
+      long positions = 0;
+      for (Path file : files) {
+        InvertedIndexBuilder.readFile(file, index, analyzer);
+        int doc = index.documents().find(file.toString());
+        if (doc >= 0) {
+          positions += index.documents().count(doc);
+        }
+
+        if (positions * BYTES_PER_POSITION + (long) index.size() * BYTES_PER_TERM >= budget) {
+          spill(index, directory);
+          index = new InvertedIndex();
+          positions = 0;
+        }
+      }
+      if (index.sizeOfCounts() > 0) {
+        spill(index, directory);
+      }
+
+      merge();
+    } finally {
+      for (Path run : runs) {
+        Files.deleteIfExists(run);
+      }
+      Files.deleteIfExists(directory);
+    }
+  }
+
+  /**
+   * Adds the text files in a directory or nested directories to a list.
+   *
+   * @param directory directory path
+   * @param files the list to add the text files to
+   * @throws IOException if unable to read directory.
+   */
+  private static void listDirectory(Path directory, ArrayList<Path> files) throws IOException {
+    try (DirectoryStream<Path> listing = Files.newDirectoryStream(directory)) {
+      for (Path path : listing) {
+        if (Files.isDirectory(path)) {
+          listDirectory(path, files);
+        } else if (InvertedIndexBuilder.fileIsTXT(path)) {
+          files.add(path);
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes an in-memory index to a new run file and adds its documents to the documents of the
+   * snapshot.
+   *
+   * @param index the in-memory index to spill
+   * @param directory the directory to write the run file to
+   * @throws IOException if unable to write the run file
+   */
+  private void spill(InvertedIndex index, Path directory) throws IOException {
+    long start = System.nanoTime();
+    Path run = directory.resolve("run" + runs.size() + ".snapshot");
+    runs.add(run);
+    IndexSnapshot.write(index.postings(), index.documents(), run);
+
+    // the run numbers its documents in location order, which all come after the earlier runs.
+    DocumentDictionary local = index.documents();
+    ArrayList<String> locations = new ArrayList<>(local.getCounts().keySet());
+    locations.sort(Comparator.naturalOrder());
+    for (String location : locations) {
+      documents.updateCount(documents.id(location), local.count(local.find(location)));
+    }
+
+    Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+    spilling = spilling.plus(elapsed);
+    log.info(
+        "Spilled run {} with {} documents and {} terms in {} ms.",
+        runs.size(),
+        locations.size(),
+        index.size(),
+        elapsed.toMillis());
+  }
+
+  /**
+   * Merges the runs term by term into the snapshot.
+   *
+   * @throws IOException if unable to read a run or write the snapshot
+   */
+  private void merge() throws IOException {
+    long start = System.nanoTime();
+    IndexSnapshot[] snapshots = new IndexSnapshot[runs.size()];
+    int[] bases = new int[runs.size()];
+    int[] ordinals = new int[runs.size()];
+    String[] heads = new String[runs.size()];
+
+    // runs with the same term come out in run order, so their documents stay in order.
+    PriorityQueue<Integer> queue =
+        new PriorityQueue<>(
+            Comparator.comparing((Integer run) -> heads[run]).thenComparing(run -> run));
+    int base = 0;
+    for (int run = 0; run < snapshots.length; run++) {
+      snapshots[run] = IndexSnapshot.open(runs.get(run));
+      bases[run] = base;
+      base += snapshots[run].documents().size();
+      if (snapshots[run].size() > 0) {
+        heads[run] = snapshots[run].term(0);
+        queue.add(run);
+      }
+    }
+
+    long terms = 0;
+    try (IndexSnapshot.Writer writer = new IndexSnapshot.Writer(output, documents)) {
+      while (!queue.isEmpty()) {
+        String term = heads[queue.peek()];
+        ArrayList<PostingsCursor> cursors = new ArrayList<>();
+        ArrayList<Integer> offsets = new ArrayList<>();
+        int size = 0;
+        while (!queue.isEmpty() && heads[queue.peek()].equals(term)) {
+          int run = queue.poll();
+          cursors.add(snapshots[run].cursor(ordinals[run]));
+          offsets.add(bases[run]);
+          size += snapshots[run].postingsSize(ordinals[run]);
+
+          ordinals[run]++;
+          if (ordinals[run] < snapshots[run].size()) {
+            heads[run] = snapshots[run].term(ordinals[run]);
+            queue.add(run);
+          }
+        }
+        writer.add(term, size, new RunCursor(cursors, offsets));
+        terms++;
+      }
+    }
+
+    merging = Duration.ofNanos(System.nanoTime() - start);
+    log.info(
+        "Merged {} runs into {} terms in {} ms.", snapshots.length, terms, merging.toMillis());
+  }
+
+  /**
+   * Returns the number of runs spilled by the last build.
+   *
+   * @return the number of runs
+   */
+  public int runs() {
+    return runs.size();
+  }
+
+  /**
+   * Returns the total time spent spilling runs.
+   *
+   * @return the time spent spilling
+   */
+  public Duration spillTime() {
+    return spilling;
+  }
+
+  /**
+   * Returns the time spent merging the runs into the snapshot.
+   *
+   * @return the time spent merging
+   */
+  public Duration mergeTime() {
+    return merging;
+  }
+
+  @Override
+  public String toString() {
+    return "SpimiIndexBuilder{"
+        + "output="
+        + output
+        + ", budget="
+        + budget
+        + ", runs="
+        + runs.size()
+        + ", spilling="
+        + spilling
+        + ", merging="
+        + merging
+        + '}';
+  }
+
+  /** Cursor over the postings of a term in several runs, one run after the other. */
+  private static class RunCursor implements PostingsCursor {
+    /** Cursors over the postings of the term in each run, in run order. */
+    private final ArrayList<PostingsCursor> cursors;
+
+    /** The id of the first document of each run in the snapshot. */
+    private final ArrayList<Integer> bases;
+
+    /** Index of the run being read. */
+    private int run;
+
+    /** The current document id. */
+    private int doc;
+
+    /**
+     * Creates a cursor positioned before the first document.
+     *
+     * @param cursors cursors over the postings of the term in each run, in run order
+     * @param bases the id of the first document of each run in the snapshot
+     */
+    private RunCursor(ArrayList<PostingsCursor> cursors, ArrayList<Integer> bases) {
+      this.cursors = cursors;
+      this.bases = bases;
+      this.run = 0;
+      this.doc = -1;
+    }
+
+    @Override
+    public int nextDoc() {
+      while (run < cursors.size()) {
+        int next = cursors.get(run).nextDoc();
+        if (next != NO_MORE_DOCS) {
+          doc = bases.get(run) + next;
+          return doc;
+        }
+        run++;
+      }
+      doc = NO_MORE_DOCS;
+      return doc;
+    }
+
+    @Override
+    public int doc() {
+      return doc;
+    }
+
+    @Override
+    public int frequency() {
+      return cursors.get(run).frequency();
+    }
+
+    @Override
+    public int nextPosition() {
+      return cursors.get(run).nextPosition();
+    }
+  }
+}
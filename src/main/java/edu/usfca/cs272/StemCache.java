@@ -0,0 +1,157 @@
+package edu.usfca.cs272;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import opennlp.tools.stemmer.Stemmer;
+import opennlp.tools.stemmer.snowball.SnowballStemmer;
+
+/**
+ * Thread-safe stemmer that remembers the stem of every word it has seen, up to a maximum number of
+ * words. Words in natural language text follow a Zipf distribution, so a small number of words
+ * make up most of the text and most calls return a stem that was already computed.
+ *
+ * <p>Words that are not cached yet are stemmed by a stemmer that belongs to the calling thread,
+ * since stemmers are not safe to share. Once the cache is full, new words are stemmed without being
+ * added, so the cache keeps the words seen first, which are most likely to be the frequent ones.
+ *
+ * <p>A cache with a capacity of zero does not cache or count anything and only passes each word to
+ * the stemmer of the calling thread. The lookup, the copy of the word and the statistics cost more
+ * than a Snowball stemmer saves on short words unless the cache is shared by several threads, so
+ * {@link #ENGLISH} starts out that way, and the driver only turns caching on with -stems.
+ *
+ * @author Ravneet Singh Bhatia
+ * @version Spring 2024
+ */
+public class StemCache implements Stemmer {
+  /** Default maximum number of cached words once caching is turned on. */
+  public static final int DEFAULT_CAPACITY = 1 << 16;
+
+  /** Shared English stemmer used to build and search every index, which does not cache at first. */
+  public static final StemCache ENGLISH =
+      new StemCache(() -> new SnowballStemmer(SnowballStemmer.ALGORITHM.ENGLISH), 0);
+
+  /** The stem of each cached word. */
+  private final ConcurrentHashMap<String, String> stems;
+
+  /** The stemmer of each thread, used for words that are not cached. */
+  private final ThreadLocal<Stemmer> stemmers;
+
+  /** Maximum number of cached words. */
+  private volatile int capacity;
+
+  /** Number of words whose stem was cached. */
+  private final LongAdder hits;
+
+  /** Number of words whose stem was not cached. */
+  private final LongAdder misses;
+
+  /**
+   * Creates a new empty cache.
+   *
+   * @param stemmer creates the stemmer used by each thread for words that are not cached
+   * @param capacity maximum number of cached words, or zero to not cache
+   */
+  public StemCache(Supplier<? extends Stemmer> stemmer, int capacity) {
+    this.stems = new ConcurrentHashMap<>();
+    this.stemmers = ThreadLocal.withInitial(stemmer);
+    this.hits = new LongAdder();
+    this.misses = new LongAdder();
+    setCapacity(capacity);
+  }
+
+  @Override
+  public CharSequence stem(CharSequence word) {
+    if (capacity == 0) { // not caching, so nothing is looked up, copied or counted.
+      return stemmers.get().stem(word);
+    }
+
+    String key = word.toString();
+    String stem = stems.get(key);
+    if (stem != null) {
+      hits.increment();
+      return stem;
+    }
+
+    misses.increment();
+    stem = stemmers.get().stem(key).toString();
+    if (stems.size() < capacity) {
+      stems.putIfAbsent(key, stem);
+    }
+    return stem;
+  }
+
+  /**
+   * Changes the maximum number of cached words. Words that are already cached stay cached, but are
+   * no longer used once the capacity is zero.
+   *
+   * @param capacity maximum number of cached words, or zero to not cache
+   */
+  public void setCapacity(int capacity) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException("Capacity must not be negative: " + capacity);
+    }
+    this.capacity = capacity;
+  }
+
+  /**
+   * Returns the maximum number of cached words.
+   *
+   * @return the maximum number of cached words
+   */
+  public int capacity() {
+    return capacity;
+  }
+
+  /**
+   * Returns the number of cached words.
+   *
+   * @return the number of cached words
+   */
+  public int size() {
+    return stems.size();
+  }
+
+  /**
+   * Returns the number of words whose stem was cached.
+   *
+   * @return the number of hits
+   */
+  public long hits() {
+    return hits.sum();
+  }
+
+  /**
+   * Returns the number of words whose stem was not cached.
+   *
+   * @return the number of misses
+   */
+  public long misses() {
+    return misses.sum();
+  }
+
+  /**
+   * Returns the fraction of words whose stem was cached.
+   *
+   * @return the hit rate between 0 and 1, or 0 if no words were stemmed
+   */
+  public double hitRate() {
+    long hit = hits.sum();
+    long total = hit + misses.sum();
+    return total == 0 ? 0 : (double) hit / total;
+  }
+
+  /** Removes every cached word and resets the statistics. */
+  public void clear() {
+    stems.clear();
+    hits.reset();
+    misses.reset();
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "StemCache{size=%d, capacity=%d, hits=%d, misses=%d, hitRate=%.3f}",
+        size(), capacity, hits(), misses(), hitRate());
+  }
+}
@@ -0,0 +1,261 @@
+package edu.usfca.cs272;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+
+/**
+ * Immutable term dictionary stored as a compact radix trie. Every term is identified by its
+ * ordinal, its index in sorted order. Because the terms below a trie node are contiguous in sorted
+ * order, looking up a prefix returns the whole range of matching ordinals after walking at most one
+ * node per character of the prefix, without visiting any of the matching terms.
+ *
+ * <p>The trie is packed into flat arrays in breadth-first order, so the children of a node are
+ * stored next to each other. Each node costs three {@code int}s, one bit, and the characters of its
+ * edge label that are not shared with other terms.
+ *
+ * @author Ravneet Singh Bhatia
+ * @version Spring 2024
+ */
+public class TermDictionary {
+  /** The edge labels of all nodes, concatenated in node order. */
+  private final char[] labels;
+
+  /** Start of the label of each node in {@link #labels}, plus the end of the last label. */
+  private final int[] labelStarts;
+
+  /** Index of the first child of each node, plus one past the last node. */
+  private final int[] firstChildren;
+
+  /** Ordinal of the first term below each node. */
+  private final int[] firsts;
+
+  /** Set for nodes where a term ends. That term's ordinal is the node's first ordinal. */
+  private final BitSet terminals;
+
+  /** Number of terms in the dictionary. */
+  private final int size;
+
+  /**
+   * Builds a dictionary from sorted terms.
+   *
+   * @param terms the terms, sorted and without duplicates
+   */
+  public TermDictionary(String[] terms) {
+    this.size = terms.length;
+
+    // build the trie as linked nodes, then pack it in breadth-first order.
+    Node root = build(terms, 0, terms.length, 0, 0);
+    ArrayList<Node> order = new ArrayList<>();
+    ArrayDeque<Node> queue = new ArrayDeque<>();
+    queue.add(root);
+    while (!queue.isEmpty()) {
+      Node node = queue.remove();
+      order.add(node);
+      queue.addAll(node.children);
+    }
+
+    int nodes = order.size();
+    this.labelStarts = new int[nodes + 1];
+    this.firstChildren = new int[nodes + 1];
+    this.firsts = new int[nodes];
+    this.terminals = new BitSet(nodes);
+
+    int characters = 0;
+    for (Node node : order) {
+      characters += node.label.length();
+    }
+    this.labels = new char[characters];
+
+    int label = 0;
+    int child = 1;
+    for (int i = 0; i < nodes; i++) {
+      Node node = order.get(i);
+      labelStarts[i] = label;
+      node.label.getChars(0, node.label.length(), labels, label);
+      label += node.label.length();
+      firstChildren[i] = child;
+      child += node.children.size();
+      firsts[i] = node.first;
+      terminals.set(i, node.terminal);
+    }
+    labelStarts[nodes] = label;
+    firstChildren[nodes] = child;
+  }
+
+  /**
+   * Builds the subtrie for a range of terms that share their first {@code depth} characters.
+   *
+   * @param terms the sorted terms
+   * @param low the first term in the range
+   * @param high one past the last term in the range
+   * @param start the depth where the label of this node starts
+   * @param depth the depth where the label of this node ends
+   * @return the node for the range
+   */
+  private static Node build(String[] terms, int low, int high, int start, int depth) {
+    Node node = new Node(start == depth ? "" : terms[low].substring(start, depth), low);
+    if (low < high && terms[low].length() == depth) {
+      node.terminal = true;
+      low++;
+    }
+
+    while (low < high) {
+      char next = terms[low].charAt(depth);
+      int end = low + 1;
+      while (end < high && terms[end].charAt(depth) == next) {
+        end++;
+      }
+
+      // the first and last term of a sorted group share the longest common prefix of the group.
+      String first = terms[low];
+      String last = terms[end - 1];
+      int shared = depth + 1;
+      while (shared < first.length()
+          && shared < last.length()
+          && first.charAt(shared) == last.charAt(shared)) {
+        shared++;
+      }
+
+      node.children.add(build(terms, low, end, depth, shared));
+      low = end;
+    }
+    return node;
+  }
+
+  /**
+   * Returns the number of terms in the dictionary.
+   *
+   * @return the number of terms
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the ordinal of a term.
+   *
+   * @param term the term to look up
+   * @return the ordinal of the term, or -1 if it is not in the dictionary
+   */
+  public int ordinal(String term) {
+    int node = 0;
+    int position = 0;
+    while (position < term.length()) {
+      node = child(node, term.charAt(position));
+      if (node < 0) {
+        return -1;
+      }
+      for (int i = labelStarts[node]; i < labelStarts[node + 1]; i++) {
+        if (position == term.length() || labels[i] != term.charAt(position)) {
+          return -1;
+        }
+        position++;
+      }
+    }
+    return terminals.get(node) ? firsts[node] : -1;
+  }
+
+  /**
+   * Returns the range of ordinals of the terms that start with a prefix.
+   *
+   * @param prefix the prefix to look up
+   * @return the first ordinal and one past the last ordinal; both are equal if no term matches
+   */
+  public int[] range(String prefix) {
+    int node = 0;
+    int end = size;
+    int position = 0;
+    while (position < prefix.length()) {
+      int parent = node;
+      node = child(parent, prefix.charAt(position));
+      if (node < 0) {
+        return new int[] {0, 0};
+      }
+      end = node + 1 < firstChildren[parent + 1] ? firsts[node + 1] : end;
+      for (int i = labelStarts[node]; i < labelStarts[node + 1]; i++) {
+        if (position == prefix.length()) {
+          break; // the prefix ends inside the label, so every term below the node matches.
+        }
+        if (labels[i] != prefix.charAt(position)) {
+          return new int[] {0, 0};
+        }
+        position++;
+      }
+    }
+    return new int[] {firsts[node], end};
+  }
+
+  /**
+   * Finds the child of a node whose label starts with a character.
+   *
+   * @param node the parent node
+   * @param next the first character of the child label
+   * @return the child node, or -1 if there is no such child
+   */
+  private int child(int node, char next) {
+    int low = firstChildren[node];
+    int high = firstChildren[node + 1] - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      char first = labels[labelStarts[middle]];
+      if (first < next) {
+        low = middle + 1;
+      } else if (first > next) {
+        high = middle - 1;
+      } else {
+        return middle;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the approximate number of bytes used by the dictionary arrays.
+   *
+   * @return the approximate size in bytes
+   */
+  public long bytes() {
+    return 2L * labels.length
+        + 4L * (labelStarts.length + firstChildren.length + firsts.length)
+        + terminals.size() / 8;
+  }
+
+  @Override
+  public String toString() {
+    return "TermDictionary{" + "terms=" + size + ", nodes=" + firsts.length + '}';
+  }
+
+  /** Trie node used only while the dictionary is being built. */
+  private static class Node {
+    /** The label of the edge leading to this node. */
+    private final String label;
+
+    /** Ordinal of the first term below this node. */
+    private final int first;
+
+    /** True if a term ends at this node. */
+    private boolean terminal;
+
+    /** The children of this node, sorted by the first character of their labels. */
+    private final ArrayList<Node> children;
+
+    /**
+     * Creates a new node.
+     *
+     * @param label the label of the edge leading to this node
+     * @param first ordinal of the first term below this node
+     */
+    private Node(String label, int first) {
+      this.label = label;
+      this.first = first;
+      this.terminal = false;
+      this.children = new ArrayList<>();
+    }
+
+    @Override
+    public String toString() {
+      return "Node{" + "label='" + label + '\'' + ", first=" + first + '}';
+    }
+  }
+}
@@ -0,0 +1,271 @@
+package edu.usfca.cs272;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Thread-safe version of the FrequencyIndex.
+ *
+ * @author Ravneet Singh Bhatia
+ * @version Spring 2024
+ */
+public class ThreadSafeFrequencyIndex extends FrequencyIndex {
+  /** The multiReaderLock used to make the index thread-safe. */
+  private final MultiReaderLock lock;
+
+  /** Creates a new thread-safe frequency-only index. */
+  public ThreadSafeFrequencyIndex() {
+    lock = new MultiReaderLock();
+  }
+
+  @Override
+  public Set<String> getWords() {
+    lock.readLock().lock();
+    try {
+      return super.getWords();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public Set<String> getLocations(String word) {
+    lock.readLock().lock();
+    try {
+      return super.getLocations(word);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public boolean hasCount(String location) {
+    lock.readLock().lock();
+    try {
+      return super.hasCount(location);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public boolean hasLocation(String word, String location) {
+    lock.readLock().lock();
+    try {
+      return super.hasLocation(word, location);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public Map<String, Integer> getCounts() {
+    lock.readLock().lock();
+    try {
+      return super.getCounts();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public boolean add(String stem, String path, int location) {
+    lock.writeLock().lock();
+    try {
+      return super.add(stem, path, location);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public boolean addAll(String path, Collection<String> stems) {
+    lock.writeLock().lock();
+    try {
+      return super.addAll(path, stems);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public boolean addIndex(InvertedIndex other) {
+    lock.writeLock().lock();
+    try {
+      return super.addIndex(other);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public boolean moveIndex(InvertedIndex other) {
+    lock.writeLock().lock();
+    try {
+      return super.moveIndex(other);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public boolean isEmpty() {
+    lock.readLock().lock();
+    try {
+      return super.isEmpty();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return super.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public int sizeOfCounts() {
+    lock.readLock().lock();
+    try {
+      return super.sizeOfCounts();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public int numOfLocations(String word) {
+    lock.readLock().lock();
+    try {
+      return super.numOfLocations(word);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public int numOfPositions(String word, String location) {
+    lock.readLock().lock();
+    try {
+      return super.numOfPositions(word, location);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public boolean hasWord(String word) {
+    lock.readLock().lock();
+    try {
+      return super.hasWord(word);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Creates a read-optimized copy of the index. As in {@link ThreadSafeInvertedIndex#freeze()},
+   * the read lock is only held while the postings are copied, and the copy is only published if no
+   * writer changed the index in the meantime.
+   *
+   * @return the frozen index
+   */
+  @Override
+  public FrozenIndex freeze() {
+    FrozenIndex current = frozen();
+    if (current != null) {
+      return current;
+    }
+
+    FrozenIndex.Snapshot snapshot;
+    long version;
+    lock.readLock().lock();
+    try {
+      version = version();
+      snapshot = snapshot();
+    } finally {
+      lock.readLock().unlock();
+    }
+
+    current = new FrozenIndex(snapshot);
+
+    lock.readLock().lock();
+    try {
+      return publish(current, version);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public ArrayList<InvertedIndex.Score> exactSearch(Set<String> queries) {
+    FrozenIndex frozen = frozen();
+    if (frozen != null) { // the frozen index never changes, so no lock is needed.
+      return frozen.exactSearch(queries);
+    }
+
+    lock.readLock().lock();
+    try {
+      return super.exactSearch(queries);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public ArrayList<InvertedIndex.Score> partialSearch(Set<String> queries) {
+    FrozenIndex frozen = frozen();
+    if (frozen != null) { // the frozen index never changes, so no lock is needed.
+      return frozen.partialSearch(queries);
+    }
+
+    lock.readLock().lock();
+    try {
+      return super.partialSearch(queries);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public ArrayList<InvertedIndex.Score> search(
+      Set<String> queries, boolean partial, int limit, int offset) {
+    FrozenIndex frozen = frozen();
+    if (frozen != null) { // the frozen index never changes, so no lock is needed.
+      return frozen.search(queries, partial, limit, offset);
+    }
+
+    lock.readLock().lock();
+    try {
+      return super.search(queries, partial, limit, offset);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public void toJson(Path output) throws IOException {
+    lock.readLock().lock();
+    try {
+      super.toJson(output);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public String toString() {
+    lock.readLock().lock();
+    try {
+      return super.toString();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+}
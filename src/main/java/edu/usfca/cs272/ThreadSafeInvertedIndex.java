@@ -16,6 +16,16 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 
   /** Creates a new thread-safe inverted index. */
   public ThreadSafeInvertedIndex() {
+    this(false);
+  }
+
+  /**
+   * Creates a new thread-safe inverted index.
+   *
+   * @param compressed true if the postings should be stored delta and variable-byte compressed
+   */
+  public ThreadSafeInvertedIndex(boolean compressed) {
+    super(compressed);
     lock = new MultiReaderLock();
   }
 
@@ -119,6 +129,16 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
     }
   }
 
+  @Override
+  public boolean moveIndex(InvertedIndex invertedIndex) {
+    lock.writeLock().lock();
+    try {
+      return super.moveIndex(invertedIndex);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
   @Override
   public boolean isEmpty() {
     lock.readLock().lock();
@@ -179,8 +199,48 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
     }
   }
 
+  /**
+   * Creates a read-optimized copy of the index. The read lock is only held while the postings are
+   * copied into flat arrays, which is still linear in the size of the index, so writers wait for
+   * that copy but not for the term dictionary and bounds to be built. The copy is only published if
+   * no writer changed the index in the meantime.
+   *
+   * @return the frozen index
+   */
+  @Override
+  public FrozenIndex freeze() {
+    FrozenIndex current = frozen();
+    if (current != null) {
+      return current;
+    }
+
+    FrozenIndex.Snapshot snapshot;
+    long version;
+    lock.readLock().lock();
+    try {
+      version = version();
+      snapshot = snapshot();
+    } finally {
+      lock.readLock().unlock();
+    }
+
+    current = new FrozenIndex(snapshot);
+
+    lock.readLock().lock();
+    try {
+      return publish(current, version);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
   @Override
   public ArrayList<Score> exactSearch(Set<String> queries) {
+    FrozenIndex frozen = frozen();
+    if (frozen != null) { // the frozen index never changes, so no lock is needed.
+      return frozen.exactSearch(queries);
+    }
+
     lock.readLock().lock();
     try {
       return super.exactSearch(queries);
@@ -191,6 +251,11 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 
   @Override
   public ArrayList<Score> partialSearch(Set<String> queries) {
+    FrozenIndex frozen = frozen();
+    if (frozen != null) { // the frozen index never changes, so no lock is needed.
+      return frozen.partialSearch(queries);
+    }
+
     lock.readLock().lock();
     try {
       return super.partialSearch(queries);
@@ -199,6 +264,21 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
     }
   }
 
+  @Override
+  public ArrayList<Score> search(Set<String> queries, boolean partial, int limit, int offset) {
+    FrozenIndex frozen = frozen();
+    if (frozen != null) { // the frozen index never changes, so no lock is needed.
+      return frozen.search(queries, partial, limit, offset);
+    }
+
+    lock.readLock().lock();
+    try {
+      return super.search(queries, partial, limit, offset);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
   @Override
   public void toJson(Path output) throws IOException {
     lock.readLock().lock();
@@ -209,6 +289,16 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
     }
   }
 
+  @Override
+  public void toSnapshot(Path output) throws IOException {
+    lock.readLock().lock();
+    try {
+      super.toSnapshot(output);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
   @Override
   public String toString() {
     lock.readLock().lock();
@@ -4,7 +4,15 @@ import static edu.usfca.cs272.Driver.log;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 
 /**
  * Thread-safe version of the Inverted index
@@ -14,33 +22,256 @@ import java.nio.file.Path;
  */
 public class ThreadSafeInvertedIndexBuilder extends InvertedIndexBuilder {
 
-  /** Work queue. */
-  private final WorkQueue queue;
+  /** Default number of bytes per chunk when a large file is split to be read by several workers. */
+  public static final int CHUNK_SIZE = 16 * 1024 * 1024;
+
+  /** Tasks of this builder on the work queue, which are waited for without the other tasks. */
+  private final WorkQueue.TaskGroup tasks;
 
   /** Thread Safe inverted index. */
-  private final ThreadSafeInvertedIndex index;
+  private final MutableIndex index;
+
+  /** True if each worker keeps its own index across files, merged once every file is read. */
+  private final boolean reduce;
+
+  /** Every worker index created by the current reduced build. */
+  private final ArrayList<InvertedIndex> accumulators;
+
+  /** The index of the calling worker during a reduced build, or null if none is running. */
+  private volatile ThreadLocal<InvertedIndex> accumulator;
+
+  /** Turns the text into stems. */
+  private final Analyzer analyzer;
+
+  /** Number of bytes per chunk when a large file is split to be read by several workers. */
+  private final int chunkSize;
 
   /**
    * Creates a new ThreadSafeInvertedIndexBuilder
    *
-   * @param invertedIndex the index.
+   * @param invertedIndex the index, which must be safe to add to from multiple threads, such as a
+   *     {@link ThreadSafeInvertedIndex} or {@link SegmentedInvertedIndex}.
    * @param queue workqueue
    */
-  public ThreadSafeInvertedIndexBuilder(ThreadSafeInvertedIndex invertedIndex, WorkQueue queue) {
-    super(invertedIndex);
+  public ThreadSafeInvertedIndexBuilder(MutableIndex invertedIndex, WorkQueue queue) {
+    this(invertedIndex, queue, false);
+  }
+
+  /**
+   * Creates a new ThreadSafeInvertedIndexBuilder
+   *
+   * @param invertedIndex the index, which must be safe to add to from multiple threads, such as a
+   *     {@link ThreadSafeInvertedIndex} or {@link SegmentedInvertedIndex}.
+   * @param queue workqueue
+   * @param reduce true if each worker should add its files to its own index, and the worker indexes
+   *     should be merged in pairs once every file is read, instead of adding each file to the
+   *     shared index
+   */
+  public ThreadSafeInvertedIndexBuilder(
+      MutableIndex invertedIndex, WorkQueue queue, boolean reduce) {
+    this(invertedIndex, queue, reduce, Analyzer.ENGLISH);
+  }
+
+  /**
+   * Creates a new ThreadSafeInvertedIndexBuilder
+   *
+   * @param invertedIndex the index, which must be safe to add to from multiple threads, such as a
+   *     {@link ThreadSafeInvertedIndex} or {@link SegmentedInvertedIndex}.
+   * @param queue workqueue
+   * @param reduce true if each worker should add its files to its own index, and the worker indexes
+   *     should be merged in pairs once every file is read, instead of adding each file to the
+   *     shared index
+   * @param analyzer turns the text into stems, which must be safe to use from multiple threads
+   */
+  public ThreadSafeInvertedIndexBuilder(
+      MutableIndex invertedIndex, WorkQueue queue, boolean reduce, Analyzer analyzer) {
+    this(invertedIndex, queue, reduce, analyzer, CHUNK_SIZE);
+  }
+
+  /**
+   * Creates a new ThreadSafeInvertedIndexBuilder that splits files larger than twice the chunk size
+   * into chunks of about that many bytes.
+   *
+   * @param invertedIndex the index, which must be safe to add to from multiple threads
+   * @param queue workqueue
+   * @param reduce true if each worker should add its files to its own index
+   * @param analyzer turns the text into stems, which must be safe to use from multiple threads
+   * @param chunkSize number of bytes per chunk when a large file is split
+   */
+  ThreadSafeInvertedIndexBuilder(
+      MutableIndex invertedIndex,
+      WorkQueue queue,
+      boolean reduce,
+      Analyzer analyzer,
+      int chunkSize) {
+    super(invertedIndex, analyzer);
+    this.chunkSize = chunkSize;
+    this.analyzer = analyzer;
     this.index = invertedIndex;
-    this.queue = queue;
+    this.tasks = queue.group(WorkQueue.Priority.BACKGROUND);
+    this.reduce = reduce;
+    this.accumulators = new ArrayList<>();
+    this.accumulator = null;
   }
 
   @Override
   public void build(Path input) throws IOException {
-    super.build(input);
-    queue.finish();
+    if (!reduce) {
+      super.build(input);
+      tasks.finish();
+      return;
+    }
+
+    accumulator =
+        ThreadLocal.withInitial(
+            () -> {
+              InvertedIndex local = new InvertedIndex();
+              synchronized (accumulators) {
+                accumulators.add(local);
+              }
+              return local;
+            });
+    try {
+      super.build(input);
+      tasks.finish();
+
+      ArrayList<InvertedIndex> locals;
+      synchronized (accumulators) {
+        locals = new ArrayList<>(accumulators);
+        accumulators.clear();
+      }
+      InvertedIndex merged = merge(locals);
+      if (merged != null) {
+        index.moveIndex(merged); // the shared index is only locked once per build.
+      }
+    } finally {
+      accumulator = null;
+    }
+  }
+
+  /**
+   * Merges indexes in pairs, one round at a time, with the merges of a round running in parallel on
+   * the work queue. Each pair adds the smaller index into the larger one, so the number of rounds
+   * grows with the log of the number of indexes.
+   *
+   * @param indexes the indexes to merge, which are changed by the merge
+   * @return the merged index, or null if there were no indexes
+   */
+  private InvertedIndex merge(ArrayList<InvertedIndex> indexes) {
+    ArrayList<InvertedIndex> round = indexes;
+    while (round.size() > 1) {
+      ArrayList<InvertedIndex> next = new ArrayList<>();
+      for (int i = 0; i + 1 < round.size(); i += 2) {
+        InvertedIndex first = round.get(i);
+        InvertedIndex second = round.get(i + 1);
+        InvertedIndex larger = first.size() >= second.size() ? first : second;
+        InvertedIndex smaller = larger == first ? second : first;
+        tasks.executeOrRun(() -> larger.moveIndex(smaller)); // never dropped, or stems are lost.
+        next.add(larger);
+      }
+      if (round.size() % 2 == 1) {
+        next.add(round.getLast());
+      }
+      tasks.finish();
+      round = next;
+    }
+    return round.isEmpty() ? null : round.getFirst();
   }
 
+  /**
+   * Queues a task that lists a directory, so nested directories are walked by the workers in
+   * parallel and their files start being indexed as soon as they are found. A full queue that drops
+   * tasks lists the directory on the calling thread instead.
+   *
+   * @param directory directory path
+   */
+  @Override
+  public void readDirectory(Path directory) {
+    tasks.executeOrRun(new DirectoryTask(directory));
+  }
+
+  /**
+   * Queues a task that indexes a file. A full queue that drops tasks has the calling thread index
+   * the file instead, so no file is left out of the index.
+   *
+   * @param file file path
+   */
   @Override
   public void readFile(Path file) {
-    queue.execute(new Task(file));
+    tasks.executeOrRun(new Task(file));
+  }
+
+  /**
+   * Adds an index built by a task to the shared index, or to the index of the calling worker during
+   * a reduced build. The index is moved, so it must not be used afterward.
+   *
+   * @param local the index built by the task
+   */
+  private void add(InvertedIndex local) {
+    ThreadLocal<InvertedIndex> reduced = accumulator;
+    if (reduced != null) { // add to the index of this worker, which nothing else locks.
+      reduced.get().moveIndex(local);
+    } else {
+      index.moveIndex(local); // move the local index into the main thread-safe index.
+    }
+  }
+
+  /**
+   * Returns the size of a file, or 0 if it cannot be read.
+   *
+   * @param file path of the file
+   * @return the size of the file in bytes
+   */
+  private static long size(Path file) {
+    try {
+      return Files.size(file);
+    } catch (IOException e) {
+      return 0; // reading the file reports the error.
+    }
+  }
+
+  /**
+   * Splits a file into chunks of about {@code chunkSize} bytes that each end right after a line
+   * break. A line break byte never occurs inside a multi-byte UTF-8 character, and words never span
+   * lines, so each chunk can be decoded and read on its own.
+   *
+   * @param file path of the file
+   * @param size the size of the file in bytes
+   * @param chunkSize number of bytes per chunk
+   * @return the offset of the start of each chunk, plus the end of the file
+   * @throws IOException if unable to read the file
+   */
+  private static long[] split(Path file, long size, int chunkSize) throws IOException {
+    ArrayList<Long> bounds = new ArrayList<>();
+    bounds.add(0L);
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      ByteBuffer buffer = ByteBuffer.allocate(8192);
+      long start = 0;
+      while (size - start > chunkSize) {
+        long end = -1;
+        long offset = start + chunkSize;
+        while (end < 0 && offset < size) {
+          buffer.clear();
+          int read = channel.read(buffer, offset);
+          if (read < 0) {
+            break;
+          }
+          for (int i = 0; i < read && end < 0; i++) {
+            if (buffer.get(i) == '\n') {
+              end = offset + i + 1;
+            }
+          }
+          offset += read;
+        }
+        if (end < 0 || end >= size) {
+          break;
+        }
+        bounds.add(end);
+        start = end;
+      }
+    }
+    bounds.add(size);
+    return bounds.stream().mapToLong(Long::longValue).toArray();
   }
 
   @Override
@@ -48,6 +279,189 @@ public class ThreadSafeInvertedIndexBuilder extends InvertedIndexBuilder {
     return super.toString();
   }
 
+  /** Task that lists one directory and queues its subdirectories and text files. */
+  private class DirectoryTask implements Runnable {
+    /** Path of the directory to list. */
+    private final Path directory;
+
+    /**
+     * Constructor for the directory task.
+     *
+     * @param directory Path of the directory to list.
+     */
+    private DirectoryTask(Path directory) {
+      this.directory = directory;
+    }
+
+    @Override
+    public void run() {
+      ArrayList<Path> files = new ArrayList<>();
+      try (DirectoryStream<Path> listing = Files.newDirectoryStream(directory)) {
+        for (Path path : listing) {
+          if (Files.isDirectory(path)) {
+            readDirectory(path); // queued right away, so discovery keeps going in parallel.
+          } else if (fileIsTXT(path)) {
+            files.add(path);
+          }
+        }
+      } catch (IOException e) {
+        log.error("Unable to read directory from {}", directory);
+        throw new UncheckedIOException(e);
+      }
+
+      // the largest files go first, so they do not finish long after the others.
+      HashMap<Path, Long> sizes = new HashMap<>();
+      for (Path file : files) {
+        sizes.put(file, size(file));
+      }
+      files.sort(Comparator.comparing(sizes::get, Comparator.reverseOrder()));
+      for (Path file : files) {
+        readFile(file);
+      }
+    }
+
+    @Override
+    public String toString() {
+      return "DirectoryTask{" + "directory=" + directory + '}';
+    }
+  }
+
+  /**
+   * A large file whose chunks are indexed in parallel. Each chunk numbers its stems from 1, and
+   * once every chunk is done, the positions of each chunk are shifted by the number of stems in the
+   * chunks before it, so the merged result is the same as reading the file in one pass.
+   *
+   * <p>The positions after a chunk that could not be read are unknown, so only the chunks before
+   * the first failed chunk are added, as if the file ended there.
+   */
+  private class ChunkedFile {
+    /** Path of the file. */
+    private final Path path;
+
+    /** The offset of the start of each chunk, plus the end of the file. */
+    private final long[] bounds;
+
+    /** The index built from each chunk, or null if the chunk is not done yet or failed. */
+    private final InvertedIndex[] indexes;
+
+    /** The number of stems in each chunk. */
+    private final int[] counts;
+
+    /** Number of chunks that are not done yet. */
+    private int remaining;
+
+    /**
+     * Creates a new chunked file.
+     *
+     * @param path Path of the file.
+     * @param bounds the offset of the start of each chunk, plus the end of the file
+     */
+    private ChunkedFile(Path path, long[] bounds) {
+      this.path = path;
+      this.bounds = bounds;
+      this.indexes = new InvertedIndex[bounds.length - 1];
+      this.counts = new int[bounds.length - 1];
+      this.remaining = bounds.length - 1;
+    }
+
+    /** Queues a task for every chunk, or runs it if a full queue drops it. */
+    private void start() {
+      for (int chunk = 0; chunk < indexes.length; chunk++) {
+        tasks.executeOrRun(new ChunkTask(this, chunk));
+      }
+    }
+
+    /**
+     * Records a finished or failed chunk. The worker that finishes the last chunk shifts the
+     * positions of every chunk before the first failed one and merges them in order into one index,
+     * which is added to the index at once, so no other file is added between two chunks of this
+     * file.
+     *
+     * @param chunk the index of the chunk
+     * @param local the index built from the chunk, or null if the chunk could not be read
+     * @param count the number of stems in the chunk
+     */
+    private void finished(int chunk, InvertedIndex local, int count) {
+      synchronized (this) {
+        indexes[chunk] = local;
+        counts[chunk] = count;
+        if (--remaining > 0) {
+          return;
+        }
+      }
+
+      int read = 0;
+      while (read < indexes.length && indexes[read] != null) {
+        read++;
+      }
+      if (read < indexes.length) {
+        log.error(
+            "Unable to read chunk {} of {}, so only the chunks before it are added.", read, path);
+      }
+      if (read == 0) {
+        return;
+      }
+
+      InvertedIndex merged = indexes[0];
+      int offset = counts[0];
+      for (int i = 1; i < read; i++) {
+        indexes[i].shiftPositions(offset);
+        offset += counts[i];
+        merged.moveIndex(indexes[i]);
+        indexes[i] = null;
+      }
+      add(merged);
+    }
+
+    @Override
+    public String toString() {
+      return "ChunkedFile{" + "path=" + path + ", chunks=" + indexes.length + '}';
+    }
+  }
+
+  /** Task that indexes one chunk of a large file. */
+  private class ChunkTask implements Runnable {
+    /** The file the chunk belongs to. */
+    private final ChunkedFile file;
+
+    /** The index of the chunk. */
+    private final int chunk;
+
+    /**
+     * Constructor for the chunk task.
+     *
+     * @param file the file the chunk belongs to
+     * @param chunk the index of the chunk
+     */
+    private ChunkTask(ChunkedFile file, int chunk) {
+      this.file = file;
+      this.chunk = chunk;
+    }
+
+    @Override
+    public void run() {
+      InvertedIndex localIndex = null;
+      int count = 0;
+      try {
+        InvertedIndex read = new InvertedIndex();
+        count =
+            InvertedIndexBuilder.readFile(
+                file.path, file.bounds[chunk], file.bounds[chunk + 1], read, analyzer);
+        localIndex = read;
+      } catch (IOException e) {
+        log.error("Unable to read file from {}", file.path);
+        throw new UncheckedIOException(e);
+      } finally { // a failed chunk still counts, so the chunks that were read are still added.
+        file.finished(chunk, localIndex, count);
+      }
+    }
+
+    @Override
+    public String toString() {
+      return "ChunkTask{" + "path=" + file.path + ", chunk=" + chunk + '}';
+    }
+  }
+
   /** Task for the ThreadSafeInvertedIndexBuilder */
   private class Task implements Runnable {
     /** Path of the file from which to build index. */
@@ -64,14 +478,39 @@ public class ThreadSafeInvertedIndexBuilder extends InvertedIndexBuilder {
 
     @Override
     public void run() {
+      long size = size(path);
+      if (size > 2L * chunkSize) { // large files are split, so more than one worker reads them.
+        try {
+          long[] bounds = split(path, size, chunkSize);
+          if (bounds.length > 2) {
+            new ChunkedFile(path, bounds).start();
+            return;
+          }
+        } catch (IOException e) {
+          log.error("Unable to read file from {}", path);
+          throw new UncheckedIOException(e);
+        }
+      }
+
+      ThreadLocal<InvertedIndex> reduced = accumulator;
+      if (reduced != null) { // add to the index of this worker, which nothing else locks.
+        try {
+          InvertedIndexBuilder.readFile(path, reduced.get(), analyzer);
+        } catch (IOException e) {
+          log.error("Unable to read file from {}", path);
+          throw new UncheckedIOException(e);
+        }
+        return;
+      }
+
       InvertedIndex localIndex = new InvertedIndex(); // creating a local index minimizes blocking.
       try {
-        InvertedIndexBuilder.readFile(path, localIndex); // populate the local index.
+        InvertedIndexBuilder.readFile(path, localIndex, analyzer); // populate the local index.
       } catch (IOException e) {
         log.error("Unable to read file from {}", path);
         throw new UncheckedIOException(e);
       }
-      index.addIndex(localIndex); // add the local index to the main thread-safe index.
+      add(localIndex);
     }
 
     @Override
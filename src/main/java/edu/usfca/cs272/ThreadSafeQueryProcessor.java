@@ -1,10 +1,16 @@
 package edu.usfca.cs272;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.function.Function;
-import opennlp.tools.stemmer.snowball.SnowballStemmer;
 
 /**
  * Thread-safe variation of the Processor
@@ -20,28 +26,65 @@ public class ThreadSafeQueryProcessor implements Processor {
   /** The map to store the search results. */
   private final TreeMap<String, ArrayList<InvertedIndex.Score>> searches;
 
+  /** The index to search through. */
+  private final SearchableIndex index;
+
+  /** True if partial search needs to be performed. */
+  private final boolean partialSearch;
+
   /** The search method to use. */
   private final Function<Set<String>, ArrayList<InvertedIndex.Score>> searchMethod;
 
+  /** Turns the queries into stems. */
+  private final Analyzer analyzer;
+
   /**
    * Creates a new ThreadSafeQueryProcessor
    *
-   * @param index the thread safe invertedindex to search through.
+   * @param index the index to search through, which must be safe to search from multiple threads.
    * @param queue the workqueue to use.
    * @param partialSearch true if partial search needs to be performed.
    */
-  public ThreadSafeQueryProcessor(
-      ThreadSafeInvertedIndex index, WorkQueue queue, boolean partialSearch) {
+  public ThreadSafeQueryProcessor(SearchableIndex index, WorkQueue queue, boolean partialSearch) {
+    this(index, queue, partialSearch, Analyzer.ENGLISH);
+  }
 
+  /**
+   * Creates a new ThreadSafeQueryProcessor
+   *
+   * @param index the index to search through, which must be safe to search from multiple threads.
+   * @param queue the workqueue to use.
+   * @param partialSearch true if partial search needs to be performed.
+   * @param analyzer turns the queries into stems, which must be the analyzer used by the index.
+   */
+  public ThreadSafeQueryProcessor(
+      SearchableIndex index, WorkQueue queue, boolean partialSearch, Analyzer analyzer) {
+    this.analyzer = analyzer;
+    this.index = index;
+    this.partialSearch = partialSearch;
     this.searchMethod = partialSearch ? index::partialSearch : index::exactSearch;
     this.queue = queue;
     this.searches = new TreeMap<>();
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The queries are searched in parallel as interactive tasks, and only the searches of this
+   * file are waited for, not the other tasks of the work queue. A full work queue that drops tasks
+   * has the calling thread search the query instead.
+   */
   @Override
   public void parseQuery(Path query) throws IOException {
-    Processor.super.parseQuery(query);
-    queue.finish();
+    WorkQueue.TaskGroup group = queue.group(WorkQueue.Priority.INTERACTIVE);
+    try (BufferedReader br = Files.newBufferedReader(query, UTF_8)) {
+      String line;
+      while ((line = br.readLine()) != null) {
+        group.executeOrRun(new Task(line));
+      }
+    } finally {
+      group.finish();
+    }
   }
 
   @Override
@@ -60,8 +103,7 @@ public class ThreadSafeQueryProcessor implements Processor {
 
   @Override
   public List<InvertedIndex.Score> getScores(String query) {
-    SnowballStemmer stemmer = new SnowballStemmer(SnowballStemmer.ALGORITHM.ENGLISH);
-    var stems = FileStemmer.uniqueStems(query, stemmer);
+    var stems = analyzer.uniqueStems(query);
     query = String.join(" ", stems);
     ArrayList<InvertedIndex.Score> scores;
     synchronized (searches) {
@@ -74,6 +116,39 @@ public class ThreadSafeQueryProcessor implements Processor {
     }
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The search runs as an interactive task on the work queue, so it runs ahead of queued
+   * crawling and building tasks, and only this search is waited for. If a full work queue discards
+   * the task, the search runs on the calling thread instead. Must not be called by a worker of the
+   * queue, since the worker could be the one needed to run the search.
+   */
+  @Override
+  public List<InvertedIndex.Score> search(String query, int limit, int offset) {
+    var stems = analyzer.uniqueStems(query);
+    if (stems.isEmpty()) {
+      return Collections.emptyList();
+    }
+    Future<ArrayList<InvertedIndex.Score>> search =
+        queue.submit(
+            () -> index.search(stems, partialSearch, limit, offset),
+            WorkQueue.Priority.INTERACTIVE);
+    try {
+      return Collections.unmodifiableList(search.get());
+    } catch (CancellationException e) { // discarded by a full work queue.
+      return Collections.unmodifiableList(index.search(stems, partialSearch, limit, offset));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return Collections.emptyList();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw new IllegalStateException("Unable to search for query: " + query, e.getCause());
+    }
+  }
+
   @Override
   public Set<String> getQueries() {
     synchronized (searches) {
@@ -81,10 +156,28 @@ public class ThreadSafeQueryProcessor implements Processor {
     }
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Only this search is waited for, so a query does not wait for crawling or building tasks that
+   * share the work queue. The search is interactive, so it also runs ahead of their queued tasks.
+   * If a full work queue discards the task, the search runs on the calling thread instead.
+   */
   @Override
   public void parseQuery(String query) {
-    queue.execute(new Task(query));
-    queue.finish();
+    Future<?> search = queue.submit(new Task(query), WorkQueue.Priority.INTERACTIVE);
+    try {
+      search.get();
+    } catch (CancellationException e) { // discarded by a full work queue.
+      new Task(query).run();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw new IllegalStateException("Unable to search for query: " + query, e.getCause());
+    }
   }
 
   /** Task for the Processor performs a search for the given query. */
@@ -103,8 +196,7 @@ public class ThreadSafeQueryProcessor implements Processor {
 
     @Override
     public void run() {
-      SnowballStemmer stemmer = new SnowballStemmer(SnowballStemmer.ALGORITHM.ENGLISH);
-      var stems = FileStemmer.uniqueStems(query, stemmer);
+      var stems = analyzer.uniqueStems(query);
       if (stems.isEmpty()) {
         return;
       }
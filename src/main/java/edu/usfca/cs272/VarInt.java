@@ -0,0 +1,122 @@
+package edu.usfca.cs272;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Utility class for variable-byte encoding of non-negative integers. Each byte stores seven bits of
+ * the value, least significant bits first, and the high bit of a byte is set when more bytes
+ * follow. Small values such as the gaps between sorted positions take a single byte.
+ *
+ * <p>Reading returns the decoded value and the offset of the next byte packed into a single {@code
+ * long}, which avoids allocating a result object per value. Use {@link #value(long)} and {@link
+ * #next(long)} to unpack it.
+ *
+ * @author Ravneet Singh Bhatia
+ * @version Spring 2024
+ */
+public class VarInt {
+  /**
+   * Returns the number of bytes needed to encode a value.
+   *
+   * @param value the non-negative value to encode
+   * @return the number of bytes needed
+   */
+  public static int size(int value) {
+    int size = 1;
+    while ((value & ~0x7F) != 0) {
+      value >>>= 7;
+      size++;
+    }
+    return size;
+  }
+
+  /**
+   * Writes a value into a byte array. The array must have room for {@link #size(int)} bytes.
+   *
+   * @param value the non-negative value to encode
+   * @param bytes the array to write to
+   * @param offset the offset of the first byte to write
+   * @return the offset after the last byte written
+   */
+  public static int write(int value, byte[] bytes, int offset) {
+    while ((value & ~0x7F) != 0) {
+      bytes[offset++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    bytes[offset++] = (byte) value;
+    return offset;
+  }
+
+  /**
+   * Reads a value from a byte array.
+   *
+   * @param bytes the array to read from
+   * @param offset the offset of the first byte of the value
+   * @return the value and the offset of the next byte, packed into a long
+   */
+  public static long read(byte[] bytes, int offset) {
+    int value = 0;
+    int shift = 0;
+    byte b;
+    do {
+      b = bytes[offset++];
+      value |= (b & 0x7F) << shift;
+      shift += 7;
+    } while (b < 0);
+    return pack(value, offset);
+  }
+
+  /**
+   * Reads a value from a byte buffer using absolute gets, so the buffer position is not changed and
+   * the buffer can be shared between threads.
+   *
+   * @param buffer the buffer to read from
+   * @param offset the offset of the first byte of the value
+   * @return the value and the offset of the next byte, packed into a long
+   */
+  public static long read(ByteBuffer buffer, int offset) {
+    int value = 0;
+    int shift = 0;
+    byte b;
+    do {
+      b = buffer.get(offset++);
+      value |= (b & 0x7F) << shift;
+      shift += 7;
+    } while (b < 0);
+    return pack(value, offset);
+  }
+
+  /**
+   * Returns the decoded value from the result of a read.
+   *
+   * @param read the packed result of a read
+   * @return the decoded value
+   */
+  public static int value(long read) {
+    return (int) read;
+  }
+
+  /**
+   * Returns the offset of the next byte from the result of a read.
+   *
+   * @param read the packed result of a read
+   * @return the offset after the value that was read
+   */
+  public static int next(long read) {
+    return (int) (read >>> 32);
+  }
+
+  /**
+   * Packs a value and offset into a long.
+   *
+   * @param value the decoded value
+   * @param offset the offset after the value
+   * @return the packed value and offset
+   */
+  private static long pack(int value, int offset) {
+    return ((long) offset << 32) | (value & 0xFFFFFFFFL);
+  }
+
+  /** Prevent instantiating this class of static methods. */
+  private VarInt() {}
+}
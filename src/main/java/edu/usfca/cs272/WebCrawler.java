@@ -3,13 +3,22 @@ package edu.usfca.cs272;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.HashSet;
-import opennlp.tools.stemmer.snowball.SnowballStemmer;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 /**
  * Class responsible for crawling the web in the search engine.
  *
+ * <p>By default each web page is downloaded and indexed by one task of the work queue, so a worker
+ * thread is blocked for the whole download and the number of workers limits the downloads in
+ * flight. A crawler can instead download each page on its own virtual thread, up to a limit of
+ * pages in flight, and only queue the cleaning, stemming and indexing of the downloaded page. The
+ * download path holds no monitor while it blocks, so a virtual thread waiting for the network never
+ * pins its carrier thread.
+ *
  * @author Ravneet Singh Bhatia
  * @version Spring 2024
  */
@@ -18,11 +27,14 @@ public class WebCrawler {
   /** The maximum number of redirects to follow. */
   private static final int REDIRECTS = 3;
 
+  /** Default maximum number of pages downloaded at once on virtual threads. */
+  public static final int DEFAULT_FETCHES = 50;
+
   /** The invertedIndex to populate. */
-  private final ThreadSafeInvertedIndex index;
+  private final MutableIndex index;
 
-  /** The Workqueue to use. */
-  private final WorkQueue queue;
+  /** Tasks of this crawler on the work queue, which are waited for without the other tasks. */
+  private final WorkQueue.TaskGroup tasks;
 
   /** The seed uri for the web crawler. */
   private final URI seed;
@@ -33,23 +45,85 @@ public class WebCrawler {
   /** The max number of pages to crawl. */
   private final int max;
 
+  /** Turns the text of the webpages into stems. */
+  private final Analyzer analyzer;
+
+  /** Creates the virtual thread of each download, or null if the workers download the pages. */
+  private final ThreadFactory fetchers;
+
+  /** Limits the number of pages downloaded at once on virtual threads. */
+  private final Semaphore fetches;
+
+  /** Number of pages downloaded on virtual threads that have not been indexed yet. */
+  private final AtomicInteger pending;
+
   /** Logger for this class. */
   public static final Logger log = LogManager.getLogger();
 
   /**
    * Creates a new WebCrawler.
    *
-   * @param index the invertedIndex to build.
+   * @param index the invertedIndex to build, which must be safe to add to from multiple threads.
+   * @param queue the workqueue.
+   * @param seed the seed uri.
+   * @param max the maximum number of webpages to crawl.
+   */
+  public WebCrawler(MutableIndex index, WorkQueue queue, String seed, int max) {
+    this(index, queue, seed, max, Analyzer.ENGLISH);
+  }
+
+  /**
+   * Creates a new WebCrawler.
+   *
+   * @param index the invertedIndex to build, which must be safe to add to from multiple threads.
    * @param queue the workqueue.
    * @param seed the seed uri.
    * @param max the maximum number of webpages to crawl.
+   * @param analyzer turns the text of the webpages into stems.
+   */
+  public WebCrawler(MutableIndex index, WorkQueue queue, String seed, int max, Analyzer analyzer) {
+    this(index, queue, seed, max, analyzer, 0);
+  }
+
+  /**
+   * Creates a new WebCrawler.
+   *
+   * @param index the invertedIndex to build, which must be safe to add to from multiple threads.
+   * @param queue the workqueue, which cleans, stems and indexes the downloaded webpages.
+   * @param seed the seed uri.
+   * @param max the maximum number of webpages to crawl.
+   * @param analyzer turns the text of the webpages into stems.
+   * @param fetches the maximum number of webpages downloaded at once on virtual threads, or 0 if
+   *     the workers of the queue download the webpages.
    */
-  public WebCrawler(ThreadSafeInvertedIndex index, WorkQueue queue, String seed, int max) {
+  public WebCrawler(
+      MutableIndex index,
+      WorkQueue queue,
+      String seed,
+      int max,
+      Analyzer analyzer,
+      int fetches) {
+    if (fetches < 0) {
+      throw new IllegalArgumentException("Number of fetches is negative: " + fetches);
+    }
+    this.analyzer = analyzer;
     this.index = index;
-    this.queue = queue;
+    this.tasks = queue.group(WorkQueue.Priority.BACKGROUND);
     this.seed = URI.create(seed);
     this.max = max;
     this.seen = new HashSet<>();
+    this.fetchers = fetches > 0 ? Thread.ofVirtual().name("fetch-", 0).factory() : null;
+    this.fetches = fetches > 0 ? new Semaphore(fetches) : null;
+    this.pending = new AtomicInteger();
+  }
+
+  /**
+   * Returns true if the webpages are downloaded on virtual threads.
+   *
+   * @return true if the webpages are downloaded on virtual threads
+   */
+  public boolean isVirtual() {
+    return fetchers != null;
   }
 
   /**
@@ -60,12 +134,53 @@ public class WebCrawler {
    */
   public void processLink(URI seed) {
     synchronized (seen) {
-      if (seen.contains(seed)) { // check to see if uri has been processed already.
+      if (!seen.add(seed)) { // check to see if uri has been processed already.
         return;
       }
     }
-    queue.execute(new Task(seed));
-    queue.finish();
+    crawl(seed);
+    if (fetchers != null) {
+      finish();
+    }
+    tasks.finish();
+  }
+
+  /**
+   * Starts downloading a link that has been marked as seen. The caller must not hold the lock of
+   * {@link #seen}, since queuing the download can wait for room in a bounded queue or run it.
+   *
+   * @param link the link to crawl
+   */
+  private void crawl(URI link) {
+    if (fetchers == null) {
+      tasks.execute(new Task(link, null));
+    } else {
+      pending.incrementAndGet();
+      fetchers.newThread(new Fetch(link)).start();
+    }
+  }
+
+  /** Decrements the count of pending webpages and lets other threads know if it is 0. */
+  private void decrementPending() {
+    if (pending.decrementAndGet() == 0) {
+      synchronized (pending) {
+        pending.notifyAll();
+      }
+    }
+  }
+
+  /** Waits until every webpage downloaded on a virtual thread has been indexed. */
+  private void finish() {
+    synchronized (pending) {
+      try {
+        while (pending.get() > 0) {
+          pending.wait();
+        }
+      } catch (InterruptedException e) {
+        log.catching(e);
+        Thread.currentThread().interrupt();
+      }
+    }
   }
 
   /** Process the seed uri */
@@ -73,28 +188,89 @@ public class WebCrawler {
     this.processLink(this.seed);
   }
 
+  /**
+   * Downloads a web page on a virtual thread and queues a task to index it. Only the download runs
+   * on the virtual thread, since the rest of the work needs the processor rather than the network.
+   */
+  private class Fetch implements Runnable {
+
+    /** The link to download. */
+    private final URI link;
+
+    /**
+     * Creates a new Fetch.
+     *
+     * @param link the link to download.
+     */
+    private Fetch(URI link) {
+      this.link = link;
+    }
+
+    @Override
+    public void run() {
+      String html = null;
+      try {
+        fetches.acquire();
+        try {
+          html = HtmlFetcher.fetch(link, REDIRECTS);
+        } finally {
+          fetches.release();
+        }
+      } catch (InterruptedException e) {
+        log.catching(e);
+        Thread.currentThread().interrupt();
+      }
+
+      if (html == null) {
+        log.info("{} was not 200.", link);
+        decrementPending();
+      } else if (!tasks.execute(new Task(link, html))) {
+        log.info("{} was dropped by a full work queue.", link);
+        decrementPending();
+      }
+    }
+
+    @Override
+    public String toString() {
+      return "Fetch{" + "link=" + link + '}';
+    }
+  }
+
   /** Task for building the inverted index from a web page. */
   private class Task implements Runnable {
 
     /** The link to process */
     private final URI link;
 
+    /** The downloaded html, or null if this task downloads it. */
+    private final String fetched;
+
     /**
      * Creates a new Task
      *
      * @param link the link to process.
+     * @param fetched the downloaded html, or null if this task downloads it.
      */
-    private Task(URI link) {
+    private Task(URI link, String fetched) {
       this.link = link;
-      synchronized (seen) {
-        seen.add(link); // mark the link as seen.
-      }
+      this.fetched = fetched;
     }
 
     @Override
     public void run() {
+      try {
+        process();
+      } finally {
+        if (fetched != null) {
+          decrementPending(); // links on the page were crawled first, so pending is not 0 early.
+        }
+      }
+    }
+
+    /** Downloads the web page if needed, crawls its links and adds its stems to the index. */
+    private void process() {
       // Step 1: Download the html.
-      String html = HtmlFetcher.fetch(link, REDIRECTS);
+      String html = fetched != null ? fetched : HtmlFetcher.fetch(link, REDIRECTS);
 
       if (html == null) {
         log.info("{} was not 200.", link);
@@ -105,30 +281,34 @@ public class WebCrawler {
       html = HtmlCleaner.stripBlockElements(html);
       ArrayList<URI> internalLinks = LinkFinder.listUris(link, html);
 
+      ArrayList<URI> newLinks = new ArrayList<>();
       synchronized (seen) {
         for (var internalLink : internalLinks) {
           if (seen.size() >= max) {
             break;
           }
-          if (!seen.contains(internalLink)) {
-            queue.execute(new Task(internalLink));
+          if (seen.add(internalLink)) { // mark the link as seen.
+            newLinks.add(internalLink);
           }
         }
       }
+      // Queued after releasing the lock, so waiting on a full queue does not stop other tasks.
+      for (URI newLink : newLinks) {
+        crawl(newLink);
+      }
 
       // Step 3: Finish cleaning the html.
       String clean = HtmlCleaner.stripTags(html);
       clean = HtmlCleaner.stripEntities(clean);
 
       // Step 4: Add the stems to the index.
-      SnowballStemmer stemmer = new SnowballStemmer(SnowballStemmer.ALGORITHM.ENGLISH);
-      var stems = FileStemmer.listStems(clean, stemmer);
+      var stems = analyzer.listStems(clean);
 
       InvertedIndex local = new InvertedIndex();
       var absoluteLink = LinkFinder.toAbsolute(seed, link.toString());
       if (absoluteLink != null) {
         local.addAll(absoluteLink.toString(), stems);
-        index.addIndex(local);
+        index.moveIndex(local);
       }
     }
 
@@ -140,6 +320,6 @@ public class WebCrawler {
 
   @Override
   public String toString() {
-    return "WebCrawler{" + "seed=" + seed + ", max=" + max + '}';
+    return "WebCrawler{" + "seed=" + seed + ", max=" + max + ", virtual=" + isVirtual() + '}';
   }
 }
@@ -0,0 +1,195 @@
+package edu.usfca.cs272;
+
+import java.nio.CharBuffer;
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * Splits text into the same cleaned words as {@link FileStemmer#parse(String)} in a single pass,
+ * without regular expressions or copies of the whole text. Letters are collected into a reusable
+ * buffer, and only the finished words are created as strings.
+ *
+ * <p>The cleaning rules match the regular expressions in {@link FileStemmer}. Text is decomposed
+ * into {@link Normalizer.Form#NFD}, characters that are neither alphabetic nor whitespace are
+ * removed, words are lowercased, and the text is split on Unicode whitespace. Runs of ASCII
+ * characters are already decomposed, so only runs of other characters are normalized. Every word
+ * with a character other than an ASCII letter is lowercased with {@link String#toLowerCase()},
+ * which keeps the rules that depend on the locale or the rest of the word, such as the final sigma.
+ *
+ * <p>A tokenizer reuses its buffer, so it must not be shared between threads.
+ *
+ * @author Ravneet Singh Bhatia
+ * @version Spring 2024
+ */
+public class WordTokenizer {
+  /** Letters of the word being read. */
+  private char[] word;
+
+  /** Number of characters in the word being read. */
+  private int length;
+
+  /** True if the word being read only has ASCII letters. */
+  private boolean ascii;
+
+  /** True if the text so far only had characters that {@link String#strip()} removes. */
+  private boolean leading;
+
+  /** True if the text starts with whitespace that {@link String#strip()} does not remove. */
+  private boolean empty;
+
+  /** The last whitespace in the text so far, or -1 if there was none. */
+  private int space;
+
+  /** True if ASCII letters can be lowercased without {@link String#toLowerCase()}. */
+  private final boolean simpleCase;
+
+  /** Creates a new tokenizer. */
+  public WordTokenizer() {
+    this.word = new char[32];
+    String language = Locale.getDefault().getLanguage();
+    this.simpleCase = !language.equals("tr") && !language.equals("az") && !language.equals("lt");
+  }
+
+  /**
+   * Passes each cleaned word of the text to a callback, in order.
+   *
+   * @param text the text to clean and split
+   * @param words receives each word
+   * @see FileStemmer#parse(String)
+   */
+  public void parse(CharSequence text, Consumer<String> words) {
+    length = 0;
+    ascii = true;
+    leading = true;
+    empty = false;
+    space = -1;
+
+    int end = text.length();
+    int i = 0;
+    while (i < end) {
+      char c = text.charAt(i);
+      if (c < 0x80) {
+        add(c, words);
+        i++;
+      } else {
+        int start = i;
+        while (i < end && text.charAt(i) >= 0x80) {
+          i++;
+        }
+        String decomposed =
+            Normalizer.normalize(CharBuffer.wrap(text, start, i), Normalizer.Form.NFD);
+        for (int j = 0; j < decomposed.length(); ) {
+          int codePoint = decomposed.codePointAt(j);
+          add(codePoint, words);
+          j += Character.charCount(codePoint);
+        }
+      }
+    }
+    finish(words);
+  }
+
+  /**
+   * Adds a decomposed character to the word being read, or finishes the word if the character is
+   * whitespace. Other characters are removed.
+   *
+   * @param codePoint the character
+   * @param words receives each word
+   */
+  private void add(int codePoint, Consumer<String> words) {
+    if (codePoint < 0x80) {
+      if (codePoint == ' ' || (codePoint >= '\t' && codePoint <= '\r')) {
+        finish(words);
+        space = codePoint;
+      } else if ((codePoint >= 'a' && codePoint <= 'z') || (codePoint >= 'A' && codePoint <= 'Z')) {
+        append(simpleCase ? (char) (codePoint | 0x20) : (char) codePoint);
+        ascii = ascii && simpleCase;
+      }
+    } else if (isSpace(codePoint)) {
+      if (leading && !Character.isWhitespace(codePoint)) {
+        empty = true; // split would start with an empty string before this whitespace.
+        leading = false;
+      }
+      finish(words);
+      space = codePoint;
+    } else if (Character.isAlphabetic(codePoint)) {
+      if (Character.isBmpCodePoint(codePoint)) {
+        append((char) codePoint);
+      } else {
+        append(Character.highSurrogate(codePoint));
+        append(Character.lowSurrogate(codePoint));
+      }
+      ascii = false;
+    }
+  }
+
+  /**
+   * Appends a letter to the word being read.
+   *
+   * @param letter the letter
+   */
+  private void append(char letter) {
+    if (length == word.length) {
+      word = Arrays.copyOf(word, length * 2);
+    }
+    word[length++] = letter;
+    leading = false;
+  }
+
+  /**
+   * Passes on the word being read, if there is one.
+   *
+   * @param words receives each word
+   */
+  private void finish(Consumer<String> words) {
+    if (length == 0) {
+      return;
+    }
+    if (empty) {
+      words.accept("");
+      empty = false;
+    }
+
+    words.accept(ascii ? new String(word, 0, length) : toLowerCase());
+    length = 0;
+    ascii = true;
+  }
+
+  /**
+   * Lowercases the word being read. A capital sigma is lowercased depending on the characters
+   * around it, so a word with one is lowercased after the whitespace before it, the same as when
+   * the whole text is lowercased.
+   *
+   * @return the lowercase word
+   */
+  private String toLowerCase() {
+    String finished = new String(word, 0, length);
+    if (space < 0 || finished.indexOf('\u03a3') < 0) {
+      return finished.toLowerCase();
+    }
+    String context = Character.toString(space) + finished;
+    return context.toLowerCase().substring(Character.charCount(space));
+  }
+
+  /**
+   * Checks if a character is whitespace the same way as the {@code \s} class of a regular
+   * expression with {@link java.util.regex.Pattern#UNICODE_CHARACTER_CLASS}.
+   *
+   * @param codePoint the character
+   * @return true if the character has the Unicode White_Space property
+   */
+  private static boolean isSpace(int codePoint) {
+    int type = Character.getType(codePoint);
+    return type == Character.SPACE_SEPARATOR
+        || type == Character.LINE_SEPARATOR
+        || type == Character.PARAGRAPH_SEPARATOR
+        || (codePoint >= '\t' && codePoint <= '\r')
+        || codePoint == 0x85;
+  }
+
+  @Override
+  public String toString() {
+    return "WordTokenizer{" + "capacity=" + word.length + '}';
+  }
+}
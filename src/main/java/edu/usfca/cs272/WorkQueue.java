@@ -1,6 +1,13 @@
 package edu.usfca.cs272;
 
+import java.util.ArrayDeque;
 import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -8,6 +15,34 @@ import org.apache.logging.log4j.Logger;
 /**
  * A simple work queue.
  *
+ * <p>By default every task goes through one shared list. A work-stealing queue instead gives each
+ * worker its own deque: tasks queued by a worker go to the end of its own deque, and the worker
+ * takes its newest task first, while tasks queued by other threads go to a shared list. A worker
+ * with nothing to do takes the oldest task of the shared list or of another worker, and only
+ * sleeps once every list is empty. Queuing a task wakes at most one sleeping worker.
+ *
+ * <p>{@link #finish()} waits for every task of the queue, including tasks queued by other callers
+ * that share it. A caller that only needs its own work done should queue it through a {@link
+ * TaskGroup} and wait for the group, or {@link #submit(Callable)} it and wait for the returned
+ * future.
+ *
+ * <p>A queue can be bounded, so only a limited number of tasks wait for a worker at once. A task
+ * queued while the queue is full is handled by the {@link Policy} of the queue. A worker that
+ * queues a task into a full blocking queue runs the task itself instead of waiting, since every
+ * worker could be waiting for the others to make room. A task run by its caller can queue more
+ * tasks that its caller runs in turn, so once a thread is running {@link #CALLER_RUNS_LIMIT} such
+ * tasks inside each other, further tasks are queued past the capacity instead of nesting deeper.
+ *
+ * <p>Each task has a {@link Priority}, and the shared list keeps one lane per priority. A worker
+ * takes the oldest task of the highest priority lane that has tasks. To keep lower priorities from
+ * starving, a lane with tasks that has been passed over {@link #STARVATION_LIMIT} times in a row is
+ * served next. In a work-stealing queue, interactive tasks always go to the shared list, and each
+ * worker has one deque for its normal tasks and one for its background tasks. A worker looks for
+ * interactive tasks first, then for normal tasks in its own deque, the shared list and the other
+ * workers, and only then for background tasks the same way. A worker that has taken {@link
+ * #STARVATION_LIMIT} normal tasks in a row while background tasks were waiting looks for them
+ * first once.
+ *
  * @author CS 272 Software Development (University of San Francisco)
  * @author Ravneet Singh Bhatia
  */
@@ -16,8 +51,22 @@ public class WorkQueue {
   /** Workers that wait until work is available */
   private final Worker[] workers;
 
-  /** Queue of pending tasks. */
-  private final LinkedList<Runnable> tasks;
+  /** Queue of pending tasks, with one lane per priority. */
+  private final Lanes tasks;
+
+  /**
+   * The normal and background deques of each worker, or null if this is not a work-stealing queue.
+   */
+  private final ArrayDeque<Runnable>[][] deques;
+
+  /** Number of background tasks waiting in a work-stealing queue. */
+  private final AtomicInteger background;
+
+  /** Lock used by the workers of a work-stealing queue to wait for work. */
+  private final Object idle;
+
+  /** Number of workers of a work-stealing queue that are looking for work or waiting for it. */
+  private volatile int searching;
 
   /** Used to signal that the workers can terminate. */
   private volatile boolean shutdown;
@@ -25,11 +74,80 @@ public class WorkQueue {
   /** Default number of worker threads to use. */
   public static final int DEFAULT = 5;
 
+  /**
+   * Number of times in a row a lane with tasks can be passed over for a higher priority lane before
+   * its oldest task is taken first.
+   */
+  public static final int STARVATION_LIMIT = 16;
+
+  /**
+   * Number of tasks a thread can be running for a full queue at once, each queued by the one
+   * before it, before further tasks are queued past the capacity.
+   */
+  public static final int CALLER_RUNS_LIMIT = 8;
+
   /** Logger used for this class. */
   private static final Logger log = LogManager.getLogger();
 
   /** Count to keep track of pending tasks. */
-  private int pending;
+  private final AtomicInteger pending;
+
+  /** Maximum number of tasks waiting for a worker, or 0 if there is no maximum. */
+  private final int capacity;
+
+  /** What happens to a task queued while the queue is full. */
+  private final Policy policy;
+
+  /** Free places for tasks waiting for a worker, or null if there is no maximum. */
+  private final Semaphore slots;
+
+  /** Number of tasks waiting for a worker. */
+  private final AtomicInteger depth;
+
+  /** Largest number of tasks that have waited for a worker at once. */
+  private final AtomicInteger highWater;
+
+  /** Number of tasks queued while the queue was full. */
+  private final LongAdder overflows;
+
+  /** Number of waiting tasks that were queued past the capacity, without taking a free place. */
+  private final AtomicInteger borrowed;
+
+  /** Number of tasks each thread is running for a full queue, each queued by the one before it. */
+  private final ThreadLocal<int[]> nested;
+
+  /** How soon a task runs compared to the other tasks of the queue. */
+  public enum Priority {
+    /** Short tasks that a user is waiting for, such as searches. */
+    INTERACTIVE,
+
+    /** Tasks without any particular priority. */
+    NORMAL,
+
+    /** Long-running work that nobody is waiting for interactively, such as building or crawling. */
+    BACKGROUND
+  }
+
+  /** What happens to a task queued while a bounded queue is full. */
+  public enum Policy {
+    /**
+     * The caller waits until a worker takes a task and makes room. A worker runs the task itself
+     * instead, and a caller interrupted while waiting queues the task past the capacity.
+     */
+    BLOCK,
+
+    /**
+     * The caller runs the task itself, unless it is already running {@link #CALLER_RUNS_LIMIT}
+     * tasks this way, in which case the task is queued past the capacity.
+     */
+    CALLER_RUNS,
+
+    /**
+     * The task is discarded. Tasks that must not be lost, such as the files of an index or the
+     * lines of a query file, are run by the caller instead with {@link TaskGroup#executeOrRun}.
+     */
+    DROP
+  }
 
   /** Starts a work queue with default number of threads. */
   public WorkQueue() {
@@ -42,48 +160,298 @@ public class WorkQueue {
    * @param threads number of worker threads to use.
    */
   public WorkQueue(int threads) {
-    this.tasks = new LinkedList<>();
+    this(threads, false);
+  }
+
+  /**
+   * Starts a work queue with given number of threads.
+   *
+   * @param threads number of worker threads to use.
+   * @param stealing true if each worker should have its own deque and take tasks from the others
+   *     when it runs out, instead of every task going through one shared list.
+   */
+  public WorkQueue(int threads, boolean stealing) {
+    this(threads, stealing, 0, Policy.BLOCK);
+  }
+
+  /**
+   * Starts a work queue with given number of threads.
+   *
+   * @param threads number of worker threads to use.
+   * @param stealing true if each worker should have its own deque and take tasks from the others
+   *     when it runs out, instead of every task going through one shared list.
+   * @param capacity maximum number of tasks waiting for a worker, or 0 if there is no maximum.
+   * @param policy what happens to a task queued while the queue is full.
+   */
+  @SuppressWarnings("unchecked")
+  public WorkQueue(int threads, boolean stealing, int capacity, Policy policy) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException("Capacity is negative: " + capacity);
+    }
+    this.capacity = capacity;
+    this.policy = policy;
+    this.slots = capacity > 0 ? new Semaphore(capacity) : null;
+    this.depth = new AtomicInteger();
+    this.highWater = new AtomicInteger();
+    this.overflows = new LongAdder();
+    this.borrowed = new AtomicInteger();
+    this.nested = ThreadLocal.withInitial(() -> new int[1]);
+    this.tasks = new Lanes();
     this.workers = new Worker[threads];
+    this.deques = stealing ? (ArrayDeque<Runnable>[][]) new ArrayDeque<?>[threads][2] : null;
+    this.background = new AtomicInteger();
+    this.idle = new Object();
+    this.searching = 0;
     this.shutdown = false;
-    this.pending = 0;
+    this.pending = new AtomicInteger();
 
     for (int i = 0; i < threads; i++) {
-      workers[i] = new Worker();
-      workers[i].start();
+      if (stealing) {
+        deques[i][0] = new ArrayDeque<>();
+        deques[i][1] = new ArrayDeque<>();
+      }
+      workers[i] = new Worker(i);
+    }
+    for (Worker worker : workers) {
+      worker.start();
     }
   }
 
   /** Increment count of pending work. */
-  private synchronized void incrementPending() {
-    pending++;
+  private void incrementPending() {
+    pending.incrementAndGet();
   }
 
   /** Decrement count of pending work and let other threads know if pending is 0. */
-  private synchronized void decrementPending() {
-    assert pending > 0;
-    pending--;
-    if (pending == 0) {
-      this.notifyAll();
+  private void decrementPending() {
+    int left = pending.decrementAndGet();
+    assert left >= 0;
+    if (left == 0) {
+      synchronized (this) {
+        this.notifyAll();
+      }
     }
   }
 
   /**
-   * Adds a task request to the queue.
+   * Adds a task request to the queue with normal priority. If the queue is full, the task is
+   * handled by the policy of the queue.
    *
    * @param task task request.
+   * @return true if the task was queued or run, or false if it was discarded because the queue was
+   *     full
    */
-  public void execute(Runnable task) {
+  public boolean execute(Runnable task) {
+    return execute(task, Priority.NORMAL);
+  }
+
+  /**
+   * Adds a task request to the queue. If the queue is full, the task is handled by the policy of
+   * the queue.
+   *
+   * @param task task request.
+   * @param priority how soon the task runs compared to the other tasks.
+   * @return true if the task was queued or run, or false if it was discarded because the queue was
+   *     full
+   */
+  public boolean execute(Runnable task, Priority priority) {
+    if (slots != null && !slots.tryAcquire()) {
+      overflows.increment();
+      Policy full = policy == Policy.BLOCK && workerIndex() >= 0 ? Policy.CALLER_RUNS : policy;
+      switch (full) {
+        case DROP -> {
+          return false;
+        }
+        case CALLER_RUNS -> {
+          if (runNested(task)) {
+            return true;
+          }
+          borrowed.incrementAndGet(); // nested too deeply, so the task waits for a worker.
+        }
+        case BLOCK -> {
+          try {
+            slots.acquire();
+          } catch (InterruptedException e) {
+            log.warn("Interrupted while waiting for room, so {} is queued past capacity.", task);
+            borrowed.incrementAndGet();
+            Thread.currentThread().interrupt();
+          }
+        }
+      }
+    }
+
     incrementPending();
-    synchronized (tasks) {
-      tasks.addLast(task);
-      tasks.notifyAll();
+    highWater.accumulateAndGet(depth.incrementAndGet(), Math::max);
+    if (deques == null) {
+      synchronized (tasks) {
+        tasks.addLast(task, priority);
+        tasks.notifyAll();
+      }
+      return true;
+    }
+
+    if (priority == Priority.BACKGROUND) {
+      background.incrementAndGet();
     }
+    int index = priority == Priority.INTERACTIVE ? -1 : workerIndex();
+    if (index >= 0) { // a task queued by a worker stays with that worker unless it is stolen.
+      ArrayDeque<Runnable> deque = deque(index, priority);
+      synchronized (deque) {
+        deque.addLast(task);
+      }
+    } else {
+      synchronized (tasks) {
+        tasks.addLast(task, priority);
+      }
+    }
+    if (searching > 0) {
+      synchronized (idle) {
+        idle.notify();
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Runs a task on the calling thread. A task that throws an exception does not stop the caller.
+   *
+   * @param task the task to run
+   */
+  private static void run(Runnable task) {
+    try {
+      task.run();
+    } catch (RuntimeException e) {
+      System.err.println(e);
+    }
+  }
+
+  /**
+   * Runs a task for a full queue on the calling thread, unless the thread is already running
+   * {@link #CALLER_RUNS_LIMIT} tasks this way.
+   *
+   * @param task the task to run
+   * @return true if the task was run, or false if it was nested too deeply
+   */
+  private boolean runNested(Runnable task) {
+    int[] depth = nested.get();
+    if (depth[0] >= CALLER_RUNS_LIMIT) {
+      return false;
+    }
+    depth[0]++;
+    try {
+      run(task);
+    } finally {
+      depth[0]--;
+    }
+    return true;
+  }
+
+  /**
+   * Makes room for another task once a worker has taken a task from the queue. While tasks queued
+   * past the capacity are waiting, no room is made, so the queue returns to its capacity.
+   */
+  private void taken() {
+    depth.decrementAndGet();
+    if (slots != null && borrowed.getAndUpdate(b -> Math.max(b - 1, 0)) == 0) {
+      slots.release();
+    }
+  }
+
+  /**
+   * Adds a task request to the queue and returns a future for its result.
+   *
+   * @param <T> the type of the result
+   * @param task task request.
+   * @return a future that completes when the task has run, or is cancelled if the task was
+   *     discarded because the queue was full
+   */
+  public <T> Future<T> submit(Callable<T> task) {
+    return submit(task, Priority.NORMAL);
+  }
+
+  /**
+   * Adds a task request to the queue and returns a future for its result.
+   *
+   * @param <T> the type of the result
+   * @param task task request.
+   * @param priority how soon the task runs compared to the other tasks.
+   * @return a future that completes when the task has run, or is cancelled if the task was
+   *     discarded because the queue was full
+   */
+  public <T> Future<T> submit(Callable<T> task, Priority priority) {
+    FutureTask<T> future = new FutureTask<>(task);
+    if (!execute(future, priority)) {
+      future.cancel(false);
+    }
+    return future;
+  }
+
+  /**
+   * Adds a task request to the queue and returns a future that completes when it has run.
+   *
+   * @param task task request.
+   * @return a future that completes when the task has run, with a null result, or is cancelled if
+   *     the task was discarded because the queue was full
+   */
+  public Future<?> submit(Runnable task) {
+    return submit(task, Priority.NORMAL);
+  }
+
+  /**
+   * Adds a task request to the queue and returns a future that completes when it has run.
+   *
+   * @param task task request.
+   * @param priority how soon the task runs compared to the other tasks.
+   * @return a future that completes when the task has run, with a null result, or is cancelled if
+   *     the task was discarded because the queue was full
+   */
+  public Future<?> submit(Runnable task, Priority priority) {
+    FutureTask<?> future = new FutureTask<>(task, null);
+    if (!execute(future, priority)) {
+      future.cancel(false);
+    }
+    return future;
+  }
+
+  /**
+   * Creates a new group of tasks with normal priority that run on this queue and can be waited for
+   * on their own.
+   *
+   * @return the group
+   */
+  public TaskGroup group() {
+    return group(Priority.NORMAL);
+  }
+
+  /**
+   * Creates a new group of tasks that run on this queue and can be waited for on their own.
+   *
+   * @param priority how soon the tasks of the group run compared to the other tasks.
+   * @return the group
+   */
+  public TaskGroup group(Priority priority) {
+    return new TaskGroup(priority);
+  }
+
+  /**
+   * Returns the index of the calling thread if it is a worker of this queue.
+   *
+   * @return the index of the worker, or -1 if the calling thread is not a worker of this queue
+   */
+  private int workerIndex() {
+    if (Thread.currentThread() instanceof Worker worker) {
+      int index = worker.index;
+      if (index < workers.length && workers[index] == worker) {
+        return index;
+      }
+    }
+    return -1;
   }
 
   /** Waits for all the pending work to be finished. Does not terminate the worker threads. */
   public synchronized void finish() {
     try {
-      while (pending > 0) {
+      while (pending.get() > 0) {
         this.wait();
       }
     } catch (InterruptedException e) {
@@ -97,6 +465,9 @@ public class WorkQueue {
     synchronized (tasks) {
       tasks.notifyAll();
     }
+    synchronized (idle) {
+      idle.notifyAll();
+    }
   }
 
   /**
@@ -127,13 +498,407 @@ public class WorkQueue {
     return workers.length;
   }
 
+  /**
+   * Returns true if each worker has its own deque and takes tasks from the others when it runs out.
+   *
+   * @return true if this is a work-stealing queue
+   */
+  public boolean isStealing() {
+    return deques != null;
+  }
+
+  /**
+   * Returns the maximum number of tasks waiting for a worker.
+   *
+   * @return the capacity, or 0 if there is no maximum
+   */
+  public int capacity() {
+    return capacity;
+  }
+
+  /**
+   * Returns what happens to a task queued while the queue is full.
+   *
+   * @return the policy
+   */
+  public Policy policy() {
+    return policy;
+  }
+
+  /**
+   * Returns the number of tasks waiting for a worker.
+   *
+   * @return the number of waiting tasks
+   */
+  public int depth() {
+    return depth.get();
+  }
+
+  /**
+   * Returns the largest number of tasks that have waited for a worker at once.
+   *
+   * @return the high-water mark of the queue depth
+   */
+  public int highWater() {
+    return highWater.get();
+  }
+
+  /**
+   * Returns the number of tasks queued while the queue was full, whether the caller waited, ran
+   * the task or discarded it.
+   *
+   * @return the number of tasks that found the queue full
+   */
+  public long overflows() {
+    return overflows.sum();
+  }
+
+  /**
+   * Waits until a task is available in the shared list and removes it.
+   *
+   * @return the task, or null if the queue was shut down
+   * @throws InterruptedException if interrupted while waiting
+   */
+  private Runnable take() throws InterruptedException {
+    synchronized (tasks) {
+      while (tasks.isEmpty() && !shutdown) {
+        tasks.wait(); // wait till there is something to do.
+      }
+      return shutdown ? null : tasks.pollFirst(Priority.BACKGROUND);
+    }
+  }
+
+  /**
+   * Waits until a task is available to a worker of a work-stealing queue and removes it.
+   *
+   * @param index the index of the worker
+   * @return the task, or null if the queue was shut down
+   * @throws InterruptedException if interrupted while waiting
+   */
+  private Runnable steal(int index) throws InterruptedException {
+    Runnable task = poll(index);
+    if (task != null || shutdown) {
+      return shutdown ? null : task;
+    }
+
+    synchronized (idle) {
+      searching++; // counted before looking again, so a task queued now wakes this worker.
+      try {
+        while (!shutdown && (task = poll(index)) == null) {
+          idle.wait();
+        }
+      } finally {
+        searching--;
+      }
+    }
+    return shutdown ? null : task;
+  }
+
+  /**
+   * Removes the oldest interactive task of the shared list, or else a normal task, or else a
+   * background task. A worker that has taken {@link #STARVATION_LIMIT} interactive tasks in a row
+   * looks for the other tasks first, and one that has taken that many normal tasks in a row while
+   * background tasks were waiting looks for them first.
+   *
+   * @param index the index of the worker
+   * @return the task, or null if every list is empty
+   */
+  private Runnable poll(int index) {
+    Worker worker = workers[index];
+    Runnable task;
+    if (worker.interactive < STARVATION_LIMIT) {
+      synchronized (tasks) {
+        task = tasks.pollLane(Priority.INTERACTIVE);
+      }
+      if (task != null) {
+        worker.interactive++;
+        return task;
+      }
+    }
+    worker.interactive = 0; // the other tasks get a turn.
+
+    if (worker.normal >= STARVATION_LIMIT) {
+      worker.normal = 0; // the background tasks get a turn.
+      task = poll(index, Priority.BACKGROUND);
+      if (task != null) {
+        background.decrementAndGet();
+        return task;
+      }
+    }
+    task = poll(index, Priority.NORMAL);
+    if (task != null) {
+      if (background.get() > 0) { // passed over a waiting background task.
+        worker.normal++;
+      }
+      return task;
+    }
+    worker.normal = 0;
+    task = poll(index, Priority.BACKGROUND);
+    if (task != null) {
+      background.decrementAndGet();
+      return task;
+    }
+    synchronized (tasks) {
+      return tasks.pollLane(Priority.INTERACTIVE);
+    }
+  }
+
+  /**
+   * Removes the newest task of one priority from the deque of a worker, or else the oldest one of
+   * the shared list or of another worker.
+   *
+   * @param index the index of the worker
+   * @param priority the priority of the task, which must not be interactive
+   * @return the task, or null if there are no tasks of the priority
+   */
+  private Runnable poll(int index, Priority priority) {
+    ArrayDeque<Runnable> own = deque(index, priority);
+    synchronized (own) {
+      Runnable task = own.pollLast();
+      if (task != null) {
+        return task;
+      }
+    }
+    synchronized (tasks) {
+      Runnable task = tasks.pollLane(priority);
+      if (task != null) {
+        return task;
+      }
+    }
+    for (int i = 1; i < deques.length; i++) {
+      ArrayDeque<Runnable> victim = deque((index + i) % deques.length, priority);
+      synchronized (victim) {
+        Runnable task = victim.pollFirst();
+        if (task != null) {
+          return task;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the deque of a worker of a work-stealing queue for tasks of a priority.
+   *
+   * @param index the index of the worker
+   * @param priority the priority of the tasks, which must not be interactive
+   * @return the deque
+   */
+  private ArrayDeque<Runnable> deque(int index, Priority priority) {
+    return deques[index][priority == Priority.NORMAL ? 0 : 1];
+  }
+
+  /**
+   * Tasks that run on the work queue and are waited for together, without waiting for the other
+   * tasks of the queue. Tasks of a group can queue more tasks in the same group, which the group
+   * also waits for.
+   */
+  public class TaskGroup {
+    /** Number of tasks of this group that have not finished. */
+    private final AtomicInteger pending;
+
+    /** How soon the tasks of this group run compared to the other tasks. */
+    private final Priority priority;
+
+    /**
+     * Creates a new group without any tasks.
+     *
+     * @param priority how soon the tasks of the group run compared to the other tasks.
+     */
+    private TaskGroup(Priority priority) {
+      this.pending = new AtomicInteger();
+      this.priority = priority;
+    }
+
+    /**
+     * Adds a task request of this group to the queue.
+     *
+     * @param task task request.
+     * @return true if the task was queued or run, or false if it was discarded because the queue
+     *     was full
+     */
+    public boolean execute(Runnable task) {
+      pending.incrementAndGet();
+      boolean queued =
+          WorkQueue.this.execute(
+              () -> {
+                try {
+                  task.run();
+                } finally {
+                  decrementPending();
+                }
+              },
+              priority);
+      if (!queued) {
+        decrementPending();
+      }
+      return queued;
+    }
+
+    /**
+     * Adds a task request of this group to the queue, or runs it on the calling thread if the queue
+     * is full and discards it, so the task is never lost. A task run this way that throws an
+     * exception does not stop the caller.
+     *
+     * @param task task request.
+     */
+    public void executeOrRun(Runnable task) {
+      if (!execute(task)) {
+        run(task);
+      }
+    }
+
+    /** Decrement count of pending tasks and let other threads know if pending is 0. */
+    private void decrementPending() {
+      if (pending.decrementAndGet() == 0) {
+        synchronized (this) {
+          this.notifyAll();
+        }
+      }
+    }
+
+    /**
+     * Waits for the tasks of this group to be finished. Must not be called by a worker of the
+     * queue, since the worker could be the one needed to run the tasks.
+     */
+    public synchronized void finish() {
+      try {
+        while (pending.get() > 0) {
+          this.wait();
+        }
+      } catch (InterruptedException e) {
+        log.catching(e);
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    /**
+     * Returns the number of tasks of this group that have not finished.
+     *
+     * @return the number of unfinished tasks
+     */
+    public int pending() {
+      return pending.get();
+    }
+  }
+
+  /**
+   * The shared list of tasks, with one lane per priority. Callers must hold the lock of the lanes.
+   */
+  private static class Lanes {
+    /** The tasks of each priority, oldest first. */
+    private final LinkedList<Runnable>[] lanes;
+
+    /** Number of times in a row each lane has been passed over while it had tasks. */
+    private final int[] skipped;
+
+    /** Number of tasks in every lane. */
+    private int size;
+
+    /** Creates empty lanes. */
+    @SuppressWarnings("unchecked")
+    private Lanes() {
+      int count = Priority.values().length;
+      this.lanes = (LinkedList<Runnable>[]) new LinkedList<?>[count];
+      this.skipped = new int[count];
+      this.size = 0;
+      for (int i = 0; i < count; i++) {
+        lanes[i] = new LinkedList<>();
+      }
+    }
+
+    /**
+     * Adds a task to the end of the lane of its priority.
+     *
+     * @param task the task
+     * @param priority the priority of the task
+     */
+    private void addLast(Runnable task, Priority priority) {
+      lanes[priority.ordinal()].addLast(task);
+      size++;
+    }
+
+    /**
+     * Removes the oldest task of one lane, without counting the other lanes as passed over.
+     *
+     * @param priority the priority of the lane
+     * @return the task, or null if the lane is empty
+     */
+    private Runnable pollLane(Priority priority) {
+      Runnable task = lanes[priority.ordinal()].pollFirst();
+      if (task != null) {
+        size--;
+      }
+      return task;
+    }
+
+    /**
+     * Returns true if every lane is empty.
+     *
+     * @return true if there are no tasks
+     */
+    private boolean isEmpty() {
+      return size == 0;
+    }
+
+    /**
+     * Removes the oldest task of the highest priority lane that has tasks, down to the given
+     * priority. A lane down to the given priority with tasks that has been passed over too many
+     * times in a row is served first instead. Lanes below the given priority are never served, and
+     * are not counted as passed over, so an interactive worker never takes a starving background
+     * task.
+     *
+     * @param lowest the lowest priority to take a task from
+     * @return the task, or null if the lanes down to the given priority are empty
+     */
+    private Runnable pollFirst(Priority lowest) {
+      int chosen = -1;
+      for (int i = lowest.ordinal(); i > 0 && chosen < 0; i--) {
+        if (!lanes[i].isEmpty() && skipped[i] >= STARVATION_LIMIT) {
+          chosen = i;
+        }
+      }
+      for (int i = 0; i <= lowest.ordinal() && chosen < 0; i++) {
+        if (!lanes[i].isEmpty()) {
+          chosen = i;
+        }
+      }
+      if (chosen < 0) {
+        return null;
+      }
+
+      skipped[chosen] = 0;
+      for (int i = chosen + 1; i <= lowest.ordinal(); i++) {
+        if (!lanes[i].isEmpty()) {
+          skipped[i]++;
+        }
+      }
+      size--;
+      return lanes[chosen].removeFirst();
+    }
+  }
+
   /**
    * Waits until task is available in the work queue. When work is found, it will remove it from the
    * queue and run it.
    */
   private class Worker extends Thread {
-    /** initializes a worker thread with a custom name. */
-    public Worker() {
+    /** The index of this worker. */
+    private final int index;
+
+    /** Number of interactive tasks taken in a row ahead of the other tasks. */
+    private int interactive;
+
+    /** Number of normal tasks taken in a row while background tasks were waiting. */
+    private int normal;
+
+    /**
+     * initializes a worker thread with a custom name.
+     *
+     * @param index the index of this worker
+     */
+    public Worker(int index) {
+      this.index = index;
       setName("Worker" + getName());
     }
 
@@ -143,22 +908,12 @@ public class WorkQueue {
 
       try {
         while (true) {
-          synchronized (tasks) {
-            while (tasks.isEmpty() && !shutdown) {
-              tasks.wait(); // wait till there is something to do.
-            }
-
-            if (shutdown) {
-              break;
-            }
-
-            task = tasks.removeFirst(); // get task
-          }
-          try {
-            task.run();
-          } catch (RuntimeException e) {
-            System.err.println(e);
+          task = deques == null ? take() : steal(index);
+          if (task == null) {
+            break;
           }
+          taken();
+          WorkQueue.run(task);
           decrementPending(); // task was ran successfully.
         }
       } catch (InterruptedException e) {
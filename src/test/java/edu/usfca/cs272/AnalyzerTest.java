@@ -0,0 +1,129 @@
+package edu.usfca.cs272;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import opennlp.tools.stemmer.snowball.SnowballStemmer;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that an {@link Analyzer} removes the configured words before stemming, and that removed
+ * words do not take a position in the index.
+ *
+ * @author Ravneet Singh Bhatia
+ * @version Spring 2024
+ */
+public class AnalyzerTest {
+  /** Text with stop words, short words and long words. */
+  private static final String TEXT = "The cats and THE hats, a dog in Antidisestablishment!";
+
+  /**
+   * Returns the English stems of words, without removing any of them.
+   *
+   * @param words the cleaned words
+   * @return the stems of the words, in order
+   */
+  private static List<String> stems(String... words) {
+    ArrayList<String> stems = new ArrayList<>();
+    for (String word : words) {
+      stems.add(Analyzer.ENGLISH.stem(word));
+    }
+    return stems;
+  }
+
+  /** Tests that the default analyzer stems like {@link FileStemmer}. */
+  @Test
+  public void testDefault() {
+    assertEquals(FileStemmer.listStems(TEXT), Analyzer.ENGLISH.listStems(TEXT));
+    assertEquals(FileStemmer.uniqueStems(TEXT), Analyzer.ENGLISH.uniqueStems(TEXT));
+    assertEquals(List.of(), Analyzer.ENGLISH.listStems(""));
+  }
+
+  /** Tests that stop words are removed whatever their case. */
+  @Test
+  public void testStopwords() {
+    Analyzer analyzer =
+        new Analyzer(SnowballStemmer.ALGORITHM.ENGLISH, Analyzer.ENGLISH_STOPWORDS, 0, -1);
+    assertEquals(
+        stems("cats", "hats", "dog", "antidisestablishment"), analyzer.listStems(TEXT));
+    assertNull(analyzer.stem("the"));
+    assertEquals(new TreeSet<>(stems("cats", "dog")), analyzer.uniqueStems("the cats a dog cats"));
+  }
+
+  /** Tests that words shorter than the minimum or longer than the maximum are removed. */
+  @Test
+  public void testLength() {
+    Analyzer analyzer = new Analyzer(SnowballStemmer.ALGORITHM.ENGLISH, Set.of(), 3, 4);
+    assertEquals(stems("the", "cats", "and", "the", "hats", "dog"), analyzer.listStems(TEXT));
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new Analyzer(SnowballStemmer.ALGORITHM.ENGLISH, Set.of(), 5, 4));
+  }
+
+  /**
+   * Tests that stop words read from a file are cleaned like the text.
+   *
+   * @throws IOException if unable to write or read the file
+   */
+  @Test
+  public void testReadStopwords() throws IOException {
+    Path file = Files.createTempFile("stopwords", ".txt");
+    try {
+      Files.writeString(file, "The\nAND, don't\nÉté\n", StandardCharsets.UTF_8);
+      assertEquals(Set.of("the", "and", "dont", "ete"), Analyzer.readStopwords(file));
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  /**
+   * Tests that removed words take no position, so the stem count is the number of kept stems.
+   *
+   * @throws IOException if unable to write or read the file
+   */
+  @Test
+  public void testPositions() throws IOException {
+    Analyzer analyzer =
+        new Analyzer(SnowballStemmer.ALGORITHM.ENGLISH, Analyzer.ENGLISH_STOPWORDS, 0, 8);
+    Path file = Files.createTempFile("analyzer", ".txt");
+    try {
+      Files.writeString(file, TEXT + "\nthe dog\n", StandardCharsets.UTF_8);
+      InvertedIndex index = new InvertedIndex();
+      InvertedIndexBuilder.readFile(file, index, analyzer);
+
+      String location = file.toString();
+      assertEquals(Map.of(location, 4), index.getCounts());
+      assertEquals(Set.of(1), index.getPositions(stems("cats").getFirst(), location));
+      assertEquals(Set.of(3, 4), index.getPositions(stems("dog").getFirst(), location));
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  /** Tests that stems are only cached once the stem cache is given a capacity. */
+  @Test
+  public void testStemCache() {
+    Analyzer analyzer = new Analyzer(SnowballStemmer.ALGORITHM.PORTER, Set.of(), 0, -1);
+    StemCache cache = analyzer.stemmer();
+    List<String> expected = analyzer.listStems("cats cats hats");
+    assertEquals(0, cache.size());
+    assertEquals(0L, cache.hits() + cache.misses());
+
+    cache.setCapacity(1);
+    assertEquals(expected, analyzer.listStems("cats cats hats"));
+    assertEquals(1, cache.size());
+    assertEquals(1L, cache.hits());
+    assertEquals(2L, cache.misses());
+  }
+}
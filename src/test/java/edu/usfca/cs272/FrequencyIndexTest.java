@@ -0,0 +1,199 @@
+package edu.usfca.cs272;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that a {@link FrequencyIndex} holds the same locations, frequencies and counts as an
+ * {@link InvertedIndex} built the same way, and searches the same.
+ *
+ * @author Ravneet Singh Bhatia
+ * @version Spring 2024
+ */
+public class FrequencyIndexTest {
+  /** Stems of a few small documents, some shared between documents. */
+  private static final List<List<String>> DOCUMENTS =
+      List.of(
+          List.of("appl", "banana", "cherri", "appl"),
+          List.of("banana", "date", "elderberri"),
+          List.of("fig", "appl", "grape", "appl", "appl"),
+          List.of());
+
+  /**
+   * Adds every document to an index, the first two stem by stem and the rest through local indexes.
+   *
+   * @param index the index to add to
+   */
+  private static void addAll(MutableIndex index) {
+    for (int i = 0; i < DOCUMENTS.size(); i++) {
+      String location = "doc" + i + ".txt";
+      if (i < 2) {
+        index.addAll(location, DOCUMENTS.get(i));
+      } else {
+        InvertedIndex local = new InvertedIndex(i % 2 == 1);
+        local.addAll(location, DOCUMENTS.get(i));
+        index.moveIndex(local);
+      }
+    }
+  }
+
+  /**
+   * Asserts that a frequency index holds the same stems, locations, frequencies and counts as an
+   * index with positions.
+   *
+   * @param expected the index to compare against
+   * @param actual the index being tested
+   */
+  private static void assertSameFrequencies(PositionalIndex expected, FrequencyIndex actual) {
+    assertEquals(expected.getWords(), actual.getWords());
+    assertEquals(expected.getCounts(), actual.getCounts());
+    assertEquals(expected.size(), actual.size());
+    assertEquals(expected.sizeOfCounts(), actual.sizeOfCounts());
+    for (String word : expected.getWords()) {
+      assertEquals(expected.getLocations(word), actual.getLocations(word));
+      assertEquals(expected.numOfLocations(word), actual.numOfLocations(word));
+      for (String location : expected.getCounts().keySet()) {
+        assertEquals(expected.hasLocation(word, location), actual.hasLocation(word, location));
+        assertEquals(
+            expected.getPositions(word, location).size(), actual.numOfPositions(word, location));
+      }
+    }
+  }
+
+  /** Tests that stems added directly and through local indexes keep their frequencies. */
+  @Test
+  public void testAdd() {
+    InvertedIndex expected = new InvertedIndex();
+    FrequencyIndex actual = new FrequencyIndex();
+    addAll(expected);
+    addAll(actual);
+    assertSameFrequencies(expected, actual);
+
+    assertEquals(3, actual.numOfPositions("appl", "doc2.txt"));
+    assertFalse(actual.hasLocation("appl", "doc1.txt"));
+    assertEquals(expected.hasCount("doc3.txt"), actual.hasCount("doc3.txt"));
+    assertFalse(actual.isEmpty());
+  }
+
+  /** Tests that copying an index adds its frequencies and leaves it unchanged. */
+  @Test
+  public void testAddIndex() {
+    InvertedIndex local = new InvertedIndex();
+    local.addAll("doc.txt", List.of("appl", "appl", "banana"));
+
+    FrequencyIndex actual = new FrequencyIndex();
+    actual.addIndex(local);
+    assertEquals(2, actual.numOfPositions("appl", "doc.txt"));
+    assertEquals(Map.of("doc.txt", 3), actual.getCounts());
+    assertEquals(2, local.numOfPositions("appl", "doc.txt"));
+  }
+
+  /** Tests that moving an index adds its frequencies and empties its postings. */
+  @Test
+  public void testMoveIndex() {
+    InvertedIndex local = new InvertedIndex();
+    local.addAll("doc.txt", List.of("appl", "appl", "banana"));
+
+    FrequencyIndex actual = new FrequencyIndex();
+    actual.moveIndex(local);
+    assertEquals(2, actual.numOfPositions("appl", "doc.txt"));
+    assertEquals(Map.of("doc.txt", 3), actual.getCounts());
+    assertTrue(local.isEmpty());
+  }
+
+  /**
+   * Tests that documents added to a thread-safe index from several threads at once are all kept.
+   *
+   * @throws InterruptedException if interrupted while waiting for the threads
+   */
+  @Test
+  public void testThreadSafe() throws InterruptedException {
+    InvertedIndex expected = new InvertedIndex();
+    ThreadSafeFrequencyIndex actual = new ThreadSafeFrequencyIndex();
+    Thread[] threads = new Thread[8];
+    for (int i = 0; i < threads.length; i++) {
+      int thread = i;
+      threads[i] =
+          new Thread(
+              () -> {
+                for (int j = 0; j < 50; j++) {
+                  InvertedIndex local = new InvertedIndex();
+                  local.addAll(thread + "-" + j + ".txt", DOCUMENTS.get(j % DOCUMENTS.size()));
+                  actual.moveIndex(local);
+                  actual.freeze();
+                }
+              });
+      threads[i].start();
+      for (int j = 0; j < 50; j++) {
+        expected.addAll(thread + "-" + j + ".txt", DOCUMENTS.get(j % DOCUMENTS.size()));
+      }
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertSameFrequencies(expected, actual);
+    assertNotNull(actual.freeze());
+    assertEquals(
+        expected.partialSearch(Set.of("b")).toString(),
+        actual.partialSearch(Set.of("b")).toString());
+  }
+
+  /** Tests that searches before and after freezing return the same scores as a plain index. */
+  @Test
+  public void testSearch() {
+    InvertedIndex expected = new InvertedIndex();
+    FrequencyIndex actual = new FrequencyIndex();
+    addAll(expected);
+    addAll(actual);
+
+    Set<String> queries = Set.of("appl", "banana", "d");
+    for (boolean frozen : new boolean[] {false, true}) {
+      if (frozen) {
+        expected.freeze();
+        assertNotNull(actual.freeze());
+        assertNotNull(actual.frozen());
+      }
+      // scores have no equals method, but print every field.
+      assertEquals(
+          expected.exactSearch(queries).toString(), actual.exactSearch(queries).toString());
+      assertEquals(
+          expected.partialSearch(queries).toString(), actual.partialSearch(queries).toString());
+      assertEquals(
+          expected.search(queries, true, 2, 1).toString(),
+          actual.search(queries, true, 2, 1).toString());
+    }
+
+    actual.add("appl", "doc4.txt", 1);
+    assertNull(actual.frozen());
+    assertEquals(3, actual.exactSearch(Set.of("appl")).size());
+  }
+
+  /** Tests that the JSON has the frequency of each stem in each location. */
+  @Test
+  public void testJson() {
+    InvertedIndex expected = new InvertedIndex();
+    FrequencyIndex actual = new FrequencyIndex();
+    addAll(expected);
+    addAll(actual);
+
+    TreeMap<String, TreeMap<String, Integer>> frequencies = new TreeMap<>();
+    for (String word : expected.getWords()) {
+      TreeMap<String, Integer> locations = new TreeMap<>();
+      for (String location : expected.getLocations(word)) {
+        locations.put(location, expected.numOfPositions(word, location));
+      }
+      frequencies.put(word, locations);
+    }
+    assertEquals(JsonWriter.writeFrequencies(frequencies), actual.toString());
+    assertEquals("{\n}", new FrequencyIndex().toString());
+  }
+}
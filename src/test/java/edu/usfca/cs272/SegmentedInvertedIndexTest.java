@@ -0,0 +1,150 @@
+package edu.usfca.cs272;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that a {@link SegmentedInvertedIndex} holds exactly what an {@link InvertedIndex} built the
+ * same way holds, including documents that are added to after they were flushed.
+ *
+ * @author Ravneet Singh Bhatia
+ * @version Spring 2024
+ */
+public class SegmentedInvertedIndexTest {
+  /**
+   * Asserts that two indexes hold the same stems, locations, positions and counts, and return the
+   * same search results.
+   *
+   * @param expected the index to compare against
+   * @param actual the index being tested
+   */
+  private static void assertSameIndex(PositionalIndex expected, PositionalIndex actual) {
+    assertEquals(expected.toString(), actual.toString());
+    assertEquals(expected.getWords(), actual.getWords());
+    assertEquals(expected.getCounts(), actual.getCounts());
+    assertEquals(expected.size(), actual.size());
+    for (String word : expected.getWords()) {
+      assertEquals(expected.getLocations(word), actual.getLocations(word), word);
+      assertEquals(expected.numOfLocations(word), actual.numOfLocations(word), word);
+      for (String location : expected.getLocations(word)) {
+        assertEquals(expected.getPositions(word, location), actual.getPositions(word, location));
+        assertEquals(
+            expected.numOfPositions(word, location), actual.numOfPositions(word, location));
+      }
+    }
+
+    // scores have no equals method, but print every field.
+    Set<String> queries = Set.of("appl", "b", "fig");
+    assertEquals(
+        expected.exactSearch(queries).toString(), actual.exactSearch(queries).toString());
+    assertEquals(
+        expected.partialSearch(queries).toString(), actual.partialSearch(queries).toString());
+  }
+
+  /**
+   * Adds the same documents to both indexes, one document at a time.
+   *
+   * @param expected the plain index
+   * @param actual the segmented index
+   */
+  private static void addDocuments(InvertedIndex expected, SegmentedInvertedIndex actual) {
+    List<List<String>> documents =
+        List.of(
+            List.of("appl", "banana", "appl"),
+            List.of("banana", "cherri"),
+            List.of("fig", "appl", "grape"),
+            List.of("date", "banana", "appl", "appl"),
+            List.of("elderberri"));
+    for (int i = 0; i < documents.size(); i++) {
+      expected.addAll("doc" + i + ".txt", documents.get(i));
+      actual.addAll("doc" + i + ".txt", documents.get(i));
+    }
+  }
+
+  /** Tests that flushing every document into its own segment changes nothing. */
+  @Test
+  public void testFlushed() {
+    InvertedIndex expected = new InvertedIndex();
+    SegmentedInvertedIndex actual = new SegmentedInvertedIndex(1);
+    addDocuments(expected, actual);
+    assertEquals(4, actual.segments().size());
+    assertSameIndex(expected, actual);
+  }
+
+  /** Tests that adding to documents that were already flushed keeps every position. */
+  @Test
+  public void testLateAdditions() {
+    InvertedIndex expected = new InvertedIndex();
+    SegmentedInvertedIndex actual = new SegmentedInvertedIndex(1);
+    addDocuments(expected, actual);
+
+    for (MutableIndex index : List.<MutableIndex>of(expected, actual)) {
+      index.add("appl", "doc0.txt", 10);
+      index.add("zucchini", "doc0.txt", 11);
+      index.add("banana", "doc1.txt", 7);
+      InvertedIndex local = new InvertedIndex();
+      local.add("appl", "doc2.txt", 9);
+      local.add("fig", "doc5.txt", 1);
+      index.moveIndex(local);
+    }
+    assertSameIndex(expected, actual);
+
+    expected.freeze();
+    actual.freeze();
+    assertSameIndex(expected, actual);
+  }
+
+  /** Tests that adding to a flushed document only buffers the new postings. */
+  @Test
+  public void testLateAdditionsKeepSegments() {
+    InvertedIndex expected = new InvertedIndex();
+    SegmentedInvertedIndex actual = new SegmentedInvertedIndex(1);
+    addDocuments(expected, actual);
+    List<IndexSegment> before = actual.segments();
+
+    expected.add("appl", "doc0.txt", 10);
+    actual.add("appl", "doc0.txt", 10);
+    expected.add("kiwi", "doc6.txt", 1);
+    actual.add("kiwi", "doc6.txt", 1); // flushes the buffer, which holds doc0 and doc4.
+
+    List<IndexSegment> after = actual.segments();
+    assertEquals(before.size() + 1, after.size());
+    assertEquals(before, after.subList(0, before.size()));
+    assertEquals(0, after.get(after.size() - 1).level());
+    assertEquals(2, after.get(after.size() - 1).size());
+    assertTrue(actual.hasPosition("appl", "doc0.txt", 10));
+    assertSameIndex(expected, actual);
+  }
+
+  /**
+   * Tests that a frozen copy keeps what the buffer held when it was frozen, and is dropped once
+   * the index changes.
+   */
+  @Test
+  public void testFreezeCopiesBuffer() {
+    InvertedIndex expected = new InvertedIndex();
+    SegmentedInvertedIndex actual = new SegmentedInvertedIndex(100); // everything stays buffered.
+    addDocuments(expected, actual);
+    assertEquals(0, actual.segments().size());
+
+    Set<String> queries = Set.of("appl", "kiwi");
+    FrozenIndex frozen = actual.freeze();
+    String before = frozen.exactSearch(queries).toString();
+    assertEquals(expected.exactSearch(queries).toString(), before);
+
+    expected.add("appl", "doc0.txt", 10);
+    actual.add("appl", "doc0.txt", 10);
+    expected.add("kiwi", "doc1.txt", 3);
+    actual.add("kiwi", "doc1.txt", 3);
+    assertNull(actual.frozen());
+    assertEquals(before, frozen.exactSearch(queries).toString());
+    assertEquals(
+        expected.exactSearch(queries).toString(), actual.freeze().exactSearch(queries).toString());
+    assertSameIndex(expected, actual);
+  }
+}
@@ -0,0 +1,229 @@
+package edu.usfca.cs272;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+import opennlp.tools.stemmer.snowball.SnowballStemmer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+/**
+ * Tests that splitting a large file into chunks read by several workers builds exactly the same
+ * index as reading the file in one pass, even when a full work queue drops tasks.
+ *
+ * @author Ravneet Singh Bhatia
+ * @version Spring 2024
+ */
+public class ThreadSafeInvertedIndexBuilderTest {
+  /** Number of bytes per chunk, small enough that the test files are split. */
+  private static final int CHUNK = 100;
+
+  /** Words the test files are made of, some of which stem to the same stem. */
+  private static final String[] WORDS = {
+    "apple", "apples", "Banana", "cherry", "cherries", "date", "élan", "naïve", "running", "runs",
+    "ran", "fig", "grape", "GRAPES", "don't", "x2", "42"
+  };
+
+  /** Directory holding the test files. */
+  private Path directory;
+
+  /**
+   * Creates the directory for the test files.
+   *
+   * @throws IOException if unable to create the directory
+   */
+  @BeforeEach
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("chunks");
+  }
+
+  /**
+   * Deletes the test files.
+   *
+   * @throws IOException if unable to delete the files
+   */
+  @AfterEach
+  public void tearDown() throws IOException {
+    try (Stream<Path> paths = Files.walk(directory)) {
+      for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+        Files.delete(path);
+      }
+    }
+  }
+
+  /**
+   * Writes random lines of words to a file.
+   *
+   * @param name the name of the file
+   * @param lines the number of lines
+   * @param seed the seed of the random words
+   * @return the path of the file
+   * @throws IOException if unable to write the file
+   */
+  private Path write(String name, int lines, long seed) throws IOException {
+    Random random = new Random(seed);
+    StringBuilder text = new StringBuilder();
+    for (int line = 0; line < lines; line++) {
+      int words = random.nextInt(12);
+      for (int word = 0; word < words; word++) {
+        text.append(WORDS[random.nextInt(WORDS.length)]).append(word % 3 == 0 ? ", " : " ");
+      }
+      text.append('\n');
+    }
+    Path file = directory.resolve(name);
+    Files.writeString(file, text, StandardCharsets.UTF_8);
+    return file;
+  }
+
+  /**
+   * Asserts that building a file with chunks writes the same JSON, counts and index as reading it
+   * in one pass.
+   *
+   * @param file the file to build
+   * @param reduce true if the workers should keep their own indexes
+   * @param compressed true if the postings should be stored compressed
+   * @throws IOException if unable to read the file
+   */
+  private void assertSameBuild(Path file, boolean reduce, boolean compressed) throws IOException {
+    assertTrue(Files.size(file) > 2 * CHUNK, "The file must be large enough to be split.");
+
+    InvertedIndex expected = new InvertedIndex();
+    InvertedIndexBuilder.readFile(file, expected);
+
+    ThreadSafeInvertedIndex actual = new ThreadSafeInvertedIndex(compressed);
+    WorkQueue queue = new WorkQueue(3);
+    try {
+      new ThreadSafeInvertedIndexBuilder(actual, queue, reduce, Analyzer.ENGLISH, CHUNK)
+          .build(file);
+    } finally {
+      queue.join();
+    }
+
+    Path expectedJson = directory.resolve("expected.json");
+    Path actualJson = directory.resolve("actual.json");
+    expected.toJson(expectedJson);
+    actual.toJson(actualJson);
+    assertEquals(Files.readString(expectedJson), Files.readString(actualJson));
+    assertEquals(expected.getCounts(), actual.getCounts());
+    assertEquals(expected.toString(), actual.toString());
+  }
+
+  /**
+   * Tests a file split into many chunks.
+   *
+   * @throws IOException if unable to read or write the file
+   */
+  @Test
+  @Timeout(30)
+  public void testManyChunks() throws IOException {
+    Path file = write("many.txt", 200, 1);
+    assertSameBuild(file, false, false);
+    assertSameBuild(file, false, true);
+    assertSameBuild(file, true, false);
+  }
+
+  /**
+   * Tests a file with a line break exactly where the first chunk would end, and one right before
+   * it.
+   *
+   * @throws IOException if unable to read or write the file
+   */
+  @Test
+  @Timeout(30)
+  public void testSplitAtLineBreak() throws IOException {
+    String line = "apple banana cherry running ";
+    String first = (line.repeat(4) + "x".repeat(CHUNK)).substring(0, CHUNK);
+    String rest = (line + "\n").repeat(20);
+
+    Path exact = directory.resolve("exact.txt");
+    Files.writeString(exact, first + "\n" + rest, StandardCharsets.UTF_8);
+    assertEquals('\n', Files.readAllBytes(exact)[CHUNK]);
+    assertSameBuild(exact, false, false);
+
+    Path before = directory.resolve("before.txt");
+    Files.writeString(before, first.substring(1) + "\n" + rest, StandardCharsets.UTF_8);
+    assertEquals('\n', Files.readAllBytes(before)[CHUNK - 1]);
+    assertSameBuild(before, false, false);
+  }
+
+  /**
+   * Tests that the chunks before a chunk that fails are still added, numbered as if the file ended
+   * there.
+   *
+   * @throws IOException if unable to read or write the file
+   */
+  @Test
+  @Timeout(30)
+  public void testFailedChunk() throws IOException {
+    // every line is one chunk, since the first line break after a chunk size ends it.
+    String line = ("apple banana cherry running " + "x".repeat(CHUNK)).substring(0, CHUNK) + "\n";
+    String failing = ("boom " + "x".repeat(CHUNK)).substring(0, CHUNK) + "\n";
+    Path file = directory.resolve("failing.txt");
+    Files.writeString(file, line.repeat(3) + failing + line.repeat(3), StandardCharsets.UTF_8);
+
+    Analyzer analyzer =
+        new Analyzer(SnowballStemmer.ALGORITHM.ENGLISH, Set.of(), 0, -1) {
+          @Override
+          public String stem(String word) {
+            if (word.equals("boom")) {
+              throw new IllegalStateException("Unable to stem " + word);
+            }
+            return super.stem(word);
+          }
+        };
+
+    InvertedIndex expected = new InvertedIndex();
+    expected.addAll(file.toString(), analyzer.listStems(line.repeat(3)));
+
+    ThreadSafeInvertedIndex actual = new ThreadSafeInvertedIndex();
+    WorkQueue queue = new WorkQueue(3);
+    try {
+      new ThreadSafeInvertedIndexBuilder(actual, queue, false, analyzer, CHUNK).build(file);
+    } finally {
+      queue.join();
+    }
+    assertEquals(expected.getCounts(), actual.getCounts());
+    assertEquals(expected.toString(), actual.toString());
+  }
+
+  /**
+   * Tests that a full queue that drops tasks still indexes every directory, file and chunk.
+   *
+   * @throws IOException if unable to read or write the files
+   */
+  @Test
+  @Timeout(30)
+  public void testDroppingQueue() throws IOException {
+    for (int i = 0; i < 10; i++) {
+      write("small" + i + ".txt", 2, i);
+    }
+    Files.createDirectories(directory.resolve("nested"));
+    write("nested/large.txt", 100, 10);
+
+    InvertedIndex expected = new InvertedIndex();
+    new InvertedIndexBuilder(expected).build(directory);
+
+    for (boolean reduce : new boolean[] {false, true}) {
+      ThreadSafeInvertedIndex actual = new ThreadSafeInvertedIndex();
+      WorkQueue queue = new WorkQueue(3, false, 1, WorkQueue.Policy.DROP);
+      try {
+        new ThreadSafeInvertedIndexBuilder(actual, queue, reduce, Analyzer.ENGLISH, CHUNK)
+            .build(directory);
+      } finally {
+        queue.join();
+      }
+      assertEquals(expected.getCounts(), actual.getCounts());
+      assertEquals(expected.toString(), actual.toString());
+    }
+  }
+}
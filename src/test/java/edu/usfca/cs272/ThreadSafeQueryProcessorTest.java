@@ -0,0 +1,65 @@
+package edu.usfca.cs272;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+/**
+ * Tests that searches of a {@link ThreadSafeQueryProcessor} run on the work queue without waiting
+ * for the other tasks of the queue.
+ *
+ * @author Ravneet Singh Bhatia
+ * @version Spring 2024
+ */
+public class ThreadSafeQueryProcessorTest {
+  /** Number of slow tasks queued ahead of the search. */
+  private static final int TASKS = 100;
+
+  /**
+   * Tests that a search queued behind a long group of background tasks finishes while most of the
+   * group is still waiting, and finds the same results as searching the index directly.
+   *
+   * @throws InterruptedException if interrupted while a task sleeps
+   */
+  @Test
+  @Timeout(30)
+  public void testSearchAheadOfGroup() throws InterruptedException {
+    InvertedIndex index = new InvertedIndex();
+    index.addAll("a.txt", Analyzer.ENGLISH.listStems("apple banana apples"));
+    index.addAll("b.txt", Analyzer.ENGLISH.listStems("bananas cherries"));
+
+    WorkQueue queue = new WorkQueue(2);
+    try {
+      ThreadSafeQueryProcessor processor = new ThreadSafeQueryProcessor(index, queue, true);
+      WorkQueue.TaskGroup crawl = queue.group(WorkQueue.Priority.BACKGROUND);
+      AtomicInteger done = new AtomicInteger();
+      for (int i = 0; i < TASKS; i++) {
+        crawl.execute(
+            () -> {
+              try {
+                Thread.sleep(20);
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+              done.incrementAndGet();
+            });
+      }
+
+      String query = "Apples and bananas";
+      var scores = processor.search(query, 10, 0);
+      int finished = done.get();
+      assertTrue(finished < TASKS / 2, "The search waited for " + finished + " crawl tasks.");
+      assertEquals(
+          index.search(Analyzer.ENGLISH.uniqueStems(query), true, 10, 0).toString(),
+          scores.toString());
+
+      crawl.finish();
+      assertEquals(TASKS, done.get());
+    } finally {
+      queue.join();
+    }
+  }
+}
@@ -0,0 +1,110 @@
+package edu.usfca.cs272;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that a {@link WordTokenizer} splits text into exactly the same words as cleaning and
+ * splitting it with the regular expressions of {@link FileStemmer}.
+ *
+ * @author Ravneet Singh Bhatia
+ * @version Spring 2024
+ */
+public class WordTokenizerTest {
+  /**
+   * Pieces of text that are joined at random, including whitespace that {@link String#strip()}
+   * does not remove, combining marks, characters that change length when lowercased or
+   * normalized, and characters outside the basic multilingual plane.
+   */
+  private static final String[] PIECES = {
+    "a", "Word", "ZED", "I", " ", "  ", "\t", "\u000B", "\f", "\u00E9", "\u00FC", "\u00DC",
+    "\u001C", "12", "'", "-", "\u00A0", "\u2007", "\u2028", "\u0085", "\u3000", "\u65E5\u672C",
+    "x\u0301", "\uFEFF", "\u03A3\u0391\u03A3", "\u03C3", "\u03A3", "\u1F48\u0394\u03A5\u03A3",
+    "\u0130", "\uFB01", "\u216B", "\uD801\uDC00", "\uD835\uDC00", "\u212A", "\u212B",
+    "\u0345", "\u01C5", "\u00DF", "\u1E9E", "\uFF8A", "\uAC00", "\u0316\u0300", "\u0149",
+    "\u02B0"
+  };
+
+  /** The tokenizer being tested, reused by every assertion as the builders reuse it. */
+  private final WordTokenizer tokenizer = new WordTokenizer();
+
+  /**
+   * Asserts that the tokenizer returns the same words as the regular expressions.
+   *
+   * @param text the text to split
+   */
+  private void assertSameWords(String text) {
+    List<String> expected = Arrays.asList(FileStemmer.split(FileStemmer.clean(text)));
+    ArrayList<String> actual = new ArrayList<>();
+    tokenizer.parse(text, actual::add);
+    assertEquals(expected, actual, () -> "Words of " + text.codePoints().boxed().toList());
+  }
+
+  /** Tests empty and blank text. */
+  @Test
+  public void testEmpty() {
+    assertSameWords("");
+    assertSameWords(" ");
+    assertSameWords(" \t\n\r\f ");
+    assertSameWords("　 ");
+    assertSameWords("\u001C");
+    assertSameWords("\u001C word");
+    assertSameWords("123 456");
+  }
+
+  /** Tests plain ASCII words, case and punctuation. */
+  @Test
+  public void testAscii() {
+    assertSameWords("Hello, World!");
+    assertSameWords("  leading and trailing  ");
+    assertSameWords("one\ttwo\nthree\r\nfour\u000Bfive\ffive");
+    assertSameWords("ABC-def_ghi.jkl");
+    assertSameWords("x".repeat(100) + " " + "Y".repeat(70));
+  }
+
+  /** Tests that apostrophes and hyphens join the letters around them. */
+  @Test
+  public void testApostrophes() {
+    assertSameWords("don't won't it's");
+    assertSameWords("'quoted' rock'n'roll");
+    assertSameWords("o'É ’tis");
+    assertSameWords("' '' '''");
+  }
+
+  /** Tests that digits are removed and join the letters around them. */
+  @Test
+  public void testDigits() {
+    assertSameWords("abc123def 42 x2 2x");
+    assertSameWords("١٢ ٣x");
+    assertSameWords("1 2 3 a");
+  }
+
+  /** Tests letters with accents, other scripts, and case rules outside ASCII. */
+  @Test
+  public void testUnicode() {
+    assertSameWords("café naïve ÉLAN");
+    assertSameWords("ΟΔΥΣΣΕΎΣ Σ");
+    assertSameWords("Straße ẞ İstanbul ﬁle");
+    assertSameWords("日本語 가나 ﾊﾞ");
+    assertSameWords("𐐀𐐁 𝐀");
+    assertSameWords("a b c　d e\u0085f");
+  }
+
+  /** Tests random mixes of the pieces against the regular expressions. */
+  @Test
+  public void testRandom() {
+    Random random = new Random(272);
+    for (int i = 0; i < 20000; i++) {
+      StringBuilder text = new StringBuilder();
+      for (int n = random.nextInt(12); n > 0; n--) {
+        text.append(PIECES[random.nextInt(PIECES.length)]);
+      }
+      assertSameWords(text.toString());
+    }
+  }
+}
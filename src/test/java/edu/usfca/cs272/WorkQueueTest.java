@@ -0,0 +1,337 @@
+package edu.usfca.cs272;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+/**
+ * Tests what happens to tasks queued into a full bounded {@link WorkQueue} under each {@link
+ * WorkQueue.Policy}, and the order tasks of different {@link WorkQueue.Priority} levels run in.
+ *
+ * @author Ravneet Singh Bhatia
+ * @version Spring 2024
+ */
+public class WorkQueueTest {
+  /** Lets the task keeping the only worker busy finish. */
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  /** The queue being tested. */
+  private WorkQueue queue;
+
+  /** Lets the worker finish and stops the queue. */
+  @AfterEach
+  public void tearDown() {
+    release.countDown();
+    if (queue != null) {
+      queue.join();
+    }
+  }
+
+  /**
+   * Keeps the only worker of the queue busy until {@link #release} is counted down.
+   *
+   * @throws InterruptedException if interrupted while waiting for the worker
+   */
+  private void occupy() throws InterruptedException {
+    CountDownLatch started = new CountDownLatch(1);
+    queue.execute(
+        () -> {
+          started.countDown();
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        });
+    started.await();
+  }
+
+  /**
+   * Creates a queue with one worker and room for one waiting task, keeps the worker busy until
+   * {@link #release} is counted down, and fills the queue.
+   *
+   * @param policy what happens to a task queued while the queue is full
+   * @param ran counts the tasks that have run
+   * @throws InterruptedException if interrupted while waiting for the worker
+   */
+  private void fill(WorkQueue.Policy policy, AtomicInteger ran) throws InterruptedException {
+    queue = new WorkQueue(1, false, 1, policy);
+    occupy();
+    assertTrue(queue.execute(ran::incrementAndGet));
+    assertEquals(1, queue.depth());
+  }
+
+  /**
+   * Tests that a caller waits for room in a full blocking queue.
+   *
+   * @throws InterruptedException if interrupted while waiting
+   */
+  @Test
+  @Timeout(30)
+  public void testBlock() throws InterruptedException {
+    AtomicInteger ran = new AtomicInteger();
+    fill(WorkQueue.Policy.BLOCK, ran);
+
+    AtomicBoolean queued = new AtomicBoolean();
+    Thread caller = new Thread(() -> queued.set(queue.execute(ran::incrementAndGet)));
+    caller.start();
+    caller.join(200);
+    assertTrue(caller.isAlive(), "The caller did not wait for room.");
+
+    release.countDown();
+    caller.join();
+    assertTrue(queued.get());
+    queue.finish();
+    assertEquals(2, ran.get());
+    assertEquals(1, queue.overflows());
+  }
+
+  /**
+   * Tests that a caller interrupted while waiting for room queues its task instead of dropping it,
+   * and keeps its interrupt status.
+   *
+   * @throws InterruptedException if interrupted while waiting
+   */
+  @Test
+  @Timeout(30)
+  public void testBlockInterrupted() throws InterruptedException {
+    AtomicInteger ran = new AtomicInteger();
+    fill(WorkQueue.Policy.BLOCK, ran);
+
+    AtomicBoolean queued = new AtomicBoolean();
+    AtomicBoolean interrupted = new AtomicBoolean();
+    Thread caller =
+        new Thread(
+            () -> {
+              queued.set(queue.execute(ran::incrementAndGet));
+              interrupted.set(Thread.currentThread().isInterrupted());
+            });
+    caller.start();
+    caller.join(200);
+    caller.interrupt();
+    caller.join();
+    assertTrue(queued.get());
+    assertTrue(interrupted.get());
+    assertEquals(2, queue.depth());
+
+    release.countDown();
+    queue.finish();
+    assertEquals(2, ran.get());
+
+    // the task queued past capacity gave its place back, so the queue holds one task again.
+    CountDownLatch busy = new CountDownLatch(1);
+    queue.execute(
+        () -> {
+          try {
+            busy.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        });
+    while (queue.depth() > 0) {
+      Thread.onSpinWait();
+    }
+    assertTrue(queue.execute(ran::incrementAndGet));
+    Thread full = new Thread(() -> queue.execute(ran::incrementAndGet));
+    full.start();
+    full.join(200);
+    assertTrue(full.isAlive(), "The queue had room for more than its capacity.");
+    busy.countDown();
+    full.join();
+  }
+
+  /**
+   * Tests that a worker queuing into a full blocking queue runs the task itself instead of waiting.
+   *
+   * @throws InterruptedException if interrupted while waiting
+   */
+  @Test
+  @Timeout(30)
+  public void testBlockFromWorker() throws InterruptedException {
+    queue = new WorkQueue(1, false, 1, WorkQueue.Policy.BLOCK);
+    AtomicReference<Thread> worker = new AtomicReference<>();
+    AtomicReference<Thread> runner = new AtomicReference<>();
+    queue.execute(
+        () -> {
+          worker.set(Thread.currentThread());
+          queue.execute(() -> {}); // fills the queue, since the only worker is busy.
+          queue.execute(() -> runner.set(Thread.currentThread()));
+        });
+    queue.finish();
+    assertSame(worker.get(), runner.get());
+  }
+
+  /**
+   * Tests that a caller runs its task itself when the queue is full.
+   *
+   * @throws InterruptedException if interrupted while waiting
+   */
+  @Test
+  @Timeout(30)
+  public void testCallerRuns() throws InterruptedException {
+    AtomicInteger ran = new AtomicInteger();
+    fill(WorkQueue.Policy.CALLER_RUNS, ran);
+
+    AtomicReference<Thread> runner = new AtomicReference<>();
+    assertTrue(queue.execute(() -> runner.set(Thread.currentThread())));
+    assertSame(Thread.currentThread(), runner.get());
+    assertEquals(1, queue.depth());
+  }
+
+  /**
+   * Tests that tasks run by their caller stop nesting inside each other at the limit, and the rest
+   * are queued past the capacity and still run.
+   *
+   * @throws InterruptedException if interrupted while waiting
+   */
+  @Test
+  @Timeout(30)
+  public void testCallerRunsLimit() throws InterruptedException {
+    AtomicInteger ran = new AtomicInteger();
+    fill(WorkQueue.Policy.CALLER_RUNS, ran);
+
+    int tasks = 50;
+    ThreadLocal<int[]> running = ThreadLocal.withInitial(() -> new int[1]);
+    AtomicInteger deepest = new AtomicInteger();
+    AtomicInteger chained = new AtomicInteger();
+    Runnable[] chain = new Runnable[1];
+    chain[0] =
+        () -> {
+          int[] depth = running.get();
+          depth[0]++;
+          deepest.accumulateAndGet(depth[0], Math::max);
+          if (chained.incrementAndGet() < tasks) {
+            queue.execute(chain[0]);
+          }
+          depth[0]--;
+        };
+    assertTrue(queue.execute(chain[0]));
+    assertEquals(WorkQueue.CALLER_RUNS_LIMIT, deepest.get());
+
+    release.countDown();
+    queue.finish();
+    assertEquals(tasks, chained.get());
+    assertTrue(deepest.get() <= WorkQueue.CALLER_RUNS_LIMIT + 1);
+  }
+
+  /**
+   * Tests that a task queued into a full dropping queue is discarded and never runs.
+   *
+   * @throws InterruptedException if interrupted while waiting
+   */
+  @Test
+  @Timeout(30)
+  public void testDrop() throws InterruptedException {
+    AtomicInteger ran = new AtomicInteger();
+    fill(WorkQueue.Policy.DROP, ran);
+
+    AtomicBoolean dropped = new AtomicBoolean(true);
+    assertFalse(queue.execute(() -> dropped.set(false)));
+    assertTrue(queue.submit(() -> dropped.set(false)).isCancelled());
+    assertEquals(2, queue.overflows());
+
+    release.countDown();
+    queue.finish();
+    assertTrue(dropped.get());
+    assertEquals(1, ran.get());
+  }
+
+  /**
+   * Tests that a background task behind a steady stream of normal tasks runs once it has been
+   * passed over {@link WorkQueue#STARVATION_LIMIT} times.
+   *
+   * @throws InterruptedException if interrupted while waiting
+   */
+  @Test
+  @Timeout(30)
+  public void testStarvation() throws InterruptedException {
+    queue = new WorkQueue(1);
+    occupy();
+
+    List<String> order = Collections.synchronizedList(new ArrayList<>());
+    queue.execute(() -> order.add("background"), WorkQueue.Priority.BACKGROUND);
+    for (int i = 0; i < WorkQueue.STARVATION_LIMIT * 2; i++) {
+      queue.execute(() -> order.add("normal"), WorkQueue.Priority.NORMAL);
+    }
+    release.countDown();
+    queue.finish();
+    assertEquals(WorkQueue.STARVATION_LIMIT, order.indexOf("background"));
+  }
+
+  /**
+   * Tests that a worker looking for interactive tasks takes them ahead of a starving background
+   * task, which still runs right after.
+   *
+   * @throws InterruptedException if interrupted while waiting
+   */
+  @Test
+  @Timeout(30)
+  public void testInteractiveAheadOfStarving() throws InterruptedException {
+    queue = new WorkQueue(1, true);
+    occupy();
+
+    List<String> order = Collections.synchronizedList(new ArrayList<>());
+    queue.execute(() -> order.add("background"), WorkQueue.Priority.BACKGROUND);
+    for (int i = 1; i < WorkQueue.STARVATION_LIMIT; i++) {
+      queue.execute(() -> order.add("normal"), WorkQueue.Priority.NORMAL);
+    }
+    // the background task is starving once the last normal task is taken.
+    queue.execute(
+        () -> {
+          order.add("normal");
+          queue.execute(() -> order.add("interactive"), WorkQueue.Priority.INTERACTIVE);
+        },
+        WorkQueue.Priority.NORMAL);
+    release.countDown();
+    queue.finish();
+
+    List<String> expected =
+        new ArrayList<>(Collections.nCopies(WorkQueue.STARVATION_LIMIT, "normal"));
+    expected.add("interactive");
+    expected.add("background");
+    assertEquals(expected, order);
+  }
+
+  /**
+   * Tests that a background task a worker queues in a work-stealing queue does not run ahead of a
+   * normal task queued by another thread.
+   *
+   * @throws InterruptedException if interrupted while waiting
+   */
+  @Test
+  @Timeout(30)
+  public void testStealingPriority() throws InterruptedException {
+    queue = new WorkQueue(1, true);
+    List<String> order = Collections.synchronizedList(new ArrayList<>());
+    CountDownLatch started = new CountDownLatch(1);
+    queue.execute(
+        () -> {
+          queue.execute(() -> order.add("background"), WorkQueue.Priority.BACKGROUND);
+          queue.execute(() -> order.add("normal"), WorkQueue.Priority.NORMAL);
+          started.countDown();
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        });
+    started.await();
+    queue.execute(() -> order.add("normal"), WorkQueue.Priority.NORMAL);
+    queue.execute(() -> order.add("interactive"), WorkQueue.Priority.INTERACTIVE);
+    release.countDown();
+    queue.finish();
+    assertEquals(List.of("interactive", "normal", "normal", "background"), order);
+  }
+}